@@ -0,0 +1,414 @@
+package com.example.dbcompare;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.*;
+import java.util.function.LongConsumer;
+
+/**
+ * Massen-Import/-Export von ABFRAGEN-Definitionen.
+ * Formate (anhand der Dateiendung):
+ * - .csv  : Semikolon-getrennt mit Kopfzeile QUERY_ID;SQL_TEXT;DB_KUERZEL;ACTIVE, Felder in "..." (mehrzeilig erlaubt)
+ * - .json : Array flacher Objekte mit denselben Schluesseln
+ * - .sql  : Skript, je Statement optionale Kopfkommentare "-- DB_KUERZEL: ..." / "-- ACTIVE: ...", Abschluss mit "/"
+ *           oder ";" am Zeilenende (der Abschluss gehoert nicht zum gespeicherten SQL)
+ * Dateien werden gestreamt gelesen/geschrieben; der Import schreibt per JDBC-Batch.
+ * Zeilen mit (numerischer) QUERY_ID werden per MERGE aktualisiert bzw. mit dieser ID angelegt
+ * (Export + Re-Import erzeugt keine Duplikate), Zeilen ohne QUERY_ID erhalten eine neue aus ABFRAGEN_SEQ;
+ * die Sequenz wird dafuer vorab hinter die hoechste ID der Datei gesetzt.
+ */
+public final class AbfragenBulkIO {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private AbfragenBulkIO() {}
+
+    /** Eine Abfrage-Definition, wie sie in Dateien steht. */
+    public static final class Definition {
+        final String queryId;
+        final String sqlText;
+        final String dbKuerzel;
+        final boolean active;
+
+        Definition(String queryId, String sqlText, String dbKuerzel, boolean active) {
+            this.queryId = queryId;
+            this.sqlText = sqlText;
+            this.dbKuerzel = dbKuerzel;
+            this.active = active;
+        }
+    }
+
+    private interface Handler {
+        void accept(Definition d) throws SQLException;
+    }
+
+    // ======================
+    // Import
+    // ======================
+
+    /**
+     * Importiert alle Definitionen aus der Datei in einer Transaktion.
+     * @param progress erhaelt die Anzahl bisher uebernommener Definitionen (darf null sein)
+     * @return Anzahl importierter Definitionen
+     */
+    public static long importFile(Connection conn, Path file, LongConsumer progress) throws IOException, SQLException {
+        AbfragenSequence.ensure(conn);
+
+        // 1. Durchgang: hoechste vorgegebene ID -> Sequenz vorab dahinter setzen (DDL, vor der Transaktion),
+        // sonst koennte eine neue ID aus ABFRAGEN_SEQ mit einer ID aus der Datei zusammenfallen
+        final long[] maxId = {0};
+        read(file, d -> {
+            Long id = isBlank(d.sqlText) ? null : parseId(d.queryId);
+            if (id != null && id > maxId[0]) maxId[0] = id;
+        });
+        if (maxId[0] > 0) AbfragenSequence.catchUp(conn, maxId[0]);
+
+        boolean oldAuto = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        final long[] count = {0};
+        try (PreparedStatement insert = conn.prepareStatement(
+                     "INSERT INTO ABFRAGEN (QUERY_ID, SQL_TEXT, DB_KUERZEL, ACTIVE) VALUES ("
+                             + AbfragenSequence.NEXTVAL + ", ?, ?, ?)");
+             PreparedStatement merge = conn.prepareStatement(MERGE_SQL)) {
+            final int[] pending = {0};
+            read(file, d -> {
+                if (isBlank(d.sqlText)) return;
+                Long id = parseId(d.queryId);
+                PreparedStatement ps = id == null ? insert : merge;
+                int p = 1;
+                if (id != null) ps.setLong(p++, id);
+                ps.setString(p++, d.sqlText.trim());
+                ps.setString(p++, isBlank(d.dbKuerzel) ? null : d.dbKuerzel.trim());
+                ps.setInt(p, d.active ? 1 : 0);
+                ps.addBatch();
+                count[0]++;
+                if (++pending[0] == BATCH_SIZE) {
+                    insert.executeBatch();
+                    merge.executeBatch();
+                    pending[0] = 0;
+                    if (progress != null) progress.accept(count[0]);
+                }
+            });
+            if (pending[0] > 0) {
+                insert.executeBatch();
+                merge.executeBatch();
+            }
+            conn.commit();
+            if (progress != null) progress.accept(count[0]);
+        } catch (IOException | SQLException | RuntimeException ex) {
+            conn.rollback();
+            throw ex;
+        } finally {
+            conn.setAutoCommit(oldAuto);
+        }
+        return count[0];
+    }
+
+    private static void read(Path file, Handler h) throws IOException, SQLException {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            switch (Format.of(file)) {
+                case CSV:  readCsv(in, h);  break;
+                case JSON: readJson(in, h); break;
+                default:   readSql(in, h);  break;
+            }
+        }
+    }
+
+    private static final String MERGE_SQL =
+            "MERGE INTO ABFRAGEN t " +
+            "USING (SELECT ? AS QUERY_ID, ? AS SQL_TEXT, ? AS DB_KUERZEL, ? AS ACTIVE FROM DUAL) s " +
+            "ON (t.QUERY_ID = s.QUERY_ID) " +
+            "WHEN MATCHED THEN UPDATE SET t.SQL_TEXT = s.SQL_TEXT, t.DB_KUERZEL = s.DB_KUERZEL, t.ACTIVE = s.ACTIVE " +
+            "WHEN NOT MATCHED THEN INSERT (QUERY_ID, SQL_TEXT, DB_KUERZEL, ACTIVE) " +
+            "VALUES (s.QUERY_ID, s.SQL_TEXT, s.DB_KUERZEL, s.ACTIVE)";
+
+    /** QUERY_ID aus der Datei; null, wenn leer oder nicht numerisch (-> neue ID). */
+    private static Long parseId(String s) {
+        if (isBlank(s)) return null;
+        try {
+            return Long.valueOf(s.trim());
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    // ======================
+    // Export
+    // ======================
+
+    /** Schreibt alle Zeilen aus ABFRAGEN gestreamt in die Datei. @return Anzahl exportierter Zeilen */
+    public static long exportFile(Connection conn, Path file, LongConsumer progress) throws IOException, SQLException {
+        Format format = Format.of(file);
+        long count = 0;
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+             Statement st = conn.createStatement()) {
+            st.setFetchSize(500);
+            try (ResultSet rs = st.executeQuery(
+                    "SELECT QUERY_ID, SQL_TEXT, DB_KUERZEL, ACTIVE FROM ABFRAGEN ORDER BY QUERY_ID")) {
+                if (format == Format.CSV) out.write("QUERY_ID;SQL_TEXT;DB_KUERZEL;ACTIVE\n");
+                if (format == Format.JSON) out.write("[\n");
+                while (rs.next()) {
+                    Definition d = new Definition(rs.getString(1), rs.getString(2), rs.getString(3), rs.getInt(4) == 1);
+                    switch (format) {
+                        case CSV:  writeCsv(out, d); break;
+                        case JSON: writeJson(out, d, count == 0); break;
+                        default:   writeSql(out, d); break;
+                    }
+                    count++;
+                    if (progress != null && count % BATCH_SIZE == 0) progress.accept(count);
+                }
+                if (format == Format.JSON) out.write("\n]\n");
+            }
+        }
+        if (progress != null) progress.accept(count);
+        return count;
+    }
+
+    private enum Format {
+        CSV, JSON, SQL;
+
+        static Format of(Path file) {
+            String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (name.endsWith(".csv")) return CSV;
+            if (name.endsWith(".json")) return JSON;
+            return SQL;
+        }
+    }
+
+    // ---------- CSV ----------
+
+    private static void readCsv(Reader in, Handler h) throws IOException, SQLException {
+        CsvReader csv = new CsvReader(in);
+        List<String> header = csv.readRecord();
+        if (header == null) return;
+        Map<String, Integer> idx = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) idx.put(header.get(i).trim().toUpperCase(Locale.ROOT), i);
+        if (!idx.containsKey("SQL_TEXT")) throw new IOException("CSV ohne Spalte SQL_TEXT");
+
+        List<String> rec;
+        while ((rec = csv.readRecord()) != null) {
+            h.accept(new Definition(
+                    field(rec, idx.get("QUERY_ID")),
+                    field(rec, idx.get("SQL_TEXT")),
+                    field(rec, idx.get("DB_KUERZEL")),
+                    parseActive(field(rec, idx.get("ACTIVE")))));
+        }
+    }
+
+    private static void writeCsv(Writer out, Definition d) throws IOException {
+        out.write(csv(d.queryId));
+        out.write(';');
+        out.write(csv(d.sqlText));
+        out.write(';');
+        out.write(csv(d.dbKuerzel));
+        out.write(';');
+        out.write(d.active ? "1" : "0");
+        out.write('\n');
+    }
+
+    private static String csv(String s) {
+        if (s == null) return "";
+        return "\"" + s.replace("\"", "\"\"") + "\"";
+    }
+
+    // ---------- JSON ----------
+
+    private static void readJson(Reader in, Handler h) throws IOException, SQLException {
+        JsonTokenizer t = new JsonTokenizer(in);
+        t.expect('[');
+        if (t.peek() == ']') { t.next(); return; }
+        while (true) {
+            t.expect('{');
+            Map<String, String> obj = new HashMap<>();
+            if (t.peek() != '}') {
+                while (true) {
+                    String key = t.readString();
+                    t.expect(':');
+                    obj.put(key.toUpperCase(Locale.ROOT), t.readScalar());
+                    if (t.peek() == ',') { t.next(); continue; }
+                    break;
+                }
+            }
+            t.expect('}');
+            h.accept(new Definition(obj.get("QUERY_ID"), obj.get("SQL_TEXT"), obj.get("DB_KUERZEL"),
+                    parseActive(obj.get("ACTIVE"))));
+            int c = t.next();
+            if (c == ']') return;
+            if (c != ',') throw new IOException("JSON: ',' oder ']' erwartet");
+        }
+    }
+
+    private static void writeJson(Writer out, Definition d, boolean first) throws IOException {
+        if (!first) out.write(",\n");
+        out.write("  {\"QUERY_ID\": " + (d.queryId == null ? "null" : d.queryId)
+                + ", \"SQL_TEXT\": " + json(d.sqlText)
+                + ", \"DB_KUERZEL\": " + json(d.dbKuerzel)
+                + ", \"ACTIVE\": " + (d.active ? "1" : "0") + "}");
+    }
+
+    private static String json(String s) {
+        if (s == null) return "null";
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':  sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /** Minimaler Streaming-Tokenizer fuer ein Array flacher JSON-Objekte. */
+    private static final class JsonTokenizer {
+        private final Reader in;
+        private int peeked = -2;
+
+        JsonTokenizer(Reader in) { this.in = in; }
+
+        int peek() throws IOException {
+            if (peeked == -2) {
+                int c;
+                do { c = in.read(); } while (c != -1 && Character.isWhitespace(c));
+                peeked = c;
+            }
+            return peeked;
+        }
+
+        int next() throws IOException {
+            int c = peek();
+            peeked = -2;
+            return c;
+        }
+
+        void expect(char c) throws IOException {
+            int n = next();
+            if (n != c) throw new IOException("JSON: '" + c + "' erwartet");
+        }
+
+        String readString() throws IOException {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            int c;
+            while ((c = in.read()) != '"') {
+                if (c == -1) throw new IOException("JSON: unerwartetes Dateiende");
+                if (c == '\\') {
+                    int e = in.read();
+                    switch (e) {
+                        case 'n': sb.append('\n'); break;
+                        case 'r': sb.append('\r'); break;
+                        case 't': sb.append('\t'); break;
+                        case 'b': sb.append('\b'); break;
+                        case 'f': sb.append('\f'); break;
+                        case 'u':
+                            char[] hex = new char[4];
+                            for (int i = 0; i < 4; i++) hex[i] = (char) in.read();
+                            sb.append((char) Integer.parseInt(new String(hex), 16));
+                            break;
+                        default: sb.append((char) e);
+                    }
+                } else {
+                    sb.append((char) c);
+                }
+            }
+            return sb.toString();
+        }
+
+        /** String, Zahl, true/false/null als String (null bei JSON-null). */
+        String readScalar() throws IOException {
+            if (peek() == '"') return readString();
+            if (peek() == '{' || peek() == '[') throw new IOException("JSON: verschachtelte Werte nicht unterstuetzt");
+            StringBuilder sb = new StringBuilder();
+            sb.append((char) next());
+            while (true) {
+                in.mark(1);
+                int c = in.read();
+                if (c == -1 || c == ',' || c == '}' || c == ']' || Character.isWhitespace(c)) {
+                    in.reset();
+                    break;
+                }
+                sb.append((char) c);
+            }
+            String v = sb.toString();
+            return "null".equals(v) ? null : v;
+        }
+    }
+
+    // ---------- SQL-Skript ----------
+
+    private static void readSql(BufferedReader in, Handler h) throws IOException, SQLException {
+        String queryId = null;
+        String db = null;
+        boolean active = true;
+        StringBuilder stmt = new StringBuilder();
+        String line;
+        while ((line = in.readLine()) != null) {
+            String t = line.trim();
+            if (stmt.length() == 0 && t.startsWith("--")) {
+                String meta = t.substring(2).trim();
+                String upper = meta.toUpperCase(Locale.ROOT);
+                if (upper.startsWith("QUERY_ID:")) { queryId = meta.substring(9).trim(); continue; }
+                if (upper.startsWith("DB_KUERZEL:")) { db = meta.substring(11).trim(); continue; }
+                if (upper.startsWith("ACTIVE:")) { active = parseActive(meta.substring(7).trim()); continue; }
+            }
+            boolean terminated = t.endsWith(";");
+            if (terminated) {
+                // "SELECT ...;" -> Abschluss gehoert nicht zum SQL (ORA-00911 bei der Ausfuehrung)
+                if (stmt.length() > 0) stmt.append('\n');
+                stmt.append(line, 0, line.lastIndexOf(';'));
+            }
+            if (t.equals("/") || terminated) {
+                h.accept(new Definition(queryId, stripTerminator(stmt.toString()), db, active));
+                queryId = null;
+                db = null;
+                active = true;
+                stmt.setLength(0);
+                continue;
+            }
+            if (stmt.length() == 0 && t.isEmpty()) continue;
+            if (stmt.length() > 0) stmt.append('\n');
+            stmt.append(line);
+        }
+        if (stmt.toString().trim().length() > 0) {
+            h.accept(new Definition(queryId, stripTerminator(stmt.toString()), db, active));
+        }
+    }
+
+    /** Entfernt abschliessende Leerzeichen und ';'. */
+    private static String stripTerminator(String sql) {
+        int end = sql.length();
+        while (end > 0 && (Character.isWhitespace(sql.charAt(end - 1)) || sql.charAt(end - 1) == ';')) end--;
+        return sql.substring(0, end);
+    }
+
+    private static void writeSql(Writer out, Definition d) throws IOException {
+        out.write("-- QUERY_ID: " + (d.queryId == null ? "" : d.queryId) + "\n");
+        out.write("-- DB_KUERZEL: " + (d.dbKuerzel == null ? "" : d.dbKuerzel) + "\n");
+        out.write("-- ACTIVE: " + (d.active ? "1" : "0") + "\n");
+        out.write(d.sqlText == null ? "" : d.sqlText.trim());
+        out.write("\n/\n\n");
+    }
+
+    // ---------- Hilfen ----------
+
+    private static String field(List<String> rec, Integer idx) {
+        return (idx == null || idx >= rec.size()) ? null : rec.get(idx);
+    }
+
+    private static boolean parseActive(String s) {
+        if (isBlank(s)) return true;
+        String v = s.trim().toLowerCase(Locale.ROOT);
+        return !(v.equals("0") || v.equals("false") || v.equals("n") || v.equals("nein"));
+    }
+
+    private static boolean isBlank(String s) { return s == null || s.trim().isEmpty(); }
+}
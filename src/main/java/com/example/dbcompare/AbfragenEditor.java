@@ -1,9 +1,11 @@
 package com.example.dbcompare;
 
+import javafx.application.Platform;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
@@ -13,26 +15,55 @@ import javafx.scene.input.KeyCodeCombination;
 import javafx.scene.input.KeyCombination;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.Region;
+import javafx.stage.FileChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Editor fuer die Oracle-Tabelle ABFRAGEN (Spalten: QUERY_ID, SQL_TEXT, DB_KUERZEL, ACTIVE).
- * - Laedt bestehende Zeilen (via ROWID) und merkt sich MAX(QUERY_ID)
- * - Neue Zeilen werden mit MAX(QUERY_ID)+1 vorbelegt
+ * - Laedt bestehende Zeilen (via ROWID) seitenweise im Hintergrund (Keyset ueber QUERY_ID)
+ *   und SQL_TEXT erst fuer Zeilen, die sichtbar werden
+ * - Neue Zeilen erhalten ihre QUERY_ID beim Speichern aus der Sequenz ABFRAGEN_SEQ
+ * - Import/Export ganzer Definitionsdateien (CSV/JSON/SQL) ueber {@link AbfragenBulkIO}
  * - Editieren mit Commit bei Fokusverlust/Enter/Tab (bidirektionale Bindung)
  * - ACTIVE ist als Checkbox editierbar (true -> 1, false -> 0)
- * - Speichern fuehrt INSERT/UPDATE/DELETE in einer Transaktion aus
+ * - Speichern fuehrt INSERT/UPDATE/DELETE in einer Transaktion aus (im Hintergrund)
+ * - Mit aktivem {@link CostPreflight}: Spalte KOSTEN, nach Aenderung von SQL/DB_KUERZEL per EXPLAIN PLAN
+ * - Mit {@link RepositoryPool}: eigene Session fuer die Dauer des Fensters (Refresh laeuft ungestoert weiter)
  */
 public class AbfragenEditor {
 
-    // Merker fuer die aktuell groesste QUERY_ID (wird bei jedem Laden neu bestimmt)
-    private static int lastMaxId = 0;
-
     public static void show(Stage owner, Connection oracleConn) {
+        show(owner, oracleConn, null);
+    }
+
+    /**
+     * Leiht sich eine Session aus dem Pool; sie wird zurueckgegeben, sobald nach dem Schliessen
+     * die letzte Hintergrundarbeit des Editors (z.B. Speichern) beendet ist.
+     */
+    public static void show(Stage owner, RepositoryPool repository, CostPreflight preflight) {
+        Connection conn;
+        try {
+            conn = repository.acquire();
+        } catch (SQLException ex) {
+            new Alert(Alert.AlertType.ERROR, "Keine Verbindung zum Repository:\n" + ex.getMessage()).showAndWait();
+            return;
+        }
+        show(owner, conn, preflight, () -> repository.release(conn));
+    }
+
+    public static void show(Stage owner, Connection oracleConn, CostPreflight preflight) {
+        show(owner, oracleConn, preflight, null);
+    }
+
+    private static void show(Stage owner, Connection oracleConn, CostPreflight preflight, Runnable afterClose) {
         Stage stage = new Stage();
         stage.initOwner(owner);
         stage.setTitle("ABFRAGEN bearbeiten");
@@ -43,6 +74,22 @@ public class AbfragenEditor {
 
         ObservableList<Row> data = FXCollections.observableArrayList();
 
+        Label status = new Label();
+        ProgressIndicator busy = new ProgressIndicator();
+        busy.setPrefSize(18, 18);
+        busy.setVisible(false);
+        Loader loader = new Loader(oracleConn, table, data, status, busy);
+
+        // Sichtbare Zeilen stossen das Nachladen an (naechste Seite / SQL_TEXT)
+        table.setRowFactory(tv -> new TableRow<Row>() {
+            @Override
+            protected void updateItem(Row item, boolean empty) {
+                super.updateItem(item, empty);
+                if (empty || item == null) return;
+                loader.onRowVisible(item, getIndex());
+            }
+        });
+
         // QUERY_ID (read-only im UI)
         TableColumn<Row, String> idCol = new TableColumn<Row, String>("QUERY_ID");
         idCol.setPrefWidth(100);
@@ -59,6 +106,7 @@ public class AbfragenEditor {
             Row r = ev.getTableView().getItems().get(ev.getTablePosition().getRow());
             r.sqlTextProperty.set(ev.getNewValue());
             r.dirty = true;
+            estimateCost(preflight, r);
         });
 
         // DB_KUERZEL
@@ -66,11 +114,12 @@ public class AbfragenEditor {
         dbCol.setPrefWidth(250);
         dbCol.setEditable(true);
         dbCol.setCellValueFactory(c -> c.getValue().dbKuerzelProperty);
-        dbCol.setCellFactory(col -> new FocusCommitTextFieldCell());
+        dbCol.setCellFactory(col -> new FocusCommitTextFieldCell(r -> r.dbKuerzelProperty));
         dbCol.setOnEditCommit(ev -> {
             Row r = ev.getTableView().getItems().get(ev.getTablePosition().getRow());
             r.dbKuerzelProperty.set(ev.getNewValue());
             r.dirty = true;
+            estimateCost(preflight, r);
         });
 
         // ACTIVE (Checkbox)
@@ -81,6 +130,50 @@ public class AbfragenEditor {
         activeCol.setCellFactory(tc -> new CheckBoxTableCell<Row, Boolean>());
         // Hinweis: CheckBoxTableCell schreibt direkt ins Property; wir markieren dirty per Listener im Row-Modell.
 
+        // OPTIONEN (nur sichtbar, wenn die optionale Spalte existiert; z.B. "interval=600")
+        TableColumn<Row, String> optCol = new TableColumn<Row, String>(QueryOptions.COLUMN);
+        optCol.setPrefWidth(200);
+        optCol.setEditable(true);
+        optCol.setVisible(false);
+        optCol.setCellValueFactory(c -> c.getValue().optionsProperty);
+        optCol.setCellFactory(col -> new FocusCommitTextFieldCell(r -> r.optionsProperty));
+        optCol.setOnEditCommit(ev -> {
+            Row r = ev.getTableView().getItems().get(ev.getTablePosition().getRow());
+            r.optionsProperty.set(ev.getNewValue());
+            r.dirty = true;
+        });
+        loader.optionsColumn = optCol;
+
+        // KOSTEN (read-only; hoechste geschaetzte Kosten ueber die DBs, "⚠" ueber der Schwelle)
+        TableColumn<Row, String> costCol = new TableColumn<Row, String>("KOSTEN");
+        costCol.setPrefWidth(110);
+        costCol.setEditable(false);
+        costCol.setVisible(preflight != null && preflight.isEnabled());
+        costCol.setCellValueFactory(c -> c.getValue().costProperty);
+        costCol.setCellFactory(col -> new TableCell<Row, String>() {
+            @Override
+            protected void updateItem(String item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(empty ? null : item);
+                setStyle(!empty && item != null && item.startsWith("⚠")
+                        ? "-fx-background-color: lightcoral; -fx-text-fill: black;" : "");
+            }
+        });
+        if (preflight != null && preflight.isEnabled()) {
+            // bekannte Schaetzungen (Cache) sofort anzeigen, sobald SQL_TEXT geladen/geaendert ist
+            data.addListener((javafx.collections.ListChangeListener<Row>) ch -> {
+                while (ch.next()) {
+                    for (Row r : ch.getAddedSubList()) {
+                        javafx.beans.value.ChangeListener<String> l = (obs, o, n) -> r.costProperty.set(
+                                preflight.describe(preflight.cachedMaxCost(r.sqlTextProperty.get(), kuerzelOf(r))));
+                        r.sqlTextProperty.addListener(l);
+                        r.dbKuerzelProperty.addListener(l);
+                        l.changed(null, null, null);
+                    }
+                }
+            });
+        }
+
         // ROWID (read-only) – optional
         // TableColumn<Row, String> ridCol = new TableColumn<Row, String>("ROWID");
         // ridCol.setPrefWidth(260);
@@ -88,7 +181,7 @@ public class AbfragenEditor {
         // ridCol.setCellValueFactory(c -> c.getValue().rowIdProperty);
 
         // Spalten-Reihenfolge festlegen
-        table.getColumns().addAll(idCol, sqlCol, dbCol, activeCol /*, ridCol*/);
+        table.getColumns().addAll(Arrays.asList(idCol, sqlCol, dbCol, activeCol, optCol, costCol /*, ridCol*/));
         table.setItems(data);
 
         // Toolbar
@@ -96,22 +189,29 @@ public class AbfragenEditor {
         Button delBtn = new Button("Loeschen");
         Button saveBtn = new Button("Speichern");
         Button reloadBtn = new Button("Neu laden");
+        Button importBtn = new Button("Import …");
+        Button exportBtn = new Button("Export …");
         Button closeBtn = new Button("Schliessen");
 
         closeBtn.setOnAction(e -> stage.close());
 
-        HBox toolbar = new HBox(8, addBtn, delBtn, new Separator(), saveBtn, reloadBtn, new Separator(), closeBtn);
+        HBox toolbar = new HBox(8, addBtn, delBtn, new Separator(), saveBtn, reloadBtn, new Separator(),
+                importBtn, exportBtn, new Separator(), closeBtn);
         toolbar.setPadding(new Insets(8));
 
+        Region spacer = new Region();
+        HBox.setHgrow(spacer, Priority.ALWAYS);
+        HBox statusBar = new HBox(8, busy, status, spacer);
+        statusBar.setPadding(new Insets(4, 8, 4, 8));
+
         BorderPane root = new BorderPane(table);
         root.setTop(toolbar);
+        root.setBottom(statusBar);
 
         Set<String> toDeleteRowIds = new HashSet<String>();
 
         addBtn.setOnAction(e -> {
-            int newId = lastMaxId + 1;
-            lastMaxId = newId; // direkt hochzaehlen, damit mehrere neue Zeilen fortlaufend sind
-            Row r = Row.newRow(newId);
+            Row r = Row.newRow();
             data.add(r);
             table.getSelectionModel().select(r);
             table.scrollTo(r);
@@ -128,25 +228,59 @@ public class AbfragenEditor {
         });
 
         saveBtn.setOnAction(e -> {
-            try {
-                saveChanges(oracleConn, data, toDeleteRowIds);
-                toDeleteRowIds.clear();
-                loadData(oracleConn, data);
-                new Alert(Alert.AlertType.INFORMATION, "Aenderungen gespeichert.").showAndWait();
-            } catch (Exception ex) {
-                ex.printStackTrace();
-                new Alert(Alert.AlertType.ERROR, "Fehler beim Speichern: " + ex.getMessage()).showAndWait();
-            }
+            toolbar.setDisable(true);
+            loader.save(new ArrayList<Row>(data), new HashSet<String>(toDeleteRowIds), ex -> {
+                toolbar.setDisable(false);
+                if (ex == null) {
+                    toDeleteRowIds.clear();
+                    loader.reload();
+                    new Alert(Alert.AlertType.INFORMATION, "Aenderungen gespeichert.").showAndWait();
+                } else {
+                    ex.printStackTrace();
+                    new Alert(Alert.AlertType.ERROR, "Fehler beim Speichern: " + ex.getMessage()).showAndWait();
+                }
+            });
         });
 
         reloadBtn.setOnAction(e -> {
-            try {
-                toDeleteRowIds.clear();
-                loadData(oracleConn, data);
-            } catch (Exception ex) {
-                ex.printStackTrace();
-                new Alert(Alert.AlertType.ERROR, "Fehler beim Laden: " + ex.getMessage()).showAndWait();
-            }
+            toDeleteRowIds.clear();
+            loader.reload();
+        });
+
+        importBtn.setOnAction(e -> {
+            FileChooser fc = bulkFileChooser("ABFRAGEN importieren");
+            java.io.File file = fc.showOpenDialog(stage);
+            if (file == null) return;
+            toolbar.setDisable(true);
+            loader.runBulk("Importiere", n -> AbfragenBulkIO.importFile(oracleConn, file.toPath(), n), (count, ex) -> {
+                toolbar.setDisable(false);
+                if (ex == null) {
+                    toDeleteRowIds.clear();
+                    loader.reload();
+                    new Alert(Alert.AlertType.INFORMATION, count + " Abfrage(n) importiert.").showAndWait();
+                } else {
+                    ex.printStackTrace();
+                    new Alert(Alert.AlertType.ERROR, "Fehler beim Import: " + ex.getMessage()).showAndWait();
+                }
+            });
+        });
+
+        exportBtn.setOnAction(e -> {
+            FileChooser fc = bulkFileChooser("ABFRAGEN exportieren");
+            fc.setInitialFileName("abfragen.csv");
+            java.io.File file = fc.showSaveDialog(stage);
+            if (file == null) return;
+            toolbar.setDisable(true);
+            loader.runBulk("Exportiere", n -> AbfragenBulkIO.exportFile(oracleConn, file.toPath(), n), (count, ex) -> {
+                toolbar.setDisable(false);
+                if (ex == null) {
+                    new Alert(Alert.AlertType.INFORMATION,
+                            count + " Abfrage(n) exportiert:\n" + file.getAbsolutePath()).showAndWait();
+                } else {
+                    ex.printStackTrace();
+                    new Alert(Alert.AlertType.ERROR, "Fehler beim Export: " + ex.getMessage()).showAndWait();
+                }
+            });
         });
 
         // Tastaturkuerzel
@@ -158,39 +292,18 @@ public class AbfragenEditor {
             }
         });
 
-        // Initial laden
-        try {
-            loadData(oracleConn, data);
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            new Alert(Alert.AlertType.ERROR, "Fehler beim Initial-Laden: " + ex.getMessage()).showAndWait();
-        }
+        // Initial laden (asynchron, erste Seite)
+        loader.reload();
 
         stage.setScene(scene);
+        stage.setOnHidden(e -> loader.shutdown(afterClose));
         stage.showAndWait();
     }
 
-    private static void loadData(Connection conn, ObservableList<Row> data) throws SQLException {
-        data.clear();
-        lastMaxId = 0;
-        // ACTIVE mitladen
-        String sql = "SELECT QUERY_ID, ROWID AS RID, SQL_TEXT, DB_KUERZEL, ACTIVE FROM ABFRAGEN ORDER BY QUERY_ID";
-        try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery(sql)) {
-            while (rs.next()) {
-                String qid = rs.getString("QUERY_ID");
-                String rid = rs.getString("RID");
-                String sqlText = rs.getString("SQL_TEXT");
-                String db = rs.getString("DB_KUERZEL");
-                boolean active = rs.getInt("ACTIVE") == 1;
-                data.add(Row.fromDb(qid, rid, sqlText, db, active));
-
-                int idVal = rs.getInt("QUERY_ID");
-                if (!rs.wasNull() && idVal > lastMaxId) lastMaxId = idVal;
-            }
-        }
-    }
-
-    private static void saveChanges(Connection conn, List<Row> rows, Set<String> toDeleteRowIds) throws SQLException {
+    private static void saveChanges(Connection conn, List<Row> rows, Set<String> toDeleteRowIds,
+                                    boolean withOptions) throws SQLException {
+        String optSet = withOptions ? ", " + QueryOptions.COLUMN + " = ?" : "";
+        AbfragenSequence.ensure(conn); // ggf. DDL -> vor Beginn der Transaktion
         conn.setAutoCommit(false);
         try {
             // DELETEs
@@ -206,29 +319,45 @@ public class AbfragenEditor {
 
             // UPDATEs (nur geaenderte, nicht-neue) - QUERY_ID bleibt unveraendert
             try (PreparedStatement ps = conn.prepareStatement(
-                    "UPDATE ABFRAGEN SET SQL_TEXT = ?, DB_KUERZEL = ?, ACTIVE = ? WHERE ROWID = ?")) {
+                    "UPDATE ABFRAGEN SET SQL_TEXT = ?, DB_KUERZEL = ?, ACTIVE = ?" + optSet + " WHERE ROWID = ?");
+                 PreparedStatement psMeta = conn.prepareStatement(
+                    "UPDATE ABFRAGEN SET DB_KUERZEL = ?, ACTIVE = ?" + optSet + " WHERE ROWID = ?")) {
                 for (Row r : rows) {
                     if (!r.isNew && r.dirty) {
-                        ps.setString(1, nullIfBlank(r.sqlTextProperty.get()));
-                        ps.setString(2, nullIfBlank(r.dbKuerzelProperty.get()));
-                        ps.setInt(3, r.activeProperty.get() ? 1 : 0);
-                        ps.setString(4, r.rowIdProperty.get());
-                        ps.addBatch();
+                        if (r.sqlLoaded) {
+                            int i = 1;
+                            ps.setString(i++, nullIfBlank(r.sqlTextProperty.get()));
+                            ps.setString(i++, nullIfBlank(r.dbKuerzelProperty.get()));
+                            ps.setInt(i++, r.activeProperty.get() ? 1 : 0);
+                            if (withOptions) ps.setString(i++, nullIfBlank(r.optionsProperty.get()));
+                            ps.setString(i, r.rowIdProperty.get());
+                            ps.addBatch();
+                        } else {
+                            // SQL_TEXT noch nicht geladen -> nicht ueberschreiben
+                            int i = 1;
+                            psMeta.setString(i++, nullIfBlank(r.dbKuerzelProperty.get()));
+                            psMeta.setInt(i++, r.activeProperty.get() ? 1 : 0);
+                            if (withOptions) psMeta.setString(i++, nullIfBlank(r.optionsProperty.get()));
+                            psMeta.setString(i, r.rowIdProperty.get());
+                            psMeta.addBatch();
+                        }
                     }
                 }
                 ps.executeBatch();
+                psMeta.executeBatch();
             }
 
             // INSERTs (neue)
             try (PreparedStatement ps = conn.prepareStatement(
-                    "INSERT INTO ABFRAGEN (QUERY_ID, SQL_TEXT, DB_KUERZEL, ACTIVE) VALUES (?, ?, ?, ?)")) {
+                    "INSERT INTO ABFRAGEN (QUERY_ID, SQL_TEXT, DB_KUERZEL, ACTIVE"
+                            + (withOptions ? ", " + QueryOptions.COLUMN : "") + ") VALUES ("
+                            + AbfragenSequence.NEXTVAL + ", ?, ?, ?" + (withOptions ? ", ?" : "") + ")")) {
                 for (Row r : rows) {
                     if (r.isNew) {
-                        int qid = safeParseInt(r.queryIdProperty.get(), lastMaxId + 1);
-                        ps.setInt(1, qid);
-                        ps.setString(2, nullIfBlank(r.sqlTextProperty.get()));
-                        ps.setString(3, nullIfBlank(r.dbKuerzelProperty.get()));
-                        ps.setInt(4, r.activeProperty.get() ? 1 : 0);
+                        ps.setString(1, nullIfBlank(r.sqlTextProperty.get()));
+                        ps.setString(2, nullIfBlank(r.dbKuerzelProperty.get()));
+                        ps.setInt(3, r.activeProperty.get() ? 1 : 0);
+                        if (withOptions) ps.setString(4, nullIfBlank(r.optionsProperty.get()));
                         ps.addBatch();
                     }
                 }
@@ -244,27 +373,328 @@ public class AbfragenEditor {
         }
     }
 
-    private static int safeParseInt(String s, int fallback) {
-        try {
-            return Integer.parseInt(s);
-        } catch (Exception ignore) {
-            return fallback;
+    private static FileChooser bulkFileChooser(String title) {
+        FileChooser fc = new FileChooser();
+        fc.setTitle(title);
+        fc.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV (*.csv)", "*.csv"),
+                new FileChooser.ExtensionFilter("JSON (*.json)", "*.json"),
+                new FileChooser.ExtensionFilter("SQL-Skript (*.sql)", "*.sql"));
+        return fc;
+    }
+
+    /** EXPLAIN PLAN fuer die geaenderte Zeile auf allen ihren DBs (Hintergrund), danach Flag aktualisieren. */
+    private static void estimateCost(CostPreflight preflight, Row r) {
+        if (preflight == null || !preflight.isEnabled()) return;
+        boolean started = preflight.estimateAsync(r.sqlTextProperty.get(), kuerzelOf(r),
+                cost -> Platform.runLater(() -> r.costProperty.set(preflight.describe(cost))));
+        if (started) r.costProperty.set("…"); // Ergebnis kommt per runLater erst danach
+    }
+
+    private static List<String> kuerzelOf(Row r) {
+        List<String> keys = new ArrayList<String>();
+        for (String k : r.dbKuerzelProperty.get().split(",")) {
+            if (!k.trim().isEmpty()) keys.add(k.trim());
         }
+        return keys;
     }
 
     private static String nullIfBlank(String s) {
         return (s == null || s.trim().isEmpty()) ? null : s.trim();
     }
 
+    // --- Hintergrund-Laden ---
+
+    /**
+     * Laedt ABFRAGEN seitenweise per Keyset (QUERY_ID > ?) und SQL_TEXT erst fuer sichtbare Zeilen.
+     * Alle DB-Zugriffe des Editors laufen nacheinander auf einem eigenen Worker-Thread;
+     * Ergebnisse werden im FX-Thread eingearbeitet.
+     */
+    private static final class Loader {
+        private static final int PAGE_SIZE = 200;
+        private static final int PREFETCH_ROWS = 20;
+        private static final int SQL_BATCH = 50;
+
+        private final Connection conn;
+        private final TableView<Row> table;
+        private final ObservableList<Row> data;
+        private final Label status;
+        private final ProgressIndicator busy;
+        private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "abfragenEditor");
+            t.setDaemon(true);
+            return t;
+        });
+
+        // Zustand nur im FX-Thread veraendern
+        private int generation = 0;
+        private long cursor = Long.MIN_VALUE;
+        private boolean exhausted = false;
+        private boolean pageLoading = false;
+        private long totalRows = -1;
+        private int running = 0;
+        private final List<Row> sqlPending = new ArrayList<Row>();
+        private boolean sqlFlushScheduled = false;
+
+        // Optionale Spalte OPTIONEN: wird im Worker vor der ersten Seite ermittelt
+        private volatile boolean hasOptions = false;
+        TableColumn<Row, String> optionsColumn;
+
+        Loader(Connection conn, TableView<Row> table, ObservableList<Row> data, Label status, ProgressIndicator busy) {
+            this.conn = conn;
+            this.table = table;
+            this.data = data;
+            this.status = status;
+            this.busy = busy;
+        }
+
+        /** Verwirft den geladenen Stand und laedt die erste Seite neu. */
+        void reload() {
+            generation++;
+            data.clear();
+            cursor = Long.MIN_VALUE;
+            exhausted = false;
+            pageLoading = false;
+            totalRows = -1;
+            sqlPending.clear();
+
+            final int gen = generation;
+            Task<long[]> stats = new Task<long[]>() {
+                @Override
+                protected long[] call() throws Exception {
+                    hasOptions = QueryOptions.isColumnPresent(conn);
+                    try (Statement st = conn.createStatement();
+                         ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM ABFRAGEN")) {
+                        rs.next();
+                        return new long[] { rs.getLong(1) };
+                    }
+                }
+            };
+            submit(stats, res -> {
+                if (gen != generation) return;
+                totalRows = res[0];
+                if (optionsColumn != null) optionsColumn.setVisible(hasOptions);
+                updateStatus();
+            }, "Fehler beim Laden");
+            loadNextPage();
+        }
+
+        /** Aufruf aus der Row-Factory: sichtbare Zeile -> ggf. SQL_TEXT und naechste Seite anfordern. */
+        void onRowVisible(Row r, int index) {
+            if (!r.sqlLoaded && !r.sqlRequested) {
+                r.sqlRequested = true;
+                sqlPending.add(r);
+                if (!sqlFlushScheduled) {
+                    sqlFlushScheduled = true;
+                    Platform.runLater(this::flushSqlRequests); // Anforderungen eines Layout-Durchlaufs buendeln
+                }
+            }
+            if (index >= data.size() - PREFETCH_ROWS) {
+                loadNextPage();
+            }
+        }
+
+        void loadNextPage() {
+            if (exhausted || pageLoading) return;
+            pageLoading = true;
+
+            final int gen = generation;
+            final long after = cursor;
+            Task<List<Row>> page = new Task<List<Row>>() {
+                @Override
+                protected List<Row> call() throws Exception {
+                    List<Row> rows = new ArrayList<Row>();
+                    String sql = "SELECT QUERY_ID, ROWID AS RID, DB_KUERZEL, ACTIVE"
+                            + (hasOptions ? ", " + QueryOptions.COLUMN : "") + " FROM ABFRAGEN "
+                            + "WHERE QUERY_ID > ? ORDER BY QUERY_ID FETCH FIRST " + PAGE_SIZE + " ROWS ONLY";
+                    try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                        ps.setLong(1, after);
+                        ps.setFetchSize(PAGE_SIZE);
+                        try (ResultSet rs = ps.executeQuery()) {
+                            while (rs.next()) {
+                                Row r = Row.fromDb(rs.getString("QUERY_ID"), rs.getString("RID"),
+                                        rs.getString("DB_KUERZEL"), rs.getInt("ACTIVE") == 1);
+                                if (hasOptions) {
+                                    String opt = rs.getString(QueryOptions.COLUMN);
+                                    r.optionsProperty.set(opt == null ? "" : opt);
+                                }
+                                rows.add(r);
+                            }
+                        }
+                    }
+                    return rows;
+                }
+            };
+            submit(page, rows -> {
+                if (gen != generation) return;
+                pageLoading = false;
+                if (rows.size() < PAGE_SIZE) exhausted = true;
+                if (!rows.isEmpty()) {
+                    cursor = safeParseLong(rows.get(rows.size() - 1).queryIdProperty.get(), cursor);
+                }
+                // neue (ungespeicherte) Zeilen bleiben am Ende
+                int insertAt = data.size();
+                for (int i = 0; i < data.size(); i++) {
+                    if (data.get(i).isNew) { insertAt = i; break; }
+                }
+                data.addAll(insertAt, rows);
+                updateStatus();
+            }, "Fehler beim Laden");
+        }
+
+        private void flushSqlRequests() {
+            sqlFlushScheduled = false;
+            while (!sqlPending.isEmpty()) {
+                int n = Math.min(SQL_BATCH, sqlPending.size());
+                final List<Row> chunk = new ArrayList<Row>(sqlPending.subList(0, n));
+                sqlPending.subList(0, n).clear();
+
+                Task<Map<String, String>> task = new Task<Map<String, String>>() {
+                    @Override
+                    protected Map<String, String> call() throws Exception {
+                        StringBuilder in = new StringBuilder();
+                        for (int i = 0; i < chunk.size(); i++) in.append(i == 0 ? "?" : ",?");
+                        Map<String, String> texts = new HashMap<String, String>();
+                        try (PreparedStatement ps = conn.prepareStatement(
+                                "SELECT ROWID AS RID, SQL_TEXT FROM ABFRAGEN WHERE ROWID IN (" + in + ")")) {
+                            for (int i = 0; i < chunk.size(); i++) {
+                                ps.setString(i + 1, chunk.get(i).rowIdProperty.get());
+                            }
+                            try (ResultSet rs = ps.executeQuery()) {
+                                while (rs.next()) texts.put(rs.getString("RID"), rs.getString("SQL_TEXT"));
+                            }
+                        }
+                        return texts;
+                    }
+                };
+                submit(task, texts -> {
+                    for (Row r : chunk) {
+                        String txt = texts.get(r.rowIdProperty.get());
+                        r.sqlLoaded = true;
+                        r.sqlTextProperty.set(txt == null ? "" : txt);
+                    }
+                    table.refresh(); // Platzhalter auch bei leerem SQL_TEXT ersetzen
+                }, () -> {
+                    // erneut anfordern, sobald die Zeilen wieder sichtbar werden
+                    for (Row r : chunk) r.sqlRequested = false;
+                }, "Fehler beim Laden von SQL_TEXT");
+            }
+        }
+
+        /** Speichert im Hintergrund; {@code done} erhaelt null bei Erfolg, sonst die Exception. */
+        void save(List<Row> rows, Set<String> toDeleteRowIds, java.util.function.Consumer<Throwable> done) {
+            Task<Void> task = new Task<Void>() {
+                @Override
+                protected Void call() throws Exception {
+                    saveChanges(conn, rows, toDeleteRowIds, hasOptions);
+                    return null;
+                }
+            };
+            running++;
+            updateStatus();
+            task.setOnSucceeded(e -> { running--; updateStatus(); done.accept(null); });
+            task.setOnFailed(e -> { running--; updateStatus(); done.accept(task.getException()); });
+            worker.submit(task);
+        }
+
+        /** Datei-Import/-Export auf dem Worker; Fortschritt erscheint in der Statuszeile. */
+        void runBulk(String verb, BulkJob job, java.util.function.BiConsumer<Long, Throwable> done) {
+            Task<Long> task = new Task<Long>() {
+                @Override
+                protected Long call() throws Exception {
+                    return job.run(n -> updateMessage(verb + " … " + n + " Abfragen"));
+                }
+            };
+            running++;
+            busy.setVisible(true);
+            status.textProperty().bind(task.messageProperty());
+            task.setOnSucceeded(e -> {
+                status.textProperty().unbind();
+                running--;
+                updateStatus();
+                done.accept(task.getValue(), null);
+            });
+            task.setOnFailed(e -> {
+                status.textProperty().unbind();
+                running--;
+                updateStatus();
+                done.accept(null, task.getException());
+            });
+            worker.submit(task);
+        }
+
+        /** Beendet den Worker; 'last' laeuft nach allen bereits eingereihten Aufgaben (oder null). */
+        void shutdown(Runnable last) {
+            if (last != null) worker.execute(last);
+            worker.shutdown();
+        }
+
+        private <T> void submit(Task<T> task, java.util.function.Consumer<T> onSuccess, String errorTitle) {
+            submit(task, onSuccess, null, errorTitle);
+        }
+
+        /** Wie {@link #submit(Task, java.util.function.Consumer, String)}; 'onFailure' raeumt vor der Meldung auf (oder null). */
+        private <T> void submit(Task<T> task, java.util.function.Consumer<T> onSuccess, Runnable onFailure, String errorTitle) {
+            running++;
+            updateStatus();
+            task.setOnSucceeded(e -> {
+                running--;
+                onSuccess.accept(task.getValue());
+                updateStatus();
+            });
+            task.setOnFailed(e -> {
+                running--;
+                pageLoading = false;
+                if (onFailure != null) onFailure.run();
+                updateStatus();
+                Throwable ex = task.getException();
+                ex.printStackTrace();
+                new Alert(Alert.AlertType.ERROR, errorTitle + ": " + ex.getMessage()).showAndWait();
+            });
+            worker.submit(task);
+        }
+
+        private void updateStatus() {
+            busy.setVisible(running > 0);
+            long loaded = data.stream().filter(r -> !r.isNew).count();
+            status.setText(loaded + (totalRows >= 0 ? " von " + totalRows : "") + " Abfragen geladen"
+                    + (exhausted ? "" : " (weitere beim Scrollen)"));
+        }
+    }
+
+    private interface BulkJob {
+        long run(java.util.function.LongConsumer progress) throws Exception;
+    }
+
+    private static long safeParseLong(String s, long fallback) {
+        try {
+            return Long.parseLong(s.trim());
+        } catch (Exception ignore) {
+            return fallback;
+        }
+    }
+
     // --- Datenmodell ---
     public static class Row {
         final SimpleStringProperty queryIdProperty     = new SimpleStringProperty("");
         final SimpleStringProperty rowIdProperty       = new SimpleStringProperty("");
         final SimpleStringProperty sqlTextProperty     = new SimpleStringProperty("");
         final SimpleStringProperty dbKuerzelProperty   = new SimpleStringProperty("");
+        final SimpleStringProperty optionsProperty     = new SimpleStringProperty("");
+        final SimpleStringProperty costProperty        = new SimpleStringProperty("");
         final SimpleBooleanProperty activeProperty     = new SimpleBooleanProperty(true);
         boolean isNew = false;
         boolean dirty = false;
+        // SQL_TEXT wird erst nachgeladen, wenn die Zeile sichtbar wird
+        boolean sqlLoaded = true;
+        boolean sqlRequested = false;
+
+        /** Zeile ohne SQL_TEXT (wird lazy ueber {@link Loader} nachgeladen). */
+        static Row fromDb(String queryId, String rowId, String db, boolean active) {
+            Row r = fromDb(queryId, rowId, "", db, active);
+            r.sqlLoaded = false;
+            return r;
+        }
 
         static Row fromDb(String queryId, String rowId, String sqlText, String db, boolean active) {
             Row r = new Row();
@@ -280,9 +710,10 @@ public class AbfragenEditor {
             return r;
         }
 
-        static Row newRow(int newId) {
+        /** Neue Zeile; die QUERY_ID wird erst beim Speichern aus ABFRAGEN_SEQ vergeben. */
+        static Row newRow() {
             Row r = new Row();
-            r.queryIdProperty.set(String.valueOf(newId));
+            r.queryIdProperty.set("(neu)");
             r.rowIdProperty.set("");
             r.sqlTextProperty.set("");
             r.dbKuerzelProperty.set("");
@@ -302,6 +733,8 @@ public class AbfragenEditor {
         @Override
         public void startEdit() {
             if (isEmpty()) return;
+            Row current = getTableView().getItems().get(getIndex());
+            if (current != null && !current.sqlLoaded) return; // erst nach dem Nachladen editierbar
             super.startEdit();
             if (textArea == null) createTextArea();
 
@@ -337,7 +770,8 @@ public class AbfragenEditor {
                 setGraphic(textArea);
                 setContentDisplay(ContentDisplay.GRAPHIC_ONLY);
             } else {
-                setText(item);
+                Row r = getTableRow() == null ? null : getTableRow().getItem();
+                setText(r != null && !r.sqlLoaded ? "… (wird geladen)" : item);
                 setContentDisplay(ContentDisplay.TEXT_ONLY);
             }
             setWrapText(true);
@@ -390,11 +824,16 @@ public class AbfragenEditor {
         }
     }
 
-    /** TextField-Zelle fuer DB_KUERZEL: bidirektionale Bindung + Commit bei Enter/Tab/Fokusverlust */
+    /** TextField-Zelle fuer DB_KUERZEL/OPTIONEN: bidirektionale Bindung + Commit bei Enter/Tab/Fokusverlust */
     private static class FocusCommitTextFieldCell extends TableCell<Row, String> {
+        private final java.util.function.Function<Row, SimpleStringProperty> property;
         private TextField tf;
         private boolean bound = false;
 
+        FocusCommitTextFieldCell(java.util.function.Function<Row, SimpleStringProperty> property) {
+            this.property = property;
+        }
+
         @Override
         public void startEdit() {
             if (isEmpty()) return;
@@ -403,7 +842,7 @@ public class AbfragenEditor {
 
             Row r = getTableView().getItems().get(getIndex());
             if (!bound && r != null) {
-                tf.textProperty().bindBidirectional(r.dbKuerzelProperty);
+                tf.textProperty().bindBidirectional(property.apply(r));
                 bound = true;
             }
 
@@ -460,7 +899,7 @@ public class AbfragenEditor {
             if (bound) {
                 Row r = getTableView().getItems().get(getIndex());
                 if (r != null) {
-                    tf.textProperty().unbindBidirectional(r.dbKuerzelProperty);
+                    tf.textProperty().unbindBidirectional(property.apply(r));
                 }
                 bound = false;
             }
@@ -0,0 +1,77 @@
+package com.example.dbcompare;
+
+import java.sql.*;
+
+/**
+ * Vergabe von QUERY_IDs ueber die Oracle-Sequenz ABFRAGEN_SEQ.
+ * Fehlt die Sequenz, wird sie einmalig mit START WITH MAX(QUERY_ID)+1 angelegt,
+ * damit bestehende IDs nicht kollidieren.
+ */
+public final class AbfragenSequence {
+
+    public static final String NAME = "ABFRAGEN_SEQ";
+
+    /** SQL-Ausdruck fuer die naechste QUERY_ID (in INSERT ... VALUES verwendbar). */
+    public static final String NEXTVAL = NAME + ".NEXTVAL";
+
+    private static volatile boolean ensured = false;
+
+    private AbfragenSequence() {}
+
+    /** Stellt sicher, dass ABFRAGEN_SEQ existiert (idempotent, pro Prozess nur einmal geprueft). */
+    public static void ensure(Connection conn) throws SQLException {
+        if (ensured) return;
+        synchronized (AbfragenSequence.class) {
+            if (ensured) return;
+            boolean exists;
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT COUNT(*) FROM USER_SEQUENCES WHERE SEQUENCE_NAME = ?")) {
+                ps.setString(1, NAME);
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    exists = rs.getInt(1) > 0;
+                }
+            }
+            if (!exists) {
+                long start;
+                try (Statement st = conn.createStatement();
+                     ResultSet rs = st.executeQuery("SELECT NVL(MAX(QUERY_ID), 0) + 1 FROM ABFRAGEN")) {
+                    rs.next();
+                    start = rs.getLong(1);
+                }
+                try (Statement st = conn.createStatement()) {
+                    // DDL committet implizit -> nur ausserhalb offener Transaktionen aufrufen
+                    st.execute("CREATE SEQUENCE " + NAME + " START WITH " + start + " INCREMENT BY 1 CACHE 100");
+                }
+            }
+            ensured = true;
+        }
+    }
+
+    /**
+     * Setzt die Sequenz hinter MAX(QUERY_ID) und hinter 'minId', z.B. vor einem Import mit vorgegebenen IDs
+     * (hoechste ID der Datei), damit neu vergebene IDs nicht mit importierten zusammenfallen.
+     * Enthaelt DDL (committet implizit) -> nur ausserhalb offener Transaktionen aufrufen.
+     */
+    public static void catchUp(Connection conn, long minId) throws SQLException {
+        long max, next;
+        try (Statement st = conn.createStatement()) {
+            try (ResultSet rs = st.executeQuery("SELECT NVL(MAX(QUERY_ID), 0) FROM ABFRAGEN")) {
+                rs.next();
+                max = Math.max(rs.getLong(1), minId);
+            }
+            try (ResultSet rs = st.executeQuery("SELECT " + NEXTVAL + " FROM DUAL")) {
+                rs.next();
+                next = rs.getLong(1);
+            }
+            if (next > max) return;
+            // einmal um die Luecke weiterzaehlen, danach wieder in Einerschritten
+            st.execute("ALTER SEQUENCE " + NAME + " INCREMENT BY " + (max - next + 1));
+            try {
+                st.executeQuery("SELECT " + NEXTVAL + " FROM DUAL").close();
+            } finally {
+                st.execute("ALTER SEQUENCE " + NAME + " INCREMENT BY 1");
+            }
+        }
+    }
+}
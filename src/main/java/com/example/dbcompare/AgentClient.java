@@ -0,0 +1,129 @@
+package com.example.dbcompare;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Verbindung zu einem {@link DigestAgent}. Eine Socket-Verbindung je Agent, Anfragen werden
+ * serialisiert (synchronized) und als signierte Rahmen ({@link AgentProtocol.Session}) verschickt. Nach einem I/O-Fehler wird beim naechsten Aufruf neu verbunden.
+ */
+public class AgentClient implements AutoCloseable {
+
+    private static final int CONNECT_TIMEOUT_MS = 5000;
+
+    private final String host;
+    private final int port;
+    private final int readTimeoutMs;
+    private final String secret;
+
+    private Socket socket;
+    private AgentProtocol.Session session;
+    private Set<String> dbKeys = Collections.emptySet();
+    private int nextRequestId = 1;
+
+    public AgentClient(String host, int port, int readTimeoutMs, String secret) {
+        this.host = host;
+        this.port = port;
+        this.readTimeoutMs = readTimeoutMs;
+        this.secret = secret;
+    }
+
+    /** Verbindet (falls noetig) und liefert die vom Agenten bedienten DB-Kuerzel. */
+    public synchronized Set<String> connect() throws IOException {
+        if (socket != null && !socket.isClosed()) return dbKeys;
+        Socket s = new Socket();
+        try {
+            s.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+            s.setSoTimeout(readTimeoutMs);
+            s.setTcpNoDelay(true);
+            DataInputStream i = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            DataOutputStream o = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+
+            byte[] clientNonce = AgentProtocol.newNonce();
+            o.writeInt(AgentProtocol.MAGIC);
+            o.writeByte(AgentProtocol.VERSION);
+            o.write(clientNonce);
+            o.flush();
+            if (i.readInt() != AgentProtocol.MAGIC || i.readByte() != AgentProtocol.VERSION) {
+                throw new IOException("Kein kompatibler Agent auf " + this);
+            }
+            byte[] nonce = new byte[AgentProtocol.NONCE_BYTES];
+            i.readFully(nonce);
+            o.write(AgentProtocol.proof(secret, nonce, clientNonce));
+            o.flush();
+            AgentProtocol.Session sess = AgentProtocol.session(secret, nonce, clientNonce, false, i, o);
+            List<String> keys;
+            try {
+                keys = AgentProtocol.readKeys(sess.receive());
+            } catch (EOFException ex) {
+                throw new IOException("Agent " + this + " hat die Anmeldung abgelehnt (agent.secret pruefen)");
+            }
+            dbKeys = Collections.unmodifiableSet(new LinkedHashSet<>(keys));
+            socket = s;
+            session = sess;
+            return dbKeys;
+        } catch (IOException ex) {
+            try { s.close(); } catch (IOException ignore) {}
+            throw ex;
+        }
+    }
+
+    public synchronized Set<String> getDbKeys() {
+        return dbKeys;
+    }
+
+    /** Fuehrt das SQL auf dem Agenten aus; liefert den Zellenwert (inkl. "Fehler: ..."). */
+    public synchronized String execute(String dbKey, String sql, ResultDigest.Mode mode, int buckets) {
+        try {
+            connect();
+            int requestId = nextRequestId++;
+            DataOutputStream out = session.message();
+            out.writeByte(AgentProtocol.OP_EXECUTE);
+            out.writeInt(requestId);
+            AgentProtocol.writeString(out, dbKey);
+            out.writeByte(mode.ordinal());
+            out.writeInt(buckets);
+            AgentProtocol.writeString(out, sql);
+            session.send();
+
+            DataInputStream in = session.receive();
+            if (in.readInt() != requestId) throw new IOException("Protokollfehler: falsche Antwort-ID");
+            byte status = in.readByte();
+            if (status == AgentProtocol.STATUS_OK) {
+                return AgentProtocol.readDigest(in).toDisplayString();
+            }
+            String msg = AgentProtocol.readString(in);
+            return status == AgentProtocol.STATUS_UNKNOWN_DB && "Unbekannt".equals(msg) ? msg : "Fehler: " + msg;
+        } catch (IOException ex) {
+            disconnect();
+            return "Fehler: Agent " + this + ": " + ex.getMessage();
+        }
+    }
+
+    private void disconnect() {
+        try { if (socket != null) socket.close(); } catch (IOException ignore) {}
+        socket = null;
+        session = null;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (session != null) {
+            try {
+                session.message().writeByte(AgentProtocol.OP_CLOSE);
+                session.send();
+            } catch (IOException ignore) {}
+        }
+        disconnect();
+    }
+
+    @Override
+    public String toString() {
+        return host + ":" + port;
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.dbcompare;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binaeres Protokoll zwischen App ({@link AgentClient}) und {@link DigestAgent}.
+ *
+ * Handshake:  C->A  int MAGIC, byte VERSION, 32 byte Client-Nonce
+ *             A->C  int MAGIC, byte VERSION, 32 byte Agent-Nonce
+ *             C->A  32 byte HMAC-SHA256(agent.secret, Agent-Nonce + Client-Nonce)
+ *             (falscher Nachweis -> Agent trennt ohne Antwort)
+ * Danach nur noch Rahmen: int Laenge, Nutzdaten, 32 byte HMAC-SHA256(Sitzungsschluessel, Richtung + Nr. + Nutzdaten).
+ * Der Sitzungsschluessel wird aus agent.secret und beiden Nonces abgeleitet, die Rahmen je Richtung
+ * fortlaufend nummeriert -> veraenderte, eingeschleuste, wiederholte oder umgestellte Rahmen fallen auf.
+ * Rahmen:     A->C  int n, n x str dbKey   (erster Rahmen; beweist dem Client, dass der Agent das Geheimnis kennt)
+ * Anfrage:    C->A  byte OP_EXECUTE, int requestId, str dbKey, byte mode, int buckets, str sql
+ * Antwort:    A->C  int requestId, byte status
+ *                   OK      -> byte mode, dann SCALAR: str | ROWS: long rows, 32 byte | BUCKETS: long rows, int n, n x long
+ *                   sonst   -> str Meldung
+ * Ende:       C->A  byte OP_CLOSE
+ * str = int Laenge + UTF-8-Bytes (-1 = null)
+ * Alle Laengen, Anzahlen und Modi werden beim Lesen geprueft; Verstoesse enden mit einer IOException.
+ * Die Rahmen sind signiert, nicht verschluesselt: ueber fremde Netze nur Digests/Zaehler abfragen
+ * oder die Verbindung zusaetzlich tunneln.
+ */
+final class AgentProtocol {
+
+    static final int MAGIC = 0x44424341; // "DBCA"
+    static final byte VERSION = 3;
+    static final int NONCE_BYTES = 32;
+    static final int MAC_BYTES = 32;
+
+    static final byte OP_CLOSE = 0;
+    static final byte OP_EXECUTE = 1;
+
+    static final byte STATUS_OK = 0;
+    static final byte STATUS_ERROR = 1;
+    static final byte STATUS_UNKNOWN_DB = 2;
+
+    private static final int MAX_STRING_BYTES = 16 * 1024 * 1024;
+    private static final int MAX_KEYS = 10_000;
+    private static final int MAX_FRAME_BYTES = MAX_STRING_BYTES + 64 * 1024;
+    private static final byte[] SESSION_LABEL = "dbcompare-session".getBytes(StandardCharsets.UTF_8);
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private AgentProtocol() {}
+
+    static byte[] newNonce() {
+        byte[] nonce = new byte[NONCE_BYTES];
+        RANDOM.nextBytes(nonce);
+        return nonce;
+    }
+
+    /** Nachweis des gemeinsamen Geheimnisses fuer die Nonces beider Seiten. */
+    static byte[] proof(String secret, byte[] agentNonce, byte[] clientNonce) throws IOException {
+        return hmac(secret.getBytes(StandardCharsets.UTF_8), agentNonce, clientNonce);
+    }
+
+    /** Vergleich in konstanter Zeit (kein Timing-Orakel fuer den Nachweis). */
+    static boolean verify(String secret, byte[] agentNonce, byte[] clientNonce, byte[] proof) throws IOException {
+        return MessageDigest.isEqual(proof(secret, agentNonce, clientNonce), proof);
+    }
+
+    /**
+     * Signierter Kanal nach erfolgreichem Handshake.
+     * @param agent true auf der Agentenseite (bestimmt die Senderichtung in der Signatur)
+     */
+    static Session session(String secret, byte[] agentNonce, byte[] clientNonce, boolean agent,
+                           DataInputStream in, DataOutputStream out) throws IOException {
+        byte[] key = hmac(secret.getBytes(StandardCharsets.UTF_8), SESSION_LABEL, agentNonce, clientNonce);
+        return new Session(key, agent ? (byte) 'A' : (byte) 'C', agent ? (byte) 'C' : (byte) 'A', in, out);
+    }
+
+    private static byte[] hmac(byte[] key, byte[]... parts) throws IOException {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            for (byte[] p : parts) mac.update(p);
+            return mac.doFinal();
+        } catch (GeneralSecurityException ex) {
+            throw new IOException("HMAC nicht verfuegbar: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Rahmen einer Sitzung: {@link #message()} fuellen, {@link #send()} signiert und verschickt;
+     * {@link #receive()} liefert die Nutzdaten erst nach geprueftem HMAC und passender Nummer.
+     */
+    static final class Session {
+        private final Mac mac;
+        private final byte sendDirection;
+        private final byte receiveDirection;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        private final DataOutputStream message = new DataOutputStream(buffer);
+        private long sent;
+        private long received;
+
+        private Session(byte[] key, byte sendDirection, byte receiveDirection, DataInputStream in, DataOutputStream out)
+                throws IOException {
+            try {
+                mac = Mac.getInstance("HmacSHA256");
+                mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            } catch (GeneralSecurityException ex) {
+                throw new IOException("HMAC nicht verfuegbar: " + ex.getMessage(), ex);
+            }
+            this.sendDirection = sendDirection;
+            this.receiveDirection = receiveDirection;
+            this.in = in;
+            this.out = out;
+        }
+
+        /** Puffer fuer den naechsten ausgehenden Rahmen. */
+        DataOutputStream message() {
+            return message;
+        }
+
+        void send() throws IOException {
+            message.flush();
+            byte[] payload = buffer.toByteArray();
+            buffer.reset();
+            out.writeInt(payload.length);
+            out.write(payload);
+            out.write(tag(sendDirection, sent++, payload));
+            out.flush();
+        }
+
+        DataInputStream receive() throws IOException {
+            int len = in.readInt();
+            if (len < 0 || len > MAX_FRAME_BYTES) throw new IOException("Protokollfehler: Rahmen zu lang (" + len + ")");
+            byte[] payload = new byte[len];
+            in.readFully(payload);
+            byte[] tag = new byte[MAC_BYTES];
+            in.readFully(tag);
+            if (!MessageDigest.isEqual(tag(receiveDirection, received, payload), tag)) {
+                throw new IOException("Protokollfehler: Signatur ungueltig");
+            }
+            received++;
+            return new DataInputStream(new ByteArrayInputStream(payload));
+        }
+
+        private byte[] tag(byte direction, long seq, byte[] payload) {
+            mac.update(direction);
+            for (int shift = 56; shift >= 0; shift -= 8) mac.update((byte) (seq >>> shift));
+            return mac.doFinal(payload);
+        }
+    }
+
+    static ResultDigest.Mode readMode(DataInputStream in) throws IOException {
+        int ordinal = in.readByte();
+        ResultDigest.Mode[] modes = ResultDigest.Mode.values();
+        if (ordinal < 0 || ordinal >= modes.length) throw new IOException("Protokollfehler: unbekannter Modus " + ordinal);
+        return modes[ordinal];
+    }
+
+    static int readBucketCount(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        if (n < 1 || n > ResultDigest.MAX_BUCKETS) throw new IOException("Protokollfehler: Bucket-Anzahl " + n);
+        return n;
+    }
+
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len == -1) return null;
+        if (len < 0 || len > MAX_STRING_BYTES) throw new IOException("Protokollfehler: String zu lang (" + len + ")");
+        byte[] b = new byte[len];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    static void writeKeys(DataOutputStream out, List<String> keys) throws IOException {
+        out.writeInt(keys.size());
+        for (String k : keys) writeString(out, k);
+    }
+
+    static List<String> readKeys(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        if (n < 0 || n > MAX_KEYS) throw new IOException("Protokollfehler: " + n + " DB-Kuerzel");
+        List<String> keys = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) keys.add(readString(in));
+        return keys;
+    }
+
+    static void writeDigest(DataOutputStream out, ResultDigest d) throws IOException {
+        out.writeByte(d.mode.ordinal());
+        switch (d.mode) {
+            case ROWS:
+                out.writeLong(d.rowCount);
+                out.write(d.sha256);
+                break;
+            case BUCKETS:
+                out.writeLong(d.rowCount);
+                out.writeInt(d.buckets.length);
+                for (long b : d.buckets) out.writeLong(b);
+                break;
+            default:
+                writeString(out, d.scalar);
+        }
+    }
+
+    static ResultDigest readDigest(DataInputStream in) throws IOException {
+        ResultDigest.Mode mode = readMode(in);
+        switch (mode) {
+            case ROWS: {
+                long rows = in.readLong();
+                byte[] sha = new byte[32];
+                in.readFully(sha);
+                return new ResultDigest(mode, null, rows, sha, null);
+            }
+            case BUCKETS: {
+                long rows = in.readLong();
+                long[] buckets = new long[readBucketCount(in)];
+                for (int i = 0; i < buckets.length; i++) buckets[i] = in.readLong();
+                return new ResultDigest(mode, null, rows, null, buckets);
+            }
+            default:
+                return new ResultDigest(mode, readString(in), 0, null, null);
+        }
+    }
+}
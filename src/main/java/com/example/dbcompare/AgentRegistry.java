@@ -0,0 +1,70 @@
+package com.example.dbcompare;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Bekannte {@link DigestAgent}s aus der Konfiguration ("agents=host:port,host:port").
+ * Beim Verbinden meldet jeder Agent seine DB-Kuerzel; fuer diese wird statt einer
+ * direkten JDBC-Verbindung der Agent verwendet.
+ */
+public class AgentRegistry {
+
+    private static final Logger LOG = LogManager.getLogger(AgentRegistry.class);
+
+    private final List<AgentClient> agents;
+    private final Map<String, AgentClient> byDbKey = new HashMap<>();
+
+    public AgentRegistry(List<AgentClient> agents) {
+        this.agents = agents;
+    }
+
+    /**
+     * Liest "agents" (leer = keine Agenten), "agent.timeout.seconds" (Standard 120) und
+     * "agent.secret" (Pflicht bei Agenten, gleicher Wert wie beim Agenten; auch ENC:v1:).
+     */
+    public static AgentRegistry fromConfig(Properties p) {
+        int timeoutMs = Integer.parseInt(p.getProperty("agent.timeout.seconds", "120").trim()) * 1000;
+        String secret = CryptoUtil.decryptToString(p.getProperty("agent.secret", "").trim());
+        List<AgentClient> list = new ArrayList<>();
+        for (String part : p.getProperty("agents", "").split(",")) {
+            String a = part.trim();
+            if (a.isEmpty()) continue;
+            int colon = a.lastIndexOf(':');
+            String host = colon > 0 ? a.substring(0, colon) : a;
+            int port = colon > 0 ? Integer.parseInt(a.substring(colon + 1).trim()) : DigestAgent.DEFAULT_PORT;
+            if (secret.isEmpty()) throw new IllegalArgumentException("agent.secret fehlt (Pflicht bei agents=)");
+            list.add(new AgentClient(host, port, timeoutMs, secret));
+        }
+        return new AgentRegistry(list);
+    }
+
+    public boolean isEmpty() {
+        return agents.isEmpty();
+    }
+
+    /** Verbindet alle Agenten (bereits verbundene sind guenstig) und aktualisiert die Zuordnung. */
+    public synchronized void discover() {
+        byDbKey.clear();
+        for (AgentClient a : agents) {
+            try {
+                for (String k : a.connect()) byDbKey.putIfAbsent(k, a);
+            } catch (IOException ex) {
+                LOG.warn("Agent {} nicht erreichbar: {}", a, ex.getMessage());
+            }
+        }
+    }
+
+    /** Agent fuer ein DB-Kuerzel oder null (dann direkte JDBC-Verbindung). */
+    public synchronized AgentClient forKey(String dbKey) {
+        return byDbKey.get(dbKey);
+    }
+
+    public synchronized void closeAll() {
+        for (AgentClient a : agents) a.close();
+        byDbKey.clear();
+    }
+}
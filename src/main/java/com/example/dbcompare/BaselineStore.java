@@ -0,0 +1,162 @@
+package com.example.dbcompare;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Gespeicherte Sollwerte ("Baselines") je QUERY_ID.
+ * - Hat eine Abfrage eine Baseline, wird gegen sie statt gegen die erste DB-Spalte verglichen;
+ *   die Referenz-DB (erstes DB_KUERZEL) wird dann nur noch beim expliziten Aktualisieren abgefragt
+ * - Uebernahme aus einer Spalte des aktuellen Laufs oder Import aus CSV
+ *   ("QUERY_ID;WERT" oder Lauf-Export "QUERY_ID;DB;ZEIT;MS;WERT")
+ * - Datei "baseline.file" (Standard ~/.dbcompare/baselines.properties), atomar geschrieben
+ */
+public class BaselineStore {
+
+    private static final String VALUE = "value.";
+    private static final String SOURCE = "source.";
+    private static final String CAPTURED = "captured.";
+
+    /** Ein gespeicherter Sollwert. */
+    public static final class Baseline {
+        final String value;
+        final String source;       // DB-Kuerzel oder Dateiname
+        final long capturedMillis;
+
+        Baseline(String value, String source, long capturedMillis) {
+            this.value = value;
+            this.source = source;
+            this.capturedMillis = capturedMillis;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        /** Kurzinfo fuer Tooltips, z.B. "Baseline aus PROD1 vom 01.02.2026 10:00". */
+        public String describe() {
+            return "Baseline aus " + source + " vom "
+                    + new java.text.SimpleDateFormat("dd.MM.yyyy HH:mm").format(new java.util.Date(capturedMillis));
+        }
+    }
+
+    private final Path file;
+    private final Map<String, Baseline> baselines = new HashMap<>();
+
+    public BaselineStore(Path file) {
+        this.file = file;
+    }
+
+    public static BaselineStore fromConfig(Properties p) throws IOException {
+        String f = p.getProperty("baseline.file");
+        Path path = (f == null || f.trim().isEmpty())
+                ? Paths.get(System.getProperty("user.home"), ".dbcompare", "baselines.properties")
+                : Paths.get(f.trim());
+        BaselineStore store = new BaselineStore(path);
+        store.load();
+        return store;
+    }
+
+    /** Schluessel einer Abfrage (QUERY_ID, ersatzweise wie in der Historie aus dem SQL). */
+    public static String keyOf(QueryModel qm) {
+        String series = HistoryStore.seriesKey(qm, "");
+        return series.substring(0, series.length() - 1);
+    }
+
+    public synchronized Baseline get(QueryModel qm) {
+        return baselines.get(keyOf(qm));
+    }
+
+    public synchronized boolean isEmpty() {
+        return baselines.isEmpty();
+    }
+
+    public synchronized void put(QueryModel qm, String value, String source) throws IOException {
+        baselines.put(keyOf(qm), new Baseline(value, source, System.currentTimeMillis()));
+        save();
+    }
+
+    /** Uebernimmt mehrere Werte (z.B. eine ganze Spalte) mit einem Schreibvorgang. */
+    public synchronized void putAll(Map<String, String> valuesByKey, String source) throws IOException {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, String> e : valuesByKey.entrySet()) {
+            baselines.put(e.getKey(), new Baseline(e.getValue(), source, now));
+        }
+        save();
+    }
+
+    public synchronized void remove(QueryModel qm) throws IOException {
+        if (baselines.remove(keyOf(qm)) != null) save();
+    }
+
+    /** Liest eine Import-Datei (siehe {@link CsvReader}) fuer {@link #csvDbKeys} und {@link #importCsv}. */
+    public static List<List<String>> readCsv(Path csv) throws IOException {
+        return CsvReader.readAll(csv);
+    }
+
+    /** DB-Kuerzel eines Lauf-Exports (leer bei "QUERY_ID;WERT"). */
+    public static Set<String> csvDbKeys(List<List<String>> rows) {
+        Set<String> keys = new TreeSet<>();
+        if (rows.isEmpty() || rows.get(0).size() < 5) return keys;
+        for (List<String> r : rows.subList(1, rows.size())) {
+            if (r.size() >= 5) keys.add(r.get(1));
+        }
+        return keys;
+    }
+
+    /**
+     * Importiert Sollwerte aus CSV. Beim Lauf-Export zaehlt nur dbKey (je QUERY_ID der letzte Wert);
+     * fehlgeschlagene Werte werden uebersprungen.
+     * @param rows Datensaetze aus {@link #readCsv}
+     * @param fileName Herkunft fuer die Anzeige (Dateiname)
+     * @return Anzahl uebernommener Baselines
+     */
+    public int importCsv(List<List<String>> rows, String fileName, String dbKey) throws IOException {
+        if (rows.isEmpty()) return 0;
+        boolean runExport = rows.get(0).size() >= 5;
+        boolean header = "QUERY_ID".equalsIgnoreCase(rows.get(0).get(0).trim());
+        Map<String, String> values = new LinkedHashMap<>();
+        for (List<String> r : rows.subList(header ? 1 : 0, rows.size())) {
+            if (runExport) {
+                if (r.size() < 5 || !r.get(1).equals(dbKey) || Main.isFailed(r.get(4))) continue;
+                values.put(r.get(0).trim(), r.get(4));
+            } else if (r.size() >= 2 && !r.get(0).trim().isEmpty()) {
+                values.put(r.get(0).trim(), r.get(1));
+            }
+        }
+        putAll(values, fileName + (runExport ? " (" + dbKey + ")" : ""));
+        return values.size();
+    }
+
+    private void load() throws IOException {
+        if (!Files.exists(file)) return;
+        Properties p = new Properties();
+        try (Reader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            p.load(r);
+        }
+        for (String name : p.stringPropertyNames()) {
+            if (!name.startsWith(VALUE)) continue;
+            String key = name.substring(VALUE.length());
+            long captured = Long.parseLong(p.getProperty(CAPTURED + key, "0"));
+            baselines.put(key, new Baseline(p.getProperty(name), p.getProperty(SOURCE + key, "?"), captured));
+        }
+    }
+
+    private void save() throws IOException {
+        Properties p = new Properties();
+        for (Map.Entry<String, Baseline> e : baselines.entrySet()) {
+            p.setProperty(VALUE + e.getKey(), e.getValue().value);
+            p.setProperty(SOURCE + e.getKey(), e.getValue().source);
+            p.setProperty(CAPTURED + e.getKey(), Long.toString(e.getValue().capturedMillis));
+        }
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, "baselines", ".tmp");
+        try (Writer w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            p.store(w, "DBCompareFX Baselines");
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.dbcompare;
+
+import java.math.BigDecimal;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Zerlegt eine schwere Abfrage in Teilabfragen (Abfrage-Option "split=SPALTE") und fuehrt sie
+ * parallel ueber mehrere Sessions derselben DB aus.
+ * - Das SQL enthaelt {@link #PLACEHOLDER} als Bedingung im WHERE (z.B. "WHERE &lt;Platzhalter&gt; AND ..."),
+ *   ungeteilt wird daraus "1=1"
+ * - Mit "split.table" werden Schluesselbereiche aus MIN/MAX der Spalte gebildet (Bereichs-Pruning),
+ *   sonst Hash-Teilung per ORA_HASH (jeder Typ, auch ROWID)
+ * - "chunks" (Standard 8) Teilabfragen, hoechstens "chunk.sessions" (Konfiguration) gleichzeitig
+ * Teilergebnisse: SCALAR per "combine=sum|min|max" (Standard sum), BUCKETS exakt summiert,
+ * Zeilenstroeme (diff=rows) als gemeinsame Runs; digest=rows ist reihenfolgeabhaengig und nicht teilbar.
+ */
+public final class ChunkedQuery {
+
+    public static final String PLACEHOLDER = "/*CHUNK*/";
+
+    private static final int DEFAULT_CHUNKS = 8;
+
+    /** Zusaetzliche Sessions einer DB fuer die Teilabfragen. */
+    public interface SessionPool {
+        Connection acquire() throws SQLException;
+
+        void release(Connection c);
+    }
+
+    /** Arbeit je Teilabfrage. */
+    public interface ChunkWork<T> {
+        T run(Connection c, String sql) throws Exception;
+    }
+
+    private ChunkedQuery() {}
+
+    public static boolean isEnabled(QueryOptions options) {
+        return options.has("split");
+    }
+
+    /** SQL fuer die ungeteilte Ausfuehrung (Platzhalter -> 1=1). */
+    public static String unchunked(String sql) {
+        return sql == null ? null : sql.replace(PLACEHOLDER, "1=1");
+    }
+
+    /** Bildet die Teilabfragen; Schluesselbereiche werden dafuer ueber c ermittelt. */
+    public static List<String> chunkSql(Connection c, String sql, QueryOptions options) throws SQLException {
+        if (sql == null || !sql.contains(PLACEHOLDER)) {
+            throw new IllegalArgumentException("split= braucht " + PLACEHOLDER + " als Bedingung im WHERE");
+        }
+        String column = options.get("split").trim();
+        int n = (int) Math.max(1, options.getLong("chunks", DEFAULT_CHUNKS));
+        List<String> predicates = null;
+        String table = options.get("split.table");
+        if (table != null && !table.trim().isEmpty()) predicates = rangePredicates(c, column, table.trim(), n);
+        if (predicates == null) {
+            predicates = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                predicates.add("NVL(ORA_HASH(" + column + ", " + (n - 1) + "), 0) = " + i);
+            }
+        }
+        List<String> out = new ArrayList<>(predicates.size());
+        for (String p : predicates) out.add(sql.replace(PLACEHOLDER, "(" + p + ")"));
+        return out;
+    }
+
+    /**
+     * Gleich breite Bereiche zwischen MIN und MAX einer ganzzahligen Spalte; NULLs im ersten Bereich.
+     * @return null, wenn die Spalte nicht ganzzahlig ist (dann Hash-Teilung)
+     */
+    private static List<String> rangePredicates(Connection c, String column, String table, int n) throws SQLException {
+        String bare = column.substring(column.lastIndexOf('.') + 1);
+        long min, max;
+        try (Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT MIN(" + bare + "), MAX(" + bare + ") FROM " + table)) {
+            if (!rs.next()) return null;
+            Object lo = rs.getObject(1), hi = rs.getObject(2);
+            if (lo == null || hi == null) return null;                       // leer: eine Teilabfrage genuegt
+            if (!(lo instanceof Number) || !(hi instanceof Number)) return null;
+            BigDecimal l = new BigDecimal(lo.toString()), h = new BigDecimal(hi.toString());
+            if (l.scale() > 0 && l.stripTrailingZeros().scale() > 0) return null;
+            min = l.longValueExact();
+            max = h.setScale(0, java.math.RoundingMode.CEILING).longValueExact();
+        } catch (ArithmeticException ex) {
+            return null;
+        }
+        return ranges(column, min, max, n);
+    }
+
+    /** Hoechstens n gleich breite Bereiche ueber [min, max]; null bei Ueberlauf der Spannweite. */
+    static List<String> ranges(String column, long min, long max, int n) {
+        long span = max - min + 1;
+        if (span <= 0) return null;                                           // Ueberlauf
+        n = (int) Math.min(n, span);
+        List<String> out = new ArrayList<>(n);
+        long step = span / n;
+        for (int i = 0; i < n; i++) {
+            long from = min + i * step;
+            long to = min + (i + 1) * step;
+            if (n == 1) out.add("1=1");
+            else if (i == 0) out.add(column + " < " + to + " OR " + column + " IS NULL");
+            else if (i == n - 1) out.add(column + " >= " + from);
+            else out.add(column + " >= " + from + " AND " + column + " < " + to);
+        }
+        return out;
+    }
+
+    /**
+     * Fuehrt die Teilabfragen mit hoechstens 'sessions' Sessions parallel aus; 'first' wird
+     * mitbenutzt, weitere Sessions kommen aus dem Pool. Ergebnisse in Reihenfolge der Teilabfragen.
+     */
+    public static <T> List<T> run(List<String> chunks, int sessions, Connection first, SessionPool pool,
+                                  ExecutorService executor, ChunkWork<T> work) throws Exception {
+        int workers = Math.max(1, Math.min(sessions, chunks.size()));
+        final List<T> results = new ArrayList<>(Collections.<T>nCopies(chunks.size(), null));
+        final AtomicInteger next = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>(workers);
+        for (int w = 0; w < workers; w++) {
+            final boolean own = w == 0;
+            futures.add(executor.submit(() -> {
+                Connection c;
+                try {
+                    c = own ? first : pool.acquire();
+                } catch (SQLTransientConnectionException ex) {
+                    return null;                                        // Session-Limit: uebrige Worker teilen sich die Arbeit
+                }
+                try {
+                    int i;
+                    while ((i = next.getAndIncrement()) < chunks.size()) {
+                        T r = work.run(c, chunks.get(i));
+                        synchronized (results) {
+                            results.set(i, r);
+                        }
+                    }
+                } finally {
+                    if (!own) pool.release(c);
+                }
+                return null;
+            }));
+        }
+        Exception failure = null;
+        for (Future<?> f : futures) {
+            try {
+                f.get();
+            } catch (ExecutionException ex) {
+                next.set(chunks.size());                                     // uebrige Teilabfragen auslassen
+                if (failure == null) failure = ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+            }
+        }
+        if (failure != null) throw failure;
+        return results;
+    }
+
+    /** Fasst Teil-Digests zusammen. */
+    public static ResultDigest combine(List<ResultDigest> parts, ResultDigest.Mode mode, QueryOptions options) {
+        if (mode == ResultDigest.Mode.BUCKETS) return ResultDigest.mergeBuckets(parts);
+        if (mode == ResultDigest.Mode.ROWS) {
+            throw new IllegalArgumentException("digest=rows ist mit split= nicht teilbar (digest=buckets verwenden)");
+        }
+        String fn = options.get("combine", "sum").toLowerCase(Locale.ROOT);
+        BigDecimal acc = null;
+        for (ResultDigest d : parts) {
+            String v = d.scalar;
+            if (v == null || v.equals("NULL") || v.equals("(keine Zeilen)")) continue;
+            BigDecimal x;
+            try {
+                x = new BigDecimal(v.trim());
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Teilergebnis nicht numerisch (combine=" + fn + "): " + v);
+            }
+            if (acc == null) acc = x;
+            else if (fn.equals("min")) acc = acc.min(x);
+            else if (fn.equals("max")) acc = acc.max(x);
+            else if (fn.equals("sum")) acc = acc.add(x);
+            else throw new IllegalArgumentException("combine= erwartet sum, min oder max: " + fn);
+        }
+        String value = acc == null ? "NULL" : acc.stripTrailingZeros().toPlainString();
+        return new ResultDigest(ResultDigest.Mode.SCALAR, value, 0, null, null);
+    }
+}
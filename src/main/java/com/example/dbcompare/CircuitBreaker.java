@@ -0,0 +1,145 @@
+package com.example.dbcompare;
+
+import java.sql.*;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+/**
+ * Circuit Breaker je DB-Kuerzel.
+ * - CLOSED   : normal; Verbindungs-/Timeout-Fehler und zu langsame Antworten zaehlen als Fehlschlag
+ * - OPEN     : nach breaker.failures Fehlschlaegen in Folge wird die DB fuer die Backoff-Zeit
+ *              uebersprungen (kein Verbindungsversuch, Zellen mit {@link #SKIPPED_PREFIX})
+ * - HALF_OPEN: nach Ablauf genau ein Probe-Aufruf; Erfolg -> CLOSED, Fehlschlag -> OPEN mit
+ *              verdoppeltem Backoff (bis breaker.backoff.max.seconds)
+ * Fachliche SQL-Fehler (z.B. ORA-00942) zeigen eine erreichbare DB und zaehlen nicht.
+ */
+public class CircuitBreaker {
+
+    public static final String SKIPPED_PREFIX = "Übersprungen: ";
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+    private final long slowMillis;                       // 0 = Latenz nicht bewerten
+    private final Map<String, Health> health = new HashMap<>();
+
+    public CircuitBreaker(int failureThreshold, long baseBackoffMillis, long maxBackoffMillis, long slowMillis) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = Math.max(baseBackoffMillis, maxBackoffMillis);
+        this.slowMillis = slowMillis;
+    }
+
+    /** breaker.failures (3), breaker.backoff.seconds (30), breaker.backoff.max.seconds (600), breaker.slow.millis (0). */
+    public static CircuitBreaker fromConfig(Properties p) {
+        return new CircuitBreaker(
+                Integer.parseInt(p.getProperty("breaker.failures", "3").trim()),
+                Long.parseLong(p.getProperty("breaker.backoff.seconds", "30").trim()) * 1000L,
+                Long.parseLong(p.getProperty("breaker.backoff.max.seconds", "600").trim()) * 1000L,
+                Long.parseLong(p.getProperty("breaker.slow.millis", "0").trim()));
+    }
+
+    /** Offen und Backoff noch nicht abgelaufen -> gar nicht erst verbinden. */
+    public synchronized boolean isOpen(String dbKey) {
+        Health h = health.get(dbKey);
+        return h != null && h.state == State.OPEN && System.currentTimeMillis() < h.openUntil;
+    }
+
+    /** Darf jetzt ein Aufruf auf die DB erfolgen? Nach Ablauf des Backoffs genau ein Probe-Aufruf. */
+    public synchronized boolean allow(String dbKey) {
+        Health h = health.get(dbKey);
+        if (h == null || h.state == State.CLOSED) return true;
+        if (h.state == State.OPEN) {
+            if (System.currentTimeMillis() < h.openUntil) return false;
+            h.state = State.HALF_OPEN;
+            h.probeInFlight = true;
+            return true;
+        }
+        // HALF_OPEN: nur ein Probe-Aufruf gleichzeitig
+        if (h.probeInFlight) return false;
+        h.probeInFlight = true;
+        return true;
+    }
+
+    /** Erfolgreicher Aufruf (DB hat geantwortet); zu langsame Antworten gelten als Fehlschlag. */
+    public synchronized void success(String dbKey, long latencyMillis) {
+        if (slowMillis > 0 && latencyMillis > slowMillis) {
+            failure(dbKey, latencyMillis);
+            return;
+        }
+        Health h = healthOf(dbKey);
+        h.recordLatency(latencyMillis);
+        h.consecutiveFailures = 0;
+        h.backoffMillis = 0;
+        h.state = State.CLOSED;
+        h.probeInFlight = false;
+    }
+
+    public synchronized void failure(String dbKey, long latencyMillis) {
+        Health h = healthOf(dbKey);
+        h.recordLatency(latencyMillis);
+        h.consecutiveFailures++;
+        h.probeInFlight = false;
+        if (h.state == State.HALF_OPEN || h.consecutiveFailures >= failureThreshold) {
+            h.backoffMillis = h.backoffMillis == 0 ? baseBackoffMillis : Math.min(h.backoffMillis * 2, maxBackoffMillis);
+            h.openUntil = System.currentTimeMillis() + h.backoffMillis;
+            h.state = State.OPEN;
+        }
+    }
+
+    /** Verbindungs-/Timeout-Fehler? Fachliche SQL-Fehler zeigen dagegen eine erreichbare DB. */
+    public static boolean isHealthFailure(Throwable ex) {
+        for (Throwable t = ex; t != null; t = t.getCause()) {
+            if (t instanceof SQLRecoverableException || t instanceof SQLTimeoutException
+                    || t instanceof SQLTransientConnectionException || t instanceof SQLNonTransientConnectionException
+                    || t instanceof java.io.IOException) {
+                return true;
+            }
+            if (t instanceof SQLException) {
+                String state = ((SQLException) t).getSQLState();
+                if (state != null && state.startsWith("08")) return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized State state(String dbKey) {
+        Health h = health.get(dbKey);
+        return h == null ? State.CLOSED : h.state;
+    }
+
+    /** Zellentext fuer eine uebersprungene DB. */
+    public synchronized String marker(String dbKey) {
+        Health h = healthOf(dbKey);
+        return SKIPPED_PREFIX + dbKey + " gesperrt bis "
+                + new SimpleDateFormat("HH:mm:ss").format(new java.util.Date(h.openUntil))
+                + " (" + h.consecutiveFailures + " Fehler in Folge)";
+    }
+
+    /** Kurzinfo fuer Tooltips, z.B. "CLOSED, Ø 120 ms". */
+    public synchronized String describe(String dbKey) {
+        Health h = health.get(dbKey);
+        if (h == null) return "CLOSED";
+        return h.state + (h.avgLatencyMillis >= 0 ? ", Ø " + Math.round(h.avgLatencyMillis) + " ms" : "")
+                + (h.consecutiveFailures > 0 ? ", " + h.consecutiveFailures + " Fehler in Folge" : "");
+    }
+
+    private Health healthOf(String dbKey) {
+        return health.computeIfAbsent(dbKey, k -> new Health());
+    }
+
+    private static final class Health {
+        State state = State.CLOSED;
+        int consecutiveFailures;
+        long backoffMillis;
+        long openUntil;
+        boolean probeInFlight;
+        double avgLatencyMillis = -1;        // gleitender Mittelwert
+
+        void recordLatency(long millis) {
+            avgLatencyMillis = avgLatencyMillis < 0 ? millis : avgLatencyMillis * 0.8 + millis * 0.2;
+        }
+    }
+}
@@ -0,0 +1,429 @@
+package com.example.dbcompare;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Normalisierungsregeln je Abfrage (Abfrage-Option "rules=regel,SPALTE:regel,...").
+ * Regeln: trim, casefold (Grossschreibung), nullempty (leer = NULL), scale(n) (Zahlen auf n
+ * Nachkommastellen, HALF_UP), exclude (nur mit Spalte). Ohne Spalte gilt eine Regel fuer alle
+ * Spalten, scale dann nur fuer numerische.
+ * - Die Regeln werden je Abfrage einmal geparst und je Spaltenlayout einmal zu einer Kette von
+ *   Spaltengliedern uebersetzt (nur die noetigen Schritte, Flags als final-Felder gebunden); jedes
+ *   Glied ruft das naechste ueber sein eigenes Feld auf, statt dass eine Schleife alle Spalten ueber
+ *   eine gemeinsame (megamorphe) Aufrufstelle schickt
+ * - Pro Wert wird direkt in den Zeilenpuffer geschrieben (Trim/Faltung/Rundung zeichenweise,
+ *   ohne Zwischen-Strings); nur Exponentialdarstellungen laufen ueber BigDecimal
+ * Ohne Regeln entspricht die Zeile exakt dem bisherigen Format (Digests bleiben vergleichbar).
+ */
+public final class CompareRules {
+
+    public static final CompareRules NONE = new CompareRules("", Collections.<String, Spec>emptyMap(), new Spec());
+
+    private static final char COLUMN_SEP = '\u001F';
+    private static final Map<String, CompareRules> COMPILED = new ConcurrentHashMap<>();
+
+    /**
+     * Glied der Zeilenkette fuer eine Spalte. Jede Unterklasse hat ihr eigenes {@link #append}
+     * (bewusst nicht in der Basisklasse zusammengefasst): so gehoert jede Aufrufstelle "next.append"
+     * genau einer Gliedart und bleibt fuer den JIT mono-/bimorph und inline-faehig.
+     */
+    abstract static class Column {
+        final int index;
+        final boolean separator;   // U+001F vor dem Wert (nicht erste Spalte)
+        final Column next;         // null = letzte Spalte
+
+        Column(int index, boolean separator, Column next) {
+            this.index = index;
+            this.separator = separator;
+            this.next = next;
+        }
+
+        /** Schreibt diese und alle folgenden Spalten der aktuellen Zeile. */
+        abstract void append(ResultSet rs, StringBuilder out) throws SQLException;
+
+        /** Schreibt nur den Wert dieser Spalte (ohne Trenner). */
+        abstract void appendValue(ResultSet rs, StringBuilder out) throws SQLException;
+    }
+
+    private static final class LobColumn extends Column {
+        private final int type;
+
+        LobColumn(int index, boolean separator, Column next, int type) {
+            super(index, separator, next);
+            this.type = type;
+        }
+
+        @Override
+        void append(ResultSet rs, StringBuilder out) throws SQLException {
+            if (separator) out.append(COLUMN_SEP);
+            out.append(LobDigest.describe(rs, index, type));
+            if (next != null) next.append(rs, out);
+        }
+
+        @Override
+        void appendValue(ResultSet rs, StringBuilder out) throws SQLException {
+            out.append(LobDigest.describe(rs, index, type));
+        }
+    }
+
+    private static final class ScaledColumn extends Column {
+        private final int scale;
+
+        ScaledColumn(int index, boolean separator, Column next, int scale) {
+            super(index, separator, next);
+            this.scale = scale;
+        }
+
+        @Override
+        void append(ResultSet rs, StringBuilder out) throws SQLException {
+            if (separator) out.append(COLUMN_SEP);
+            appendValue(rs, out);
+            if (next != null) next.append(rs, out);
+        }
+
+        @Override
+        void appendValue(ResultSet rs, StringBuilder out) throws SQLException {
+            String v = rs.getString(index);
+            if (v == null) out.append("NULL");
+            else appendScaled(v, scale, out);
+        }
+    }
+
+    private static final class PlainColumn extends Column {
+        PlainColumn(int index, boolean separator, Column next) {
+            super(index, separator, next);
+        }
+
+        @Override
+        void append(ResultSet rs, StringBuilder out) throws SQLException {
+            if (separator) out.append(COLUMN_SEP);
+            String v = rs.getString(index);
+            out.append(v == null ? "NULL" : v);
+            if (next != null) next.append(rs, out);
+        }
+
+        @Override
+        void appendValue(ResultSet rs, StringBuilder out) throws SQLException {
+            String v = rs.getString(index);
+            out.append(v == null ? "NULL" : v);
+        }
+    }
+
+    private static final class TextColumn extends Column {
+        private final boolean trim, fold, nullEmpty;
+
+        TextColumn(int index, boolean separator, Column next, boolean trim, boolean fold, boolean nullEmpty) {
+            super(index, separator, next);
+            this.trim = trim;
+            this.fold = fold;
+            this.nullEmpty = nullEmpty;
+        }
+
+        @Override
+        void append(ResultSet rs, StringBuilder out) throws SQLException {
+            if (separator) out.append(COLUMN_SEP);
+            appendText(rs.getString(index), trim, fold, nullEmpty, out);
+            if (next != null) next.append(rs, out);
+        }
+
+        @Override
+        void appendValue(ResultSet rs, StringBuilder out) throws SQLException {
+            appendText(rs.getString(index), trim, fold, nullEmpty, out);
+        }
+    }
+
+    /** Regeln einer Spalte (bzw. aller Spalten). */
+    private static final class Spec {
+        boolean trim, casefold, nullEmpty, exclude;
+        int scale = -1;
+
+        Spec merge(Spec column) {
+            Spec s = new Spec();
+            s.trim = trim || column.trim;
+            s.casefold = casefold || column.casefold;
+            s.nullEmpty = nullEmpty || column.nullEmpty;
+            s.exclude = column.exclude;
+            s.scale = column.scale >= 0 ? column.scale : scale;
+            return s;
+        }
+    }
+
+    private final String text;
+    private final Map<String, Spec> columns;   // Spaltenname (gross) -> Regeln
+    private final Spec all;
+    private final Map<String, RowFormat> layouts = new ConcurrentHashMap<>();
+
+    private CompareRules(String text, Map<String, Spec> columns, Spec all) {
+        this.text = text;
+        this.columns = columns;
+        this.all = all;
+    }
+
+    /** Regeln der Abfrage (geparst einmal je Regeltext). */
+    public static CompareRules of(QueryOptions options) {
+        String text = options.get("rules");
+        if (text == null || text.trim().isEmpty()) return NONE;
+        return COMPILED.computeIfAbsent(text.trim(), CompareRules::parse);
+    }
+
+    public boolean isEmpty() {
+        return this == NONE;
+    }
+
+    private static CompareRules parse(String text) {
+        Map<String, Spec> columns = new HashMap<>();
+        Spec all = new Spec();
+        for (String item : text.split(",")) {
+            String it = item.trim();
+            if (it.isEmpty()) continue;
+            int colon = it.indexOf(':');
+            Spec target = all;
+            if (colon >= 0) {
+                String col = it.substring(0, colon).trim().toUpperCase(Locale.ROOT);
+                target = columns.computeIfAbsent(col, k -> new Spec());
+                it = it.substring(colon + 1).trim();
+            }
+            String rule = it.toLowerCase(Locale.ROOT);
+            if (rule.equals("trim")) target.trim = true;
+            else if (rule.equals("casefold")) target.casefold = true;
+            else if (rule.equals("nullempty")) target.nullEmpty = true;
+            else if (rule.equals("exclude") && target != all) target.exclude = true;
+            else if (rule.startsWith("scale(") && rule.endsWith(")")) {
+                try {
+                    target.scale = Integer.parseInt(rule.substring(6, rule.length() - 1).trim());
+                } catch (NumberFormatException ex) {
+                    target.scale = -1;
+                }
+                if (target.scale < 0) throw new IllegalArgumentException("rules=: scale(n) erwartet n >= 0: " + it);
+            } else {
+                throw new IllegalArgumentException("rules=: unbekannte Regel '" + it + "'"
+                        + " (trim, casefold, nullempty, scale(n), SPALTE:exclude)");
+            }
+        }
+        return new CompareRules(text, columns, all);
+    }
+
+    /** Spaltenregeln fuer das Layout des ResultSets (je Layout einmal uebersetzt). */
+    public RowFormat bind(ResultSetMetaData meta) throws SQLException {
+        int cols = meta.getColumnCount();
+        StringBuilder sig = new StringBuilder();
+        for (int i = 1; i <= cols; i++) sig.append(meta.getColumnLabel(i)).append(COLUMN_SEP).append(meta.getColumnType(i)).append(COLUMN_SEP);
+        RowFormat format = layouts.get(sig.toString());
+        if (format == null) {
+            Spec[] specs = new Spec[cols + 1];
+            boolean[] numericScale = new boolean[cols + 1];
+            int firstIncluded = 0;
+            for (int i = 1; i <= cols; i++) {
+                Spec own = columnSpec(meta.getColumnLabel(i));
+                specs[i] = own == null ? all : all.merge(own);
+                numericScale[i] = (own != null && own.scale >= 0) || isNumeric(meta.getColumnType(i));
+                if (firstIncluded == 0 && !specs[i].exclude) firstIncluded = i;
+            }
+            // von hinten aufbauen: jedes Glied kennt seinen Nachfolger als final-Feld
+            Column[] columns = new Column[cols + 1];
+            Column next = null;
+            for (int i = cols; i >= 1; i--) {
+                if (specs[i].exclude) continue;
+                next = compile(i, i != firstIncluded, next, specs[i], meta.getColumnType(i), numericScale[i]);
+                columns[i] = next;
+            }
+            format = new RowFormat(columns, next);
+            layouts.put(sig.toString(), format);
+        }
+        return format;
+    }
+
+    private Spec columnSpec(String label) {
+        return label == null ? null : columns.get(label.toUpperCase(Locale.ROOT));
+    }
+
+    private static Column compile(int i, boolean separator, Column next, Spec s, int type, boolean numericScale) {
+        if (LobDigest.isLob(type)) return new LobColumn(i, separator, next, type);
+        int scale = numericScale ? s.scale : -1;
+        if (scale >= 0) return new ScaledColumn(i, separator, next, scale);
+        if (!s.trim && !s.casefold && !s.nullEmpty) return new PlainColumn(i, separator, next);
+        return new TextColumn(i, separator, next, s.trim, s.casefold, s.nullEmpty);
+    }
+
+    /** Normalisiert einen Skalarwert mit den spaltenunabhaengigen Regeln. */
+    public String normalizeScalar(String value) {
+        if (isEmpty() || value == null) return value;
+        StringBuilder sb = new StringBuilder(value.length());
+        if (all.scale >= 0 && isNumber(value)) appendScaled(value, all.scale, sb);
+        else appendText(value, all.trim, all.casefold, all.nullEmpty, sb);
+        return sb.toString();
+    }
+
+    /** Gebundene Spaltenregeln eines ResultSets (unveraenderlich, je Layout geteilt). */
+    public static final class RowFormat {
+        private final Column[] columns;   // je Spaltenindex, null = ausgeschlossen
+        private final Column head;        // erste nicht ausgeschlossene Spalte, null = keine
+
+        RowFormat(Column[] columns, Column head) {
+            this.columns = columns;
+            this.head = head;
+        }
+
+        /** Haengt alle nicht ausgeschlossenen Spalten der aktuellen Zeile an (getrennt durch U+001F). */
+        public void append(ResultSet rs, StringBuilder out) throws SQLException {
+            if (head != null) head.append(rs, out);
+        }
+
+        public boolean isIncluded(int column) {
+            return columns[column] != null;
+        }
+
+        public void appendColumn(ResultSet rs, int column, StringBuilder out) throws SQLException {
+            columns[column].appendValue(rs, out);
+        }
+    }
+
+    static void appendText(String v, boolean trim, boolean fold, boolean nullEmpty, StringBuilder out) {
+        if (v == null) {
+            out.append("NULL");
+            return;
+        }
+        int from = 0, to = v.length();
+        if (trim) {
+            while (from < to && v.charAt(from) <= ' ') from++;
+            while (to > from && v.charAt(to - 1) <= ' ') to--;
+        }
+        if (nullEmpty && from == to) {
+            out.append("NULL");
+        } else if (fold) {
+            for (int k = from; k < to; k++) out.append(Character.toUpperCase(v.charAt(k)));
+        } else {
+            out.append(v, from, to);
+        }
+    }
+
+    /**
+     * Dezimalzahl mit genau 'scale' Nachkommastellen (HALF_UP, wie BigDecimal) zeichenweise in den
+     * Puffer; Exponentialdarstellung ueber BigDecimal, Nicht-Zahlen unveraendert.
+     */
+    static void appendScaled(String v, int scale, StringBuilder out) {
+        int s = 0, len = v.length();
+        while (s < len && v.charAt(s) <= ' ') s++;
+        while (len > s && v.charAt(len - 1) <= ' ') len--;
+        boolean neg = s < len && v.charAt(s) == '-';
+        if (s < len && (neg || v.charAt(s) == '+')) s++;
+        int dot = decimalPoint(v, s, len);
+        if (dot == NOT_DECIMAL) {                    // Exponent, "", "-", "." oder keine Zahl
+            appendSlow(v, scale, out);
+            return;
+        }
+        int intEnd = dot < 0 ? len : dot;
+        int start = out.length();
+        if (neg) out.append('-');
+        int digits = out.length();
+        int p = s;
+        while (p < intEnd - 1 && v.charAt(p) == '0') p++;
+        if (p == intEnd) out.append('0');
+        else out.append(v, p, intEnd);
+        if (scale > 0) {
+            out.append('.');
+            for (int k = 0; k < scale; k++) {
+                int idx = dot + 1 + k;
+                out.append(dot >= 0 && idx < len ? v.charAt(idx) : '0');
+            }
+        }
+        int r = dot < 0 ? -1 : dot + 1 + scale;
+        if (r >= 0 && r < len && v.charAt(r) >= '5') {
+            int j = out.length() - 1;
+            while (j >= digits) {
+                char c = out.charAt(j);
+                if (c == '.') {
+                    j--;
+                } else if (c == '9') {
+                    out.setCharAt(j--, '0');
+                } else {
+                    out.setCharAt(j, (char) (c + 1));
+                    break;
+                }
+            }
+            if (j < digits) out.insert(digits, '1');
+        }
+        if (neg) {                                   // -0.00 -> 0.00 (wie BigDecimal)
+            boolean zero = true;
+            for (int k = digits; k < out.length() && zero; k++) {
+                char c = out.charAt(k);
+                zero = c == '0' || c == '.';
+            }
+            if (zero) out.deleteCharAt(start);
+        }
+    }
+
+    private static void appendSlow(String v, int scale, StringBuilder out) {
+        try {
+            out.append(new BigDecimal(v.trim()).setScale(scale, RoundingMode.HALF_UP).toPlainString());
+        } catch (NumberFormatException ex) {
+            out.append(v);
+        }
+    }
+
+    private static final int NOT_DECIMAL = -2;
+
+    /**
+     * Zeichenweise Pruefung von v[from, to) auf Ziffern mit hoechstens einem Punkt und mindestens
+     * einer Ziffer. @return Position des Punkts, -1 ohne Punkt, {@link #NOT_DECIMAL} sonst
+     */
+    private static int decimalPoint(String v, int from, int to) {
+        int dot = -1;
+        boolean digit = false;
+        for (int k = from; k < to; k++) {
+            char c = v.charAt(k);
+            if (c == '.' && dot < 0) dot = k;
+            else if (c >= '0' && c <= '9') digit = true;
+            else return NOT_DECIMAL;
+        }
+        return digit ? dot : NOT_DECIMAL;
+    }
+
+    /** Zahl in BigDecimal-Schreibweise (Vorzeichen, Dezimalzahl, optional Exponent), ohne Objekt/Exception. */
+    static boolean isNumber(String v) {
+        int s = 0, len = v.length();
+        while (s < len && v.charAt(s) <= ' ') s++;
+        while (len > s && v.charAt(len - 1) <= ' ') len--;
+        if (s < len && (v.charAt(s) == '-' || v.charAt(s) == '+')) s++;
+        int e = s;
+        while (e < len && v.charAt(e) != 'e' && v.charAt(e) != 'E') e++;
+        if (decimalPoint(v, s, e) == NOT_DECIMAL) return false;
+        if (e == len) return true;
+        int k = e + 1;
+        if (k < len && (v.charAt(k) == '-' || v.charAt(k) == '+')) k++;
+        if (k == len) return false;
+        for (; k < len; k++) {
+            if (v.charAt(k) < '0' || v.charAt(k) > '9') return false;
+        }
+        return true;
+    }
+
+    private static boolean isNumeric(int type) {
+        switch (type) {
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+            case Types.DOUBLE:
+            case Types.FLOAT:
+            case Types.REAL:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.SMALLINT:
+            case Types.TINYINT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.dbcompare;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.*;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Optionaler Kosten-Check vor dem Ausfuehren: EXPLAIN PLAN je (Abfrage, DB), Ergebnis
+ * gecacht ueber den SQL-Fingerprint (Literale/Whitespace normalisiert).
+ * - preflight.max.cost    : Schwelle (0/leer = aus)
+ * - preflight.offpeak     : z.B. "22:00-06:00"; darin laufen auch teure Abfragen
+ * - preflight.cache.hours : Gueltigkeit einer Schaetzung (Standard 24)
+ * Kann der Plan nicht ermittelt werden (Rechte, PLAN_TABLE, Read-only), wird normal ausgefuehrt.
+ */
+public class CostPreflight {
+
+    private static final Logger LOG = LogManager.getLogger(CostPreflight.class);
+
+    public static final String DEFERRED_PREFIX = "Zurückgestellt: ";
+
+    /** Leiht eine eigene Session einer Ziel-DB (null = keine) und nimmt sie wieder zurueck. */
+    public interface ConnectionSource {
+        Connection acquire(String dbKey);
+
+        void release(String dbKey, Connection c);
+    }
+
+    private static final long UNKNOWN = -1;
+    private static final AtomicLong STATEMENT_SEQ = new AtomicLong();
+
+    private final long maxCost;
+    private final LocalTime offPeakFrom;
+    private final LocalTime offPeakTo;
+    private final long cacheTtlMillis;
+    private final Map<String, Estimate> cache = new ConcurrentHashMap<>();   // dbKey|fingerprint -> Schaetzung
+    private volatile ConnectionSource connections;
+    private ExecutorService worker;
+
+    public CostPreflight(long maxCost, LocalTime offPeakFrom, LocalTime offPeakTo, long cacheTtlMillis) {
+        this.maxCost = maxCost;
+        this.offPeakFrom = offPeakFrom;
+        this.offPeakTo = offPeakTo;
+        this.cacheTtlMillis = cacheTtlMillis;
+    }
+
+    public static CostPreflight fromConfig(Properties p) {
+        long max = Long.parseLong(p.getProperty("preflight.max.cost", "0").trim());
+        long ttl = Long.parseLong(p.getProperty("preflight.cache.hours", "24").trim()) * 3600_000L;
+        LocalTime from = null, to = null;
+        String window = p.getProperty("preflight.offpeak", "").trim();
+        if (!window.isEmpty()) {
+            String[] parts = window.split("-");
+            if (parts.length != 2) throw new IllegalArgumentException("preflight.offpeak erwartet HH:mm-HH:mm: " + window);
+            from = LocalTime.parse(parts[0].trim());
+            to = LocalTime.parse(parts[1].trim());
+        }
+        return new CostPreflight(max, from, to, ttl);
+    }
+
+    public boolean isEnabled() {
+        return maxCost > 0;
+    }
+
+    public long getMaxCost() {
+        return maxCost;
+    }
+
+    public void setConnectionSource(ConnectionSource connections) {
+        this.connections = connections;
+    }
+
+    /** Innerhalb des Off-Peak-Fensters (auch ueber Mitternacht) werden teure Abfragen ausgefuehrt. */
+    public boolean isOffPeak(LocalTime now) {
+        if (offPeakFrom == null) return false;
+        return offPeakFrom.isBefore(offPeakTo)
+                ? !now.isBefore(offPeakFrom) && now.isBefore(offPeakTo)
+                : !now.isBefore(offPeakFrom) || now.isBefore(offPeakTo);
+    }
+
+    /**
+     * Prueft eine Abfrage vor dem Ausfuehren.
+     * @return null = ausfuehren; sonst Zellentext fuer die zurueckgestellte Abfrage
+     */
+    public String check(Connection c, String dbKey, String sql) {
+        if (!isEnabled() || c == null || isOffPeak(LocalTime.now())) return null;
+        long cost = estimate(c, dbKey, sql);
+        if (cost <= maxCost) return null;
+        return DEFERRED_PREFIX + "Kosten " + cost + " > " + maxCost
+                + (offPeakFrom != null ? " (läuft ab " + offPeakFrom + ")" : "");
+    }
+
+    /** Geschaetzte Kosten (EXPLAIN PLAN, gecacht); -1 = unbekannt. */
+    public long estimate(Connection c, String dbKey, String sql) {
+        String key = dbKey + "|" + fingerprint(sql);
+        Estimate e = cache.get(key);
+        long now = System.currentTimeMillis();
+        if (e != null && now - e.at < cacheTtlMillis) return e.cost;
+        long cost;
+        try {
+            cost = explain(c, sql);
+        } catch (SQLException ex) {
+            LOG.warn("EXPLAIN PLAN fehlgeschlagen ({}): {}", dbKey, ex.getMessage());
+            cost = UNKNOWN;
+        }
+        cache.put(key, new Estimate(cost, now));
+        return cost;
+    }
+
+    /** Hoechste bekannte Kosten ueber die DBs (nur Cache); null = nichts bekannt. */
+    public Long cachedMaxCost(String sql, Collection<String> dbKeys) {
+        String fp = fingerprint(sql);
+        Long max = null;
+        for (String k : dbKeys) {
+            Estimate e = cache.get(k.trim() + "|" + fp);
+            if (e != null && e.cost != UNKNOWN) max = (max == null) ? e.cost : Math.max(max, e.cost);
+        }
+        return max;
+    }
+
+    /** Anzeige fuer den Editor: "" (unbekannt), Kosten oder "⚠ Kosten" ueber der Schwelle. */
+    public String describe(Long cost) {
+        if (cost == null) return "";
+        return cost > maxCost ? "⚠ " + cost : String.valueOf(cost);
+    }
+
+    /**
+     * Schaetzt im Hintergrund fuer alle DBs (ueber die ConnectionSource) und meldet die hoechsten
+     * Kosten zurueck (Aufruf ausserhalb des FX-Threads; null = nicht ermittelbar).
+     * @return false, wenn nichts geschaetzt wird (aus, keine Verbindungen oder leeres SQL)
+     */
+    public synchronized boolean estimateAsync(String sql, Collection<String> dbKeys, Consumer<Long> done) {
+        if (!isEnabled() || connections == null || sql == null || sql.trim().isEmpty()) return false;
+        if (worker == null) {
+            worker = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "costPreflight");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        final List<String> keys = new ArrayList<>(dbKeys);
+        worker.submit(() -> {
+            try {
+                for (String k : keys) {
+                    Connection c = connections.acquire(k.trim());
+                    if (c == null) continue;
+                    try {
+                        estimate(c, k.trim(), sql);
+                    } finally {
+                        connections.release(k.trim(), c);
+                    }
+                }
+            } catch (RuntimeException ex) {
+                LOG.warn("Kostenschaetzung abgebrochen", ex);   // sonst verschluckt das Future die Exception
+            } finally {
+                done.accept(cachedMaxCost(sql, keys));          // Aufrufer wartet immer auf eine Antwort
+            }
+        });
+        return true;
+    }
+
+    /**
+     * EXPLAIN PLAN schreibt in die PLAN_TABLE; die Ziel-Sessions sind read-only und werden dafuer
+     * kurz umgeschaltet (und danach wieder read-only zurueckgegeben).
+     */
+    private static long explain(Connection c, String sql) throws SQLException {
+        boolean readOnly = c.isReadOnly();
+        if (readOnly) c.setReadOnly(false);
+        try {
+            return explainWritable(c, sql);
+        } finally {
+            if (readOnly) c.setReadOnly(true);
+        }
+    }
+
+    private static long explainWritable(Connection c, String sql) throws SQLException {
+        String id = "DBCMP" + STATEMENT_SEQ.incrementAndGet();
+        String stmt = ChunkedQuery.unchunked(sql).trim();
+        if (stmt.endsWith(";")) stmt = stmt.substring(0, stmt.length() - 1);
+        try (Statement st = c.createStatement()) {
+            st.execute("EXPLAIN PLAN SET STATEMENT_ID = '" + id + "' FOR " + stmt);
+            try {
+                try (ResultSet rs = st.executeQuery(
+                        "SELECT COST FROM PLAN_TABLE WHERE STATEMENT_ID = '" + id + "' AND ID = 0")) {
+                    if (!rs.next()) return UNKNOWN;
+                    long cost = rs.getLong(1);
+                    return rs.wasNull() ? UNKNOWN : cost;
+                }
+            } finally {
+                st.executeUpdate("DELETE FROM PLAN_TABLE WHERE STATEMENT_ID = '" + id + "'");
+            }
+        }
+    }
+
+    /**
+     * Normalisiert Kommentare (Zeilen- und Blockkommentare; Optimizer-Hints bleiben, sie aendern den
+     * Plan), Literale, Zahlen und Whitespace; gleiche Struktur -> gleicher Fingerprint.
+     */
+    static String fingerprint(String sql) {
+        if (sql == null) return "";
+        StringBuilder sb = new StringBuilder(sql.length());
+        int n = sql.length();
+        for (int i = 0; i < n; i++) {
+            char c = sql.charAt(i);
+            if (c == '\'') {                                   // String-Literal
+                i++;
+                while (i < n) {
+                    if (sql.charAt(i) == '\'') {
+                        if (i + 1 < n && sql.charAt(i + 1) == '\'') {  // '' = maskiertes Hochkomma
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                sb.append('?');
+            } else if (c == '-' && i + 1 < n && sql.charAt(i + 1) == '-') {   // Zeilenkommentar
+                while (i + 1 < n && sql.charAt(i + 1) != '\n') i++;
+            } else if (c == '/' && i + 1 < n && sql.charAt(i + 1) == '*'
+                    && !(i + 2 < n && sql.charAt(i + 2) == '+')) {            // Blockkommentar (kein Hint)
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? n : end + 1;
+                if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ' ') sb.append(' ');
+            } else if (Character.isDigit(c) && (sb.length() == 0 || !isIdentifierChar(sb.charAt(sb.length() - 1)))) {
+                while (i + 1 < n && (Character.isDigit(sql.charAt(i + 1)) || sql.charAt(i + 1) == '.')) i++;
+                sb.append('?');
+            } else if (Character.isWhitespace(c)) {
+                if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ' ') sb.append(' ');
+            } else {
+                sb.append(Character.toUpperCase(c));
+            }
+        }
+        return Long.toHexString(ResultDigest.hash64(sb.toString().trim()));
+    }
+
+    private static boolean isIdentifierChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '#';
+    }
+
+    private static final class Estimate {
+        final long cost;
+        final long at;
+
+        Estimate(long cost, long at) {
+            this.cost = cost;
+            this.at = at;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.dbcompare;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Semikolon-CSV, datensatzweise gelesen (ABFRAGEN-Import und Baseline-Import).
+ * - Felder optional in Anfuehrungszeichen, "" = maskiertes Anfuehrungszeichen,
+ *   Zeilenumbrueche innerhalb von Anfuehrungszeichen bleiben erhalten
+ * - Zeilenenden LF, CRLF oder CR; leere Zeilen werden uebersprungen
+ * - Ein BOM am Dateianfang (Excel-Export) wird ignoriert
+ */
+final class CsvReader {
+
+    private static final int NONE = -2;
+
+    private final Reader in;
+    private int lookahead = NONE;
+    private boolean started;
+
+    CsvReader(Reader in) {
+        this.in = in;
+    }
+
+    /** Alle Datensaetze einer UTF-8-Datei. */
+    static List<List<String>> readAll(Path file) throws IOException {
+        List<List<String>> rows = new ArrayList<>();
+        try (Reader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            CsvReader csv = new CsvReader(r);
+            List<String> rec;
+            while ((rec = csv.readRecord()) != null) rows.add(rec);
+        }
+        return rows;
+    }
+
+    /** Naechster nicht-leerer Datensatz oder null am Dateiende. */
+    List<String> readRecord() throws IOException {
+        while (true) {
+            List<String> rec = readLine();
+            if (rec == null) return null;
+            if (!(rec.size() == 1 && rec.get(0).isEmpty())) return rec;
+        }
+    }
+
+    private List<String> readLine() throws IOException {
+        int c = read();
+        if (c == -1) return null;
+        List<String> fields = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        boolean quoted = false;
+        for (; c != -1; c = read()) {
+            if (quoted) {
+                if (c == '"') {
+                    int n = read();
+                    if (n == '"') {
+                        cur.append('"');
+                    } else {
+                        quoted = false;
+                        lookahead = n;
+                    }
+                } else {
+                    cur.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ';') {
+                fields.add(cur.toString());
+                cur.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c == '\r') {
+                int n = read();
+                if (n != '\n') lookahead = n;
+                break;
+            } else {
+                cur.append((char) c);
+            }
+        }
+        fields.add(cur.toString());
+        return fields;
+    }
+
+    private int read() throws IOException {
+        if (lookahead != NONE) {
+            int c = lookahead;
+            lookahead = NONE;
+            return c;
+        }
+        int c = in.read();
+        if (!started) {
+            started = true;
+            if (c == '\uFEFF') c = in.read();
+        }
+        return c;
+    }
+}
@@ -4,10 +4,22 @@ package com.example.dbcompare;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.IntConsumer;
 
 public class DBConfigDao {
     private final Connection conn;
 
+    // Anzahl Zeilen pro JDBC-Batch beim MERGE
+    private static final int BATCH_SIZE = 200;
+
+    private static final String MERGE_SQL =
+            "MERGE INTO DB_CONFIG t " +
+            "USING (SELECT ? AS KUERZEL, ? AS DB_URL, ? AS USERNAME, ? AS PASS FROM DUAL) s " +
+            "ON (t.KUERZEL = s.KUERZEL) " +
+            "WHEN MATCHED THEN UPDATE SET t.DB_URL = s.DB_URL, t.USERNAME = s.USERNAME, t.PASS = s.PASS " +
+            "WHEN NOT MATCHED THEN INSERT (KUERZEL, DB_URL, USERNAME, PASS) " +
+            "VALUES (s.KUERZEL, s.DB_URL, s.USERNAME, s.PASS)";
+
     public DBConfigDao(Connection conn) {
         this.conn = conn;
     }
@@ -58,6 +70,38 @@ public class DBConfigDao {
         return changed;
     }
 
+    /**
+     * Schreibt die uebergebenen Eintraege per MERGE als JDBC-Batch (ein Roundtrip je {@value #BATCH_SIZE} Zeilen).
+     * Transaktionssteuerung liegt beim Aufrufer.
+     * @param onPrepared wird nach jeder vorbereiteten Zeile mit der laufenden Anzahl aufgerufen (darf null sein)
+     * @return Anzahl betroffener Zeilen
+     */
+    public int mergeAll(List<DBConfigEntry> entries, IntConsumer onPrepared) throws SQLException {
+        int changed = 0;
+        int pending = 0;
+        int prepared = 0;
+        try (PreparedStatement ps = conn.prepareStatement(MERGE_SQL)) {
+            for (DBConfigEntry e : entries) {
+                ps.setString(1, nv(e.getKuerzel()));
+                ps.setString(2, nv(e.getDbUrl()));
+                ps.setString(3, nv(e.getUsername()));
+                ps.setString(4, CryptoUtil.encryptToString(nv(e.getPass())));
+                ps.addBatch();
+                pending++;
+                prepared++;
+                if (onPrepared != null) onPrepared.accept(prepared);
+                if (pending == BATCH_SIZE) {
+                    changed += sum(ps.executeBatch());
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                changed += sum(ps.executeBatch());
+            }
+        }
+        return changed;
+    }
+
     public void deleteByKuerzel(String kuerzel) throws SQLException {
         try (PreparedStatement ps = conn.prepareStatement(
                 "DELETE FROM DB_CONFIG WHERE KUERZEL=?")) {
@@ -66,6 +110,15 @@ public class DBConfigDao {
         }
     }
 
+    /** Summiert Batch-Ergebnisse; SUCCESS_NO_INFO zaehlt als eine Zeile. */
+    private static int sum(int[] counts) {
+        int total = 0;
+        for (int c : counts) {
+            total += (c == Statement.SUCCESS_NO_INFO) ? 1 : Math.max(c, 0);
+        }
+        return total;
+    }
+
     private static String trim(String s) { return s == null ? null : s.trim(); }
     private static String nv(String s) { return s == null ? "" : s; }
 }
@@ -2,6 +2,7 @@ package com.example.dbcompare;
 
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
+import javafx.beans.value.ChangeListener;
 
 public class DBConfigEntry {
     private final StringProperty kuerzel = new SimpleStringProperty();
@@ -9,12 +10,23 @@ public class DBConfigEntry {
     private final StringProperty username= new SimpleStringProperty();
     private final StringProperty pass    = new SimpleStringProperty();
 
+    // Dirty-Tracking: jede echte Wertänderung markiert den Eintrag als "zu speichern"
+    private boolean dirty = false;
+    {
+        ChangeListener<String> markDirty = (obs, o, n) -> dirty = true;
+        kuerzel.addListener(markDirty);
+        dbUrl.addListener(markDirty);
+        username.addListener(markDirty);
+        pass.addListener(markDirty);
+    }
+
     public DBConfigEntry() {}
     public DBConfigEntry(String kuerzel, String dbUrl, String username, String pass) {
         setKuerzel(kuerzel);
         setDbUrl(dbUrl);
         setUsername(username);
         setPass(pass);
+        dirty = false; // Initialwerte zählen nicht als Änderung
     }
 
     public String getKuerzel() { return kuerzel.get(); }
@@ -32,4 +44,7 @@ public class DBConfigEntry {
     public String getPass() { return pass.get(); }
     public void setPass(String v) { pass.set(v); }
     public StringProperty passProperty() { return pass; }
+
+    public boolean isDirty() { return dirty; }
+    public void setDirty(boolean v) { dirty = v; }
 }
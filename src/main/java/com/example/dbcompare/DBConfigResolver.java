@@ -3,52 +3,116 @@ package com.example.dbcompare;
 import java.sql.*;
 import java.util.*;
 
+/**
+ * Liest ABFRAGEN und DB_CONFIG aus dem Repository und haelt beide Tabellen als
+ * unveraenderliche Snapshots im Speicher.
+ * - Vor jeder Rueckgabe wird guenstig revalidiert (COUNT(*) + MAX(ORA_ROWSCN))
+ * - Unveraenderte Tabelle -> Snapshot wird ohne weiteren Roundtrip zurueckgegeben
+ * - Geaenderte Tabelle -> nur Zeilen mit ORA_ROWSCN > letztem Stand werden nachgeladen,
+ *   geloeschte Schluessel ueber die (schmale) Schluesselliste erkannt
+ * - Passwoerter werden nur fuer tatsaechlich geaenderte DB_CONFIG-Zeilen neu entschluesselt
+ * - Je Aufruf wird eine Session aus dem {@link RepositoryPool} geliehen (Editoren haben eigene)
+ */
 public class DBConfigResolver {
 
-    private Connection oracleConnection;
+    private final RepositoryPool repository;
+    private Connection oracleConnection;   // nur waehrend eines Aufrufs gesetzt
 
-    public DBConfigResolver(Connection oracleConnection) {
-        this.oracleConnection = oracleConnection;
+    // Ist ORA_ROWSCN nicht lesbar (Rechte/kein Oracle), wird bei jedem Aufruf komplett geladen;
+    // voruebergehende Fehler fuehren nur fuer den einen Aufruf zum Komplettladen
+    private boolean versioningSupported = true;
+
+    // Optionale Spalte ABFRAGEN.OPTIONEN (einmalig ermittelt)
+    private Boolean hasOptionsColumn;
+
+    // --- Snapshot ABFRAGEN ---
+    private TableVersion abfragenVersion;
+    private Map<String, AbfrageRow> abfragenRows;      // QUERY_ID -> Zeile (auch inaktive)
+    private List<QueryModel> activeQueries;            // unveraenderlich, nur ACTIVE = 1
+
+    // --- Snapshot DB_CONFIG ---
+    private TableVersion dbConfigVersion;
+    private Map<String, ConfigRow> dbConfigRows;       // KUERZEL -> Zeile
+    private Map<String, String> connections;           // unveraenderlich, KUERZEL -> "url;user;pass"
+
+    public DBConfigResolver(RepositoryPool repository) {
+        this.repository = repository;
     }
 
-    public List<QueryModel> loadQueries() throws SQLException {
-        List<QueryModel> queries = new ArrayList<>();
-        String sql = "SELECT SQL_TEXT, DB_KUERZEL FROM ABFRAGEN WHERE ACTIVE = 1";
-        try (Statement stmt = oracleConnection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                String query = rs.getString("SQL_TEXT");
-                String kuerzelList = rs.getString("DB_KUERZEL");
-                List<String> kuerzel = Arrays.asList(kuerzelList.split(","));
-                queries.add(new QueryModel(query, kuerzel));
-            }
+    public synchronized List<QueryModel> loadQueries() throws SQLException {
+        oracleConnection = repository.acquire();
+        try {
+            return loadQueriesLocked();
+        } finally {
+            repository.release(oracleConnection);
+            oracleConnection = null;
         }
-        return queries;
     }
 
-    public Map<String, String> resolveConnections() throws SQLException {
+    public synchronized Map<String, String> resolveConnections() throws SQLException {
+        oracleConnection = repository.acquire();
+        try {
+            return resolveConnectionsLocked();
+        } finally {
+            repository.release(oracleConnection);
+            oracleConnection = null;
+        }
+    }
 
-        Map<String, String> map = new LinkedHashMap<>();
+    private List<QueryModel> loadQueriesLocked() throws SQLException {
+        TableVersion current = readVersion("ABFRAGEN");
+        if (current != null && current.equals(abfragenVersion) && activeQueries != null) {
+            return activeQueries;
+        }
 
-        final String sql = "SELECT KUERZEL, DB_URL, USERNAME, PASS FROM DB_CONFIG";
+        Map<String, AbfrageRow> rows;
+        if (current != null && abfragenVersion != null && abfragenRows != null) {
+            // Delta: geloeschte IDs entfernen, geaenderte/neue Zeilen nachladen
+            rows = new LinkedHashMap<>(abfragenRows);
+            rows.keySet().retainAll(readKeys("SELECT QUERY_ID FROM ABFRAGEN"));
+            readAbfragen(" WHERE ORA_ROWSCN > ?", abfragenVersion.maxScn, rows);
+        } else {
+            rows = new LinkedHashMap<>();
+            readAbfragen(" ORDER BY QUERY_ID", null, rows);
+        }
 
-        try (PreparedStatement ps = oracleConnection.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
+        List<QueryModel> queries = new ArrayList<>();
+        for (AbfrageRow r : rows.values()) {
+            if (r.active) queries.add(r.model);
+        }
 
-            while (rs.next()) {
-                String kuerzel = trim(rs.getString("KUERZEL"));
-                String url     = trim(rs.getString("DB_URL"));
-                String user    = trim(rs.getString("USERNAME"));
-                String encPass = rs.getString("PASS");
-                String pass    =CryptoUtil.decryptToString(encPass);
+        abfragenRows = rows;
+        abfragenVersion = current;
+        activeQueries = Collections.unmodifiableList(queries);
+        return activeQueries;
+    }
 
-                if (isBlank(kuerzel)) continue;
+    private Map<String, String> resolveConnectionsLocked() throws SQLException {
+        TableVersion current = readVersion("DB_CONFIG");
+        if (current != null && current.equals(dbConfigVersion) && connections != null) {
+            return connections;
+        }
 
-                map.put(kuerzel, url + ";" + nvl(user, "") + ";" + nvl(pass, ""));
-            }
+        Map<String, ConfigRow> rows;
+        if (current != null && dbConfigVersion != null && dbConfigRows != null) {
+            rows = new LinkedHashMap<>(dbConfigRows);
+            rows.keySet().retainAll(readKeys("SELECT KUERZEL FROM DB_CONFIG"));
+            readDbConfig(" WHERE ORA_ROWSCN > ?", dbConfigVersion.maxScn, rows);
+        } else {
+            rows = new LinkedHashMap<>();
+            readDbConfig("", null, rows);
         }
 
-        return map;
+        Map<String, String> map = new LinkedHashMap<>();
+        for (Map.Entry<String, ConfigRow> e : rows.entrySet()) {
+            ConfigRow r = e.getValue();
+            map.put(e.getKey(), r.url + ";" + nvl(r.user, "") + ";" + nvl(r.plainPass, ""));
+        }
+
+        dbConfigRows = rows;
+        dbConfigVersion = current;
+        connections = Collections.unmodifiableMap(map);
+        return connections;
 
      /*
         Map<String, String> connMap = new HashMap<>();
@@ -70,7 +134,139 @@ public class DBConfigResolver {
       */
     }
 
+    private void readAbfragen(String suffix, Long sinceScn, Map<String, AbfrageRow> into) throws SQLException {
+        if (hasOptionsColumn == null) hasOptionsColumn = QueryOptions.isColumnPresent(oracleConnection);
+        String sql = "SELECT QUERY_ID, SQL_TEXT, DB_KUERZEL, ACTIVE"
+                + (hasOptionsColumn ? ", " + QueryOptions.COLUMN : "") + " FROM ABFRAGEN" + suffix;
+        try (PreparedStatement ps = oracleConnection.prepareStatement(sql)) {
+            if (sinceScn != null) ps.setLong(1, sinceScn);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String queryId = trim(rs.getString("QUERY_ID"));
+                    String query = rs.getString("SQL_TEXT");
+                    String kuerzelList = rs.getString("DB_KUERZEL");
+                    List<String> kuerzel = Collections.unmodifiableList(
+                            Arrays.asList(nvl(kuerzelList, "").split(",")));
+                    boolean active = rs.getInt("ACTIVE") == 1;
+                    QueryOptions options = hasOptionsColumn
+                            ? QueryOptions.parse(rs.getString(QueryOptions.COLUMN))
+                            : QueryOptions.NONE;
+                    into.put(queryId, new AbfrageRow(new QueryModel(queryId, query, kuerzel, options), active));
+                }
+            }
+        }
+    }
+
+    private void readDbConfig(String suffix, Long sinceScn, Map<String, ConfigRow> into) throws SQLException {
+        final String sql = "SELECT KUERZEL, DB_URL, USERNAME, PASS FROM DB_CONFIG" + suffix;
+
+        try (PreparedStatement ps = oracleConnection.prepareStatement(sql)) {
+            if (sinceScn != null) ps.setLong(1, sinceScn);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String kuerzel = trim(rs.getString("KUERZEL"));
+                    String url     = trim(rs.getString("DB_URL"));
+                    String user    = trim(rs.getString("USERNAME"));
+                    String encPass = rs.getString("PASS");
+
+                    if (isBlank(kuerzel)) continue;
+
+                    // AES nur, wenn sich der gespeicherte Chiffretext tatsaechlich geaendert hat
+                    ConfigRow old = into.get(kuerzel);
+                    String pass = (old != null && Objects.equals(old.encPass, encPass))
+                            ? old.plainPass
+                            : CryptoUtil.decryptToString(encPass);
+
+                    into.put(kuerzel, new ConfigRow(url, user, encPass, pass));
+                }
+            }
+        }
+    }
+
+    /** Guenstige Versionskennung einer Tabelle; null, wenn ORA_ROWSCN nicht verfuegbar ist. */
+    private TableVersion readVersion(String table) {
+        if (!versioningSupported) return null;
+        String sql = "SELECT COUNT(*), MAX(ORA_ROWSCN) FROM " + table;
+        try (Statement st = oracleConnection.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            if (!rs.next()) return null;
+            long count = rs.getLong(1);
+            long maxScn = rs.getLong(2);
+            if (rs.wasNull()) maxScn = 0L;
+            return new TableVersion(count, maxScn);
+        } catch (SQLException ex) {
+            // nur fehlende Rechte/Spalte schalten dauerhaft ab; sonst (z.B. Netzfehler) nur dieser Aufruf komplett
+            if (isVersioningUnsupported(ex)) versioningSupported = false;
+            return null;
+        }
+    }
+
+    /** ORA-00904 (ungueltiger Bezeichner, ORA_ROWSCN unbekannt) / ORA-01031 (fehlende Rechte). */
+    private static boolean isVersioningUnsupported(SQLException ex) {
+        return ex.getErrorCode() == 904 || ex.getErrorCode() == 1031 || ex instanceof SQLFeatureNotSupportedException;
+    }
+
+    private Set<String> readKeys(String sql) throws SQLException {
+        Set<String> keys = new HashSet<>();
+        try (Statement st = oracleConnection.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) {
+                String k = trim(rs.getString(1));
+                if (!isBlank(k)) keys.add(k);
+            }
+        }
+        return keys;
+    }
+
     private static String trim(String s) { return s == null ? null : s.trim(); }
     private static String nvl(String s, String def) { return (s == null) ? def : s; }
     private static boolean isBlank(String s) { return s == null || s.trim().isEmpty(); }
-}
\ No newline at end of file
+
+    // --------- Snapshot-Bausteine ----------
+
+    private static final class TableVersion {
+        final long rowCount;
+        final long maxScn;
+
+        TableVersion(long rowCount, long maxScn) {
+            this.rowCount = rowCount;
+            this.maxScn = maxScn;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof TableVersion)) return false;
+            TableVersion v = (TableVersion) o;
+            return rowCount == v.rowCount && maxScn == v.maxScn;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(rowCount, maxScn);
+        }
+    }
+
+    private static final class AbfrageRow {
+        final QueryModel model;
+        final boolean active;
+
+        AbfrageRow(QueryModel model, boolean active) {
+            this.model = model;
+            this.active = active;
+        }
+    }
+
+    private static final class ConfigRow {
+        final String url;
+        final String user;
+        final String encPass;
+        final String plainPass;
+
+        ConfigRow(String url, String user, String encPass, String plainPass) {
+            this.url = url;
+            this.user = user;
+            this.encPass = encPass;
+            this.plainPass = plainPass;
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.example.dbcompare;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
 import java.sql.*;
 
 public class DBQueryExecutor {
@@ -27,4 +30,95 @@ public class DBQueryExecutor {
             return "Fehler: " + e.getMessage();
         }
     }
-}
\ No newline at end of file
+
+    /** Führt das SQL auf der bestehenden Connection aus und liefert ein String-Ergebnis (erste Spalte der ersten Zeile). */
+    public static String executeScalar(Connection conn, String sql) throws SQLException {
+        sql = (sql == null) ? "" : sql.trim();
+        try (Statement st = conn.createStatement()) {
+            boolean hasRs = st.execute(sql);
+            if (hasRs) {
+                try (ResultSet rs = st.getResultSet()) {
+                    return firstValue(rs);
+                }
+            } else {
+                int upd = st.getUpdateCount();
+                return "OK (" + upd + ")";
+            }
+        }
+    }
+
+    /** Wie {@link #executeScalar}, aber nur für Abfragen (executeQuery, keine DML/DDL). */
+    public static String queryScalar(Connection conn, String sql) throws SQLException {
+        sql = (sql == null) ? "" : sql.trim();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            return firstValue(rs);
+        }
+    }
+
+    private static String firstValue(ResultSet rs) throws SQLException {
+        if (rs.next()) {
+            // LOBs nicht komplett laden, sondern gestreamt verdichten
+            int type = rs.getMetaData().getColumnType(1);
+            if (LobDigest.isLob(type)) return LobDigest.describe(rs, 1, type);
+            Object v = rs.getObject(1);
+            return (v == null) ? "NULL" : String.valueOf(v);
+        } else {
+            return "(keine Zeilen)";
+        }
+    }
+
+    /**
+     * Voller Wert der ersten Spalte der ersten Zeile für die Detailansicht (LOBs gestreamt),
+     * höchstens maxChars Zeichen; BLOB/LONG RAW als Hex.
+     */
+    public static String fetchFull(Connection conn, String sql, int maxChars) throws SQLException {
+        sql = (sql == null) ? "" : sql.trim();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            if (!rs.next()) return "(keine Zeilen)";
+            int type = rs.getMetaData().getColumnType(1);
+            if (type == Types.BLOB || type == Types.LONGVARBINARY || type == Types.VARBINARY || type == Types.BINARY) {
+                InputStream in = rs.getBinaryStream(1);
+                if (in == null) return "NULL";
+                try (InputStream s = in) {
+                    return readHex(s, maxChars);
+                }
+            }
+            Reader r = rs.getCharacterStream(1);
+            if (r == null) return "NULL";
+            try (Reader s = r) {
+                return readText(s, maxChars);
+            }
+        } catch (IOException ex) {
+            throw new SQLException("Wert konnte nicht gelesen werden: " + ex.getMessage(), ex);
+        }
+    }
+
+    private static String readText(Reader r, int maxChars) throws IOException {
+        StringBuilder sb = new StringBuilder(Math.min(maxChars, 64 * 1024));
+        char[] buf = new char[8192];
+        int n;
+        while ((n = r.read(buf)) != -1) {
+            if (sb.length() + n > maxChars) {
+                sb.append(buf, 0, maxChars - sb.length());
+                return sb + "\n… (nach " + maxChars + " Zeichen abgeschnitten)";
+            }
+            sb.append(buf, 0, n);
+        }
+        return sb.toString();
+    }
+
+    private static String readHex(InputStream in, int maxChars) throws IOException {
+        StringBuilder sb = new StringBuilder("0x");
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            for (int i = 0; i < n; i++) {
+                if (sb.length() + 2 > maxChars) return sb + "\n… (nach " + maxChars + " Zeichen abgeschnitten)";
+                sb.append(Character.forDigit((buf[i] >> 4) & 0xf, 16)).append(Character.forDigit(buf[i] & 0xf, 16));
+            }
+        }
+        return sb.toString();
+    }
+}
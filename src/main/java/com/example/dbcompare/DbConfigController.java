@@ -2,6 +2,7 @@ package com.example.dbcompare;
 
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.layout.Region;
@@ -10,6 +11,8 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
@@ -23,17 +26,32 @@ public class DbConfigController {
     @FXML private TableColumn<DBConfigEntry, String> colUser;
     @FXML private TableColumn<DBConfigEntry, String> colPass;
     @FXML private CheckBox showPasswords;
+    @FXML private ProgressBar saveProgress;
+    @FXML private Label statusLabel;
 
     private final ObservableList<DBConfigEntry> data = FXCollections.observableArrayList();
     private Connection oracleConnection;
     private DBConfigDao dao;
+    private Task<SaveResult> saveTask;
 
+    /** Eigene Repository-Session des Dialogs (AutoCommit/ReadOnly werden beim Speichern umgestellt). */
     public void setConnection(Connection oracleConnection) {
         this.oracleConnection = oracleConnection;
         this.dao = new DBConfigDao(oracleConnection);
         onRefresh();
     }
 
+    /** Dialog geschlossen: Session zurückgeben, ein laufendes Speichern vorher abschließen lassen. */
+    public void close(Runnable releaseConnection) {
+        if (saveTask == null || !saveTask.isRunning()) {
+            releaseConnection.run();
+            return;
+        }
+        saveTask.runningProperty().addListener((obs, was, now) -> {
+            if (!now) releaseConnection.run();
+        });
+    }
+
     @FXML
     public void initialize() {
         table.setItems(data);
@@ -97,6 +115,7 @@ public class DbConfigController {
     @FXML
     public void onAddRow() {
         DBConfigEntry e = new DBConfigEntry("NEU", "jdbc:oracle:thin:@host:1521:SID", "USER", "");
+        e.setDirty(true);
         data.add(0, e);
         table.getSelectionModel().select(e);
         table.scrollTo(e);
@@ -128,49 +147,83 @@ public class DbConfigController {
         commitOngoingEdits();
 
         if (dao == null) return;
-        try {
-            oracleConnection.setReadOnly(false);
-            boolean oldAuto = oracleConnection.getAutoCommit();
-            oracleConnection.setAutoCommit(false);
 
-            int updated = 0;
-            StringBuilder log = new StringBuilder();
+        // Nur geänderte Zeilen speichern (Dirty-Tracking in DBConfigEntry)
+        final List<DBConfigEntry> changed = new ArrayList<>();
+        for (DBConfigEntry e : data) {
+            if (!e.isDirty()) continue;
+            if (e.getKuerzel() == null || e.getKuerzel().trim().isEmpty()) continue;
+            changed.add(e);
+        }
+        if (changed.isEmpty()) {
+            Alert info = new Alert(Alert.AlertType.INFORMATION, "Keine Änderungen zu speichern.");
+            info.setHeaderText(null);
+            info.showAndWait();
+            return;
+        }
 
-            try {
-                // Info: in welches Schema schreiben wir?
-                try (Statement st = oracleConnection.createStatement();
-                     ResultSet rs = st.executeQuery("SELECT USER FROM DUAL")) {
-                    if (rs.next()) {
-                        log.append("Aktuelles DB-User-Schema: ").append(rs.getString(1)).append("\n");
+        Task<SaveResult> task = new Task<SaveResult>() {
+            @Override
+            protected SaveResult call() throws Exception {
+                updateMessage("Speichere " + changed.size() + " Eintrag(e) …");
+                oracleConnection.setReadOnly(false);
+                boolean oldAuto = oracleConnection.getAutoCommit();
+                oracleConnection.setAutoCommit(false);
+
+                StringBuilder log = new StringBuilder();
+                try {
+                    // Info: in welches Schema schreiben wir?
+                    try (Statement st = oracleConnection.createStatement();
+                         ResultSet rs = st.executeQuery("SELECT USER FROM DUAL")) {
+                        if (rs.next()) {
+                            log.append("Aktuelles DB-User-Schema: ").append(rs.getString(1)).append("\n");
+                        }
                     }
-                }
 
-                for (DBConfigEntry e : data) {
-                    if (e.getKuerzel() == null || e.getKuerzel().trim().isEmpty()) continue;
-                    int changed = dao.upsert(e);
-                    updated += changed;
-                    log.append(String.format("UPSERT KUERZEL='%s' URL='%s' USER='%s' -> changed=%d%n",
-                            safe(e.getKuerzel()), safe(e.getDbUrl()), safe(e.getUsername()), changed));
-                }
+                    final int total = changed.size();
+                    int updated = dao.mergeAll(changed, n -> updateProgress(n, total));
+                    for (DBConfigEntry e : changed) {
+                        log.append(String.format("MERGE KUERZEL='%s' URL='%s' USER='%s'%n",
+                                safe(e.getKuerzel()), safe(e.getDbUrl()), safe(e.getUsername())));
+                    }
 
-                oracleConnection.commit();
-                onRefresh();
+                    oracleConnection.commit();
+                    return new SaveResult(updated, log.toString());
+                } catch (Exception ex) {
+                    oracleConnection.rollback();
+                    throw ex;
+                } finally {
+                    oracleConnection.setAutoCommit(oldAuto);
+                }
+            }
+        };
+
+        saveProgress.progressProperty().bind(task.progressProperty());
+        statusLabel.textProperty().bind(task.messageProperty());
+        setSaving(true);
+
+        task.setOnSucceeded(ev -> {
+            setSaving(false);
+            // gespeicherter Stand == Modell -> kein erneutes Laden/Entschlüsseln nötig
+            for (DBConfigEntry e : changed) e.setDirty(false);
+
+            SaveResult res = task.getValue();
+            Alert ok = new Alert(Alert.AlertType.INFORMATION,
+                    "Gespeichert: " + res.updated + " Eintrag(e).\n\nDetails:\n" + res.log);
+            ok.setHeaderText("Speichern erfolgreich");
+            ok.getDialogPane().setMinHeight(Region.USE_PREF_SIZE);
+            ok.showAndWait();
+        });
 
-                Alert ok = new Alert(Alert.AlertType.INFORMATION,
-                        "Gespeichert: " + updated + " Eintrag(e).\n\nDetails:\n" + log);
-                ok.setHeaderText("Speichern erfolgreich");
-                ok.getDialogPane().setMinHeight(Region.USE_PREF_SIZE);
-                ok.showAndWait();
+        task.setOnFailed(ev -> {
+            setSaving(false);
+            Throwable ex = task.getException();
+            showError("Fehler beim Speichern",
+                    ex instanceof Exception ? (Exception) ex : new Exception(ex));
+        });
 
-            } catch (Exception ex) {
-                oracleConnection.rollback();
-                throw ex;
-            } finally {
-                oracleConnection.setAutoCommit(oldAuto);
-            }
-        } catch (Exception ex) {
-            showError("Fehler beim Speichern", ex);
-        }
+        saveTask = task;
+        new Thread(task, "dbConfigSave").start();
     }
 
     @FXML
@@ -188,6 +241,20 @@ public class DbConfigController {
         table.refresh();
     }
 
+    private void setSaving(boolean on) {
+        if (!on) {
+            saveProgress.progressProperty().unbind();
+            statusLabel.textProperty().unbind();
+            statusLabel.setText("");
+        }
+        saveProgress.setVisible(on);
+        table.setDisable(on);
+        if (table.getScene() != null && table.getScene().getRoot() != null) {
+            // Toolbar-Buttons sperren, Fortschrittsanzeige bleibt aktiv
+            table.getScene().getRoot().lookupAll(".tool-bar .button").forEach(n -> n.setDisable(on));
+        }
+    }
+
     private void commitOngoingEdits() {
         // 1) Fokus weg → committet offene TextField-Edits
         if (table.getScene() != null && table.getScene().getRoot() != null) {
@@ -207,6 +274,16 @@ public class DbConfigController {
 
     private static String safe(String s) { return s == null ? "" : s; }
 
+    // --------- DTO für Task-Ergebnis ----------
+    private static class SaveResult {
+        final int updated;
+        final String log;
+        SaveResult(int updated, String log) {
+            this.updated = updated;
+            this.log = log;
+        }
+    }
+
     /* ---------- Generische Text-Editing-Zelle (commit on focus loss + ENTER) ---------- */
 
     /**
@@ -0,0 +1,236 @@
+package com.example.dbcompare;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.*;
+
+/**
+ * Haelt pro DB-Kuerzel offene (read-only) Sessions ueber mehrere Laeufe hinweg.
+ * - Jeder Nutzer (Refresh, Wiederholung, Watch, Kosten-Check, Detailansicht, Teilabfragen) leiht
+ *   sich eine eigene Session ({@link #acquire}/{@link #release}); gleichzeitige Laeufe teilen
+ *   sich keine Connection und serialisieren nicht auf der Treiber-Sperre
+ * - Wiederverwendung nur, wenn sich die Verbindungsdefinition ("url;user;pass") nicht geaendert hat
+ *   und die Session noch gueltig ist (isValid)
+ * - Fehlgeschlagene Verbindungsversuche werden nicht gemerkt -> naechster Zugriff versucht es erneut
+ * - Die Identitaet (Schema@URL) wird einmal beim Verbinden ermittelt, nicht je Abfrage
+ * - Je Kuerzel hoechstens "db.sessions.max" (Standard 8) Sessions, darueber wartet acquire kurz
+ * - Pruefen (isValid, Netzwerk-Roundtrip), Verbinden und Schliessen laufen ausserhalb der Sperre:
+ *   eine haengende DB haelt acquire/release der anderen Kuerzel nicht auf
+ * - {@link #evict} (z.B. nach einem Verbindungsfehler) schliesst freie Sessions sofort und
+ *   verliehene bei ihrer Rueckgabe
+ */
+public class DbConnectionCache {
+
+    private static final int VALIDATION_TIMEOUT_SEC = 2;
+    private static final long ACQUIRE_TIMEOUT_MILLIS = 10_000;
+
+    private final Map<String, Deque<Entry>> idle = new HashMap<>();    // freie Sessions je Kuerzel
+    private final Map<Connection, Entry> leased = new IdentityHashMap<>();
+    private final Map<String, Integer> open = new HashMap<>();         // offene Sessions (frei + verliehen)
+    private final Map<String, String> identities = new HashMap<>();
+    private final int maxPerKey;
+
+    public DbConnectionCache() {
+        this(8);
+    }
+
+    public DbConnectionCache(int maxPerKey) {
+        this.maxPerKey = Math.max(1, maxPerKey);
+    }
+
+    public static DbConnectionCache fromConfig(Properties p) {
+        return new DbConnectionCache(Integer.parseInt(p.getProperty("db.sessions.max", "8").trim()));
+    }
+
+    /**
+     * Eigene Session fuer das Kuerzel; muss mit {@link #release} zurueckgegeben werden.
+     * @param def Verbindungsdefinition im Format "url;user;pass" (wie aus {@link DBConfigResolver})
+     * @throws SQLTransientConnectionException wenn das Session-Limit erreicht bleibt
+     * @throws SQLException wenn keine Verbindung moeglich ist
+     */
+    public Connection acquire(String dbKey, String def) throws SQLException {
+        if (def == null) throw new SQLException("DB " + dbKey + " nicht konfiguriert");
+        long deadline = System.currentTimeMillis() + ACQUIRE_TIMEOUT_MILLIS;
+        while (true) {
+            Entry candidate = null;
+            synchronized (this) {
+                while (true) {
+                    Deque<Entry> free = idle.get(dbKey);
+                    if (free != null && !free.isEmpty()) {
+                        candidate = free.pop();
+                        leased.put(candidate.conn, candidate);   // evict/retain waehrend der Pruefung markieren sie
+                        break;
+                    }
+                    if (open.getOrDefault(dbKey, 0) < maxPerKey) break;
+                    long wait = deadline - System.currentTimeMillis();
+                    if (wait <= 0) {
+                        throw new SQLTransientConnectionException("Keine freie Session zu " + dbKey
+                                + " (db.sessions.max=" + maxPerKey + ")");
+                    }
+                    try {
+                        wait(wait);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLTransientConnectionException("Warten auf Session zu " + dbKey + " abgebrochen");
+                    }
+                }
+                if (candidate == null) open.merge(dbKey, 1, Integer::sum);   // Platz reservieren, bevor ausserhalb verbunden wird
+            }
+            if (candidate == null) break;
+            // ausserhalb der Sperre pruefen/schliessen: eine haengende DB blockiert die anderen Kuerzel nicht
+            boolean usable = candidate.def.equals(def) && isUsable(candidate.conn);
+            synchronized (this) {
+                boolean ours = leased.get(candidate.conn) == candidate;   // nicht zwischenzeitlich von closeAll entfernt
+                if (usable && ours && !candidate.evicted) return candidate.conn;
+                if (ours) {
+                    leased.remove(candidate.conn);
+                    discard(dbKey);
+                }
+            }
+            closeQuietly(candidate.conn);
+        }
+        // ausserhalb der Sperre verbinden: parallele Sessions sollen sich nicht gegenseitig blockieren
+        Entry e;
+        try {
+            e = open(dbKey, def);
+        } catch (SQLException | RuntimeException ex) {
+            synchronized (this) {
+                discard(dbKey);
+            }
+            throw ex;
+        }
+        synchronized (this) {
+            identities.put(dbKey, e.identity);
+            leased.put(e.conn, e);
+        }
+        return e.conn;
+    }
+
+    /** Gibt eine Session zurueck (null wird ignoriert); verworfene Sessions werden geschlossen. */
+    public void release(String dbKey, Connection c) {
+        if (c == null) return;
+        synchronized (this) {
+            Entry e = leased.remove(c);
+            if (e != null && !e.evicted) {
+                idle.computeIfAbsent(dbKey, k -> new ArrayDeque<>()).push(e);
+                notifyAll();
+                return;
+            }
+            if (e != null) discard(dbKey);   // sonst: nicht von acquire -> nicht in den Pool
+        }
+        closeQuietly(c);
+    }
+
+    private static Entry open(String dbKey, String def) throws SQLException {
+        String[] parts = def.split(";", -1);
+        String jdbcUrl = parts[0];
+        String user = parts.length > 1 ? parts[1] : "";
+        String pass = parts.length > 2 ? parts[2] : "";
+        Connection c = DriverManager.getConnection(jdbcUrl, user, pass);
+        if (c == null) throw new SQLException("Kein Treiber fuer " + dbKey);
+        try { c.setReadOnly(true); } catch (Throwable ignore) {}
+        return new Entry(dbKey, def, c, identityOf(c, user, jdbcUrl));
+    }
+
+    /** Schema@URL der zuletzt geoeffneten Session (fuer das Ausfuehrungs-Log); null = nie verbunden. */
+    public synchronized String identity(String dbKey) {
+        return identities.get(dbKey);
+    }
+
+    /** Schliesst Sessions, deren Kuerzel nicht mehr (oder anders) konfiguriert ist. */
+    public void retain(Map<String, String> dbMap) {
+        List<Connection> stale = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<String, Deque<Entry>>> it = idle.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Deque<Entry>> me = it.next();
+                String def = dbMap.get(me.getKey());
+                Iterator<Entry> es = me.getValue().iterator();
+                while (es.hasNext()) {
+                    Entry e = es.next();
+                    if (def == null || !def.equals(e.def)) {
+                        stale.add(e.conn);
+                        discard(me.getKey());
+                        es.remove();
+                    }
+                }
+                if (me.getValue().isEmpty()) it.remove();
+            }
+            for (Entry e : leased.values()) {
+                String def = dbMap.get(e.key);
+                if (def == null || !def.equals(e.def)) e.evicted = true;
+            }
+            identities.keySet().retainAll(dbMap.keySet());
+        }
+        for (Connection c : stale) closeQuietly(c);
+    }
+
+    /** Verwirft die Sessions eines Kuerzels (z.B. nach einem Verbindungsfehler). */
+    public void evict(String dbKey) {
+        Deque<Entry> free;
+        synchronized (this) {
+            free = idle.remove(dbKey);
+            if (free != null) for (int i = 0; i < free.size(); i++) discard(dbKey);
+            for (Entry e : leased.values()) {
+                if (dbKey.equals(e.key)) e.evicted = true;
+            }
+        }
+        if (free != null) for (Entry e : free) closeQuietly(e.conn);
+    }
+
+    public void closeAll() {
+        List<Connection> all = new ArrayList<>();
+        synchronized (this) {
+            for (Deque<Entry> free : idle.values()) for (Entry e : free) all.add(e.conn);
+            idle.clear();
+            all.addAll(leased.keySet());
+            leased.clear();
+            open.clear();
+            notifyAll();
+        }
+        for (Connection c : all) closeQuietly(c);
+    }
+
+    /** Gibt den Platz einer verworfenen Session frei (Aufruf unter der Sperre; geschlossen wird ausserhalb). */
+    private void discard(String dbKey) {
+        open.merge(dbKey, -1, Integer::sum);
+        notifyAll();
+    }
+
+    private static boolean isUsable(Connection c) {
+        try {
+            return !c.isClosed() && c.isValid(VALIDATION_TIMEOUT_SEC);
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    private static String identityOf(Connection c, String user, String jdbcUrl) {
+        try {
+            return c.getSchema() + "@" + c.getMetaData().getURL();
+        } catch (Throwable ex) {
+            return user + "@" + jdbcUrl;
+        }
+    }
+
+    private static void closeQuietly(Connection c) {
+        try { c.close(); } catch (Exception ignore) {}
+    }
+
+    private static final class Entry {
+        final String key;
+        final String def;
+        final Connection conn;
+        final String identity;
+        boolean evicted;   // bei Rueckgabe schliessen statt wiederverwenden
+
+        Entry(String key, String def, Connection conn, String identity) {
+            this.key = key;
+            this.def = def;
+            this.conn = conn;
+            this.identity = identity;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.dbcompare;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Abweichende Zeilen eines Zeilen-Diffs (diff=rows) auf der Platte, fuer die Detailansicht.
+ * - Datendatei: Zeilen als UTF-8 hintereinander
+ * - Indexdatei: Saetze fester Breite ({@link #RECORD_BYTES}: Offset, Laenge, Seite '+'/'-'),
+ *   Satz i liegt bei i * RECORD_BYTES -> direkter Zugriff auf jede Seite
+ * - Gelesen wird seitenweise per positioniertem FileChannel.read in wiederverwendete Puffer: nur
+ *   Index und Daten der angefragten Seite, der Heap haelt nur die sichtbaren Zeilen. Kein
+ *   Memory-Mapping, damit die Dateien nach {@link #delete} auch unter Windows loeschbar sind
+ * - Scheitert das Loeschen, wird es protokolliert und beim Beenden der JVM erneut versucht
+ */
+public final class DiffStore {
+
+    public static final int RECORD_BYTES = 16;   // long Offset, int Laenge, int Seite
+
+    private static final Logger LOG = LogManager.getLogger(DiffStore.class);
+    private static final char COLUMN_SEP = '\u001F';
+    private static final int WRITE_BUFFER = 64 * 1024;
+
+    private final Path dataFile;
+    private final Path indexFile;
+    private final List<String> columns;
+    private final long size;
+    private FileChannel data;
+    private FileChannel index;
+    private ByteBuffer indexBuffer = ByteBuffer.allocate(0);   // wiederverwendet je Seite
+    private ByteBuffer rowBuffer = ByteBuffer.allocate(0);
+
+    private DiffStore(Path dataFile, Path indexFile, List<String> columns, long size) {
+        this.dataFile = dataFile;
+        this.indexFile = indexFile;
+        this.columns = columns;
+        this.size = size;
+    }
+
+    /** Eine abweichende Zeile: '+' nur in der DB, '-' nur in der Referenz. */
+    public static final class Entry {
+        public final char side;
+        public final String[] values;
+
+        Entry(char side, String[] values) {
+            this.side = side;
+            this.values = values;
+        }
+    }
+
+    /** Schreibt abweichende Zeilen in der Reihenfolge des Merge-Vergleichs. */
+    public static final class Writer implements Closeable {
+        private final Path dataFile;
+        private final Path indexFile;
+        private final List<String> columns;
+        private final DataOutputStream data;
+        private final DataOutputStream index;
+        private long offset;
+        private long size;
+
+        Writer(Path dir, List<String> columns) throws IOException {
+            Files.createDirectories(dir);
+            this.columns = columns;
+            this.dataFile = Files.createTempFile(dir, "diff", ".dat");
+            this.indexFile = Files.createTempFile(dir, "diff", ".idx");
+            this.data = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(dataFile), WRITE_BUFFER));
+            this.index = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile), WRITE_BUFFER));
+        }
+
+        public void add(char side, String row) throws IOException {
+            byte[] b = row.getBytes(StandardCharsets.UTF_8);
+            data.write(b);
+            index.writeLong(offset);
+            index.writeInt(b.length);
+            index.writeInt(side);
+            offset += b.length;
+            size++;
+        }
+
+        /** Schliesst die Dateien und oeffnet sie zum Lesen. */
+        public DiffStore finish() throws IOException {
+            close();
+            DiffStore store = new DiffStore(dataFile, indexFile, columns, size);
+            try {
+                store.data = FileChannel.open(dataFile, StandardOpenOption.READ);
+                store.index = FileChannel.open(indexFile, StandardOpenOption.READ);
+            } catch (IOException ex) {
+                store.delete();
+                throw ex;
+            }
+            return store;
+        }
+
+        /** Verwirft die Dateien (Fehler waehrend des Vergleichs). */
+        public void abort() {
+            try { close(); } catch (IOException ignore) {}
+            deleteFile(dataFile);
+            deleteFile(indexFile);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                data.close();
+            } finally {
+                index.close();
+            }
+        }
+    }
+
+    public static Writer create(Path dir, List<String> columns) throws IOException {
+        return new Writer(dir, columns);
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /** Spaltennamen der Abfrage (leer, wenn unbekannt). */
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Liest die Zeilen [from, from + count): erst den Index-Ausschnitt, dann den Datenbereich am Stueck.
+     * @throws IOException auch, wenn der Speicher bereits verworfen wurde (neuer Lauf)
+     */
+    public synchronized List<Entry> page(long from, int count) throws IOException {
+        if (index == null) throw new IOException("Diff-Ergebnis wurde verworfen");
+        if (from < 0 || from >= size || count <= 0) return Collections.emptyList();
+        int n = (int) Math.min(count, size - from);
+        indexBuffer = readFully(index, from * RECORD_BYTES, n * RECORD_BYTES, indexBuffer);
+        ByteBuffer idx = indexBuffer;
+        long first = idx.getLong(0);
+        long last = idx.getLong((n - 1) * RECORD_BYTES) + idx.getInt((n - 1) * RECORD_BYTES + 8);
+        if (last - first > Integer.MAX_VALUE) throw new IOException("Diff-Seite zu gross: " + (last - first) + " Bytes");
+        rowBuffer = readFully(data, first, (int) (last - first), rowBuffer);
+        byte[] rows = rowBuffer.array();
+        List<Entry> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            int pos = (int) (idx.getLong(i * RECORD_BYTES) - first);
+            int len = idx.getInt(i * RECORD_BYTES + 8);
+            char side = (char) idx.getInt(i * RECORD_BYTES + 12);
+            out.add(new Entry(side, split(new String(rows, pos, len, StandardCharsets.UTF_8))));
+        }
+        return out;
+    }
+
+    /** Liest len Bytes ab pos in den (bei Bedarf vergroesserten) Puffer; Rueckgabe steht auf [0, len). */
+    private static ByteBuffer readFully(FileChannel ch, long pos, int len, ByteBuffer buf) throws IOException {
+        if (buf.capacity() < len) buf = ByteBuffer.allocate(Math.max(len, buf.capacity() * 2));
+        buf.clear();
+        buf.limit(len);
+        while (buf.hasRemaining()) {
+            int r = ch.read(buf, pos + buf.position());
+            if (r < 0) throw new EOFException("Diff-Datei unvollstaendig");
+        }
+        buf.flip();
+        return buf;
+    }
+
+    private static String[] split(String row) {
+        List<String> parts = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < row.length(); i++) {
+            if (row.charAt(i) == COLUMN_SEP) {
+                parts.add(row.substring(start, i));
+                start = i + 1;
+            }
+        }
+        parts.add(row.substring(start));
+        return parts.toArray(new String[0]);
+    }
+
+    /** Schliesst und loescht die Dateien; offene Ansichten erhalten danach einen Fehler. */
+    public synchronized void delete() {
+        try { if (data != null) data.close(); } catch (IOException ignore) {}
+        try { if (index != null) index.close(); } catch (IOException ignore) {}
+        data = null;
+        index = null;
+        indexBuffer = ByteBuffer.allocate(0);
+        rowBuffer = ByteBuffer.allocate(0);
+        deleteFile(dataFile);
+        deleteFile(indexFile);
+    }
+
+    /** Loescht die Datei; gelingt das nicht (z.B. noch gesperrt), erneut beim Beenden der JVM. */
+    private static void deleteFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            LOG.warn("Diff-Datei {} nicht geloescht, neuer Versuch beim Beenden: {}", file, ex.getMessage());
+            file.toFile().deleteOnExit();
+        }
+    }
+}
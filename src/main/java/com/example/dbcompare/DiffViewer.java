@@ -0,0 +1,119 @@
+package com.example.dbcompare;
+
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.collections.ObservableListBase;
+import javafx.geometry.Insets;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.control.TableCell;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.layout.BorderPane;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Detailansicht der abweichenden Zeilen eines Zeilen-Diffs ({@link DiffStore}).
+ * - Die Tabelle arbeitet auf einer virtuellen Liste der Groesse des Speichers; TableView fragt
+ *   nur die sichtbaren Zeilen ab, diese werden seitenweise ({@link #PAGE_SIZE}) aus der Datei geladen
+ * - Wenige zuletzt benutzte Seiten bleiben im Speicher (Scrollen hin und her)
+ * - Sortieren ist abgeschaltet (die Zeilen liegen bereits sortiert vor; es muesste alles geladen werden)
+ */
+public class DiffViewer {
+
+    static final int PAGE_SIZE = 500;
+    private static final int CACHED_PAGES = 4;
+
+    public static void show(Window owner, String title, DiffStore store) {
+        Stage stage = new Stage();
+        stage.initOwner(owner);
+        stage.setTitle(title);
+
+        Label status = new Label(store.size() + " abweichende Zeilen (+ nur hier, - nur in der Referenz)");
+        PagedRows rows = new PagedRows(store, status);
+
+        TableView<DiffStore.Entry> table = new TableView<DiffStore.Entry>(rows);
+        table.setFixedCellSize(24);   // feste Zeilenhoehe: Scrollbalken ohne Vermessen aller Zeilen
+
+        TableColumn<DiffStore.Entry, String> sideCol = new TableColumn<DiffStore.Entry, String>("±");
+        sideCol.setPrefWidth(40);
+        sideCol.setSortable(false);
+        sideCol.setCellValueFactory(c -> new ReadOnlyStringWrapper(c.getValue() == null ? "" : String.valueOf(c.getValue().side)));
+        sideCol.setCellFactory(col -> new TableCell<DiffStore.Entry, String>() {
+            @Override
+            protected void updateItem(String item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(empty ? null : item);
+                setStyle(empty || item == null ? "" : "+".equals(item) ? "-fx-text-fill: darkgreen;" : "-fx-text-fill: firebrick;");
+            }
+        });
+        table.getColumns().add(sideCol);
+
+        List<String> columns = store.getColumns();
+        int count = columns.isEmpty() && store.size() > 0 && rows.get(0) != null ? rows.get(0).values.length : columns.size();
+        for (int i = 0; i < count; i++) {
+            final int idx = i;
+            TableColumn<DiffStore.Entry, String> col = new TableColumn<DiffStore.Entry, String>(
+                    i < columns.size() ? columns.get(i) : "Spalte " + (i + 1));
+            col.setPrefWidth(160);
+            col.setSortable(false);
+            col.setCellValueFactory(c -> new ReadOnlyStringWrapper(
+                    c.getValue() == null || idx >= c.getValue().values.length ? "" : c.getValue().values[idx]));
+            table.getColumns().add(col);
+        }
+
+        BorderPane root = new BorderPane(table);
+        BorderPane.setMargin(status, new Insets(6));
+        root.setBottom(status);
+        stage.setScene(new Scene(root, 1000, 600));
+        stage.show();
+    }
+
+    /** Virtuelle Liste ueber den Diff-Speicher; laedt Seiten bei Zugriff. */
+    private static final class PagedRows extends ObservableListBase<DiffStore.Entry> {
+        private final DiffStore store;
+        private final Label status;
+        private final Map<Long, List<DiffStore.Entry>> pages =
+                new LinkedHashMap<Long, List<DiffStore.Entry>>(CACHED_PAGES * 2, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Long, List<DiffStore.Entry>> eldest) {
+                        return size() > CACHED_PAGES;
+                    }
+                };
+        private boolean failed;
+
+        PagedRows(DiffStore store, Label status) {
+            this.store = store;
+            this.status = status;
+        }
+
+        @Override
+        public DiffStore.Entry get(int index) {
+            if (failed) return null;
+            long page = index / PAGE_SIZE;
+            List<DiffStore.Entry> rows = pages.get(page);
+            if (rows == null) {
+                try {
+                    rows = store.page(page * PAGE_SIZE, PAGE_SIZE);
+                } catch (IOException ex) {
+                    failed = true;
+                    status.setText("Fehler: " + ex.getMessage());
+                    return null;
+                }
+                pages.put(page, rows);
+            }
+            int i = index - (int) (page * PAGE_SIZE);
+            return i < rows.size() ? rows.get(i) : null;
+        }
+
+        @Override
+        public int size() {
+            return (int) Math.min(Integer.MAX_VALUE, store.size());
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.dbcompare;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Schlanker Ausfuehrungs-Agent, der neben einer Gruppe von Datenbanken laeuft.
+ * Fuehrt die Vergleichsabfragen lokal aus und liefert nur Skalare bzw. Digests
+ * ({@link ResultDigest}) ueber das Binaerprotokoll {@link AgentProtocol} zurueck.
+ *
+ * Start:  java -cp DBCompareFX.jar com.example.dbcompare.DigestAgent /pfad/agent.properties
+ *
+ * agent.properties:
+ *   agent.bind=127.0.0.1          (Standard: Loopback)
+ *   agent.port=7341
+ *   agent.secret=...              (Pflicht, gemeinsames Geheimnis mit der App; auch ENC:v1:)
+ *   crypto.key=...                (optional, fuer ENC:v1:-Passwoerter)
+ *   db.PROD1.url=jdbc:oracle:thin:@host:1521/SVC
+ *   db.PROD1.user=...
+ *   db.PROD1.password=...
+ *
+ * Clients muessen im Handshake das gemeinsame Geheimnis nachweisen (HMAC ueber beide Nonces),
+ * danach ist jeder Rahmen mit dem Sitzungsschluessel signiert. Angenommen werden nur Abfragen
+ * (SELECT/WITH, per executeQuery); alles andere wird ohne Ausfuehrung abgelehnt.
+ */
+public class DigestAgent {
+
+    private static final Logger LOG = LogManager.getLogger(DigestAgent.class);
+
+    public static final int DEFAULT_PORT = 7341;
+
+    private static final int HANDSHAKE_TIMEOUT_MS = 10_000;
+
+    private final Map<String, String> dbDefs;          // Kuerzel -> "url;user;pass"
+    private final String secret;
+    private final DbConnectionCache connections = new DbConnectionCache();
+    private final ExecutorService clients = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "agent-client");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile ServerSocket server;
+
+    public DigestAgent(Map<String, String> dbDefs, String secret) {
+        if (secret == null || secret.isEmpty()) throw new IllegalArgumentException("agent.secret fehlt");
+        this.dbDefs = Collections.unmodifiableMap(new LinkedHashMap<>(dbDefs));
+        this.secret = secret;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Aufruf: DigestAgent <agent.properties>");
+            System.exit(2);
+        }
+        Properties p = new Properties();
+        Path path = Paths.get(args[0]);
+        try (InputStream in = Files.newInputStream(path)) {
+            p.load(in);
+        }
+        String key = p.getProperty("crypto.key");
+        if (key != null && !key.trim().isEmpty()) {
+            CryptoUtil.init(Base64.getDecoder().decode(key.trim()));
+        }
+
+        String secret = CryptoUtil.decryptToString(p.getProperty("agent.secret", "").trim());
+        if (secret.isEmpty()) {
+            System.err.println("agent.secret fehlt in " + path);
+            System.exit(2);
+        }
+        DigestAgent agent = new DigestAgent(readDbDefs(p), secret);
+        String bind = p.getProperty("agent.bind", "127.0.0.1").trim();
+        int port = Integer.parseInt(p.getProperty("agent.port", String.valueOf(DEFAULT_PORT)).trim());
+        agent.serve(InetAddress.getByName(bind), port);
+    }
+
+    /** Liest alle db.&lt;KUERZEL&gt;.url/user/password-Eintraege. */
+    static Map<String, String> readDbDefs(Properties p) {
+        Map<String, String> defs = new TreeMap<>();
+        for (String name : p.stringPropertyNames()) {
+            if (!name.startsWith("db.") || !name.endsWith(".url")) continue;
+            String dbKey = name.substring(3, name.length() - 4);
+            String user = p.getProperty("db." + dbKey + ".user", "");
+            String pass = CryptoUtil.decryptToString(p.getProperty("db." + dbKey + ".password", ""));
+            defs.put(dbKey, p.getProperty(name).trim() + ";" + user.trim() + ";" + pass);
+        }
+        return defs;
+    }
+
+    /** Blockiert und bedient Clients, bis {@link #close()} aufgerufen wird. */
+    public void serve(InetAddress bind, int port) throws IOException {
+        try (ServerSocket ss = new ServerSocket()) {
+            ss.bind(new InetSocketAddress(bind, port));
+            server = ss;
+            LOG.info("DigestAgent lauscht auf {} fuer {}", ss.getLocalSocketAddress(), dbDefs.keySet());
+            while (!ss.isClosed()) {
+                Socket s;
+                try {
+                    s = ss.accept();
+                } catch (IOException ex) {
+                    if (ss.isClosed()) break;
+                    throw ex;
+                }
+                clients.submit(() -> handle(s));
+            }
+        } finally {
+            connections.closeAll();
+        }
+    }
+
+    /** Tatsaechlich gebundener Port (z.B. bei Port 0), -1 solange nicht gebunden. */
+    public int getLocalPort() {
+        ServerSocket ss = server;
+        return ss == null ? -1 : ss.getLocalPort();
+    }
+
+    public void close() {
+        try { if (server != null) server.close(); } catch (IOException ignore) {}
+        clients.shutdownNow();
+    }
+
+    /**
+     * Nur reine Abfragen: erstes Schluesselwort (nach Kommentaren und Klammern) SELECT oder WITH,
+     * ohne PL/SQL-Deklarationen im WITH (WITH FUNCTION/PROCEDURE).
+     */
+    static boolean isQuery(String sql) {
+        if (sql == null) return false;
+        int i = skipNoise(sql, 0);
+        String first = word(sql, i);
+        if (first.equals("SELECT")) return true;
+        if (!first.equals("WITH")) return false;
+        String second = word(sql, skipNoise(sql, i + first.length()));
+        return !second.equals("FUNCTION") && !second.equals("PROCEDURE");
+    }
+
+    private static int skipNoise(String sql, int i) {
+        int n = sql.length();
+        while (i < n) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c) || c == '(') {
+                i++;
+            } else if (sql.startsWith("--", i)) {
+                int eol = sql.indexOf('\n', i);
+                i = eol < 0 ? n : eol + 1;
+            } else if (sql.startsWith("/*", i)) {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? n : end + 2;
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    private static String word(String sql, int i) {
+        int j = i;
+        while (j < sql.length() && Character.isLetter(sql.charAt(j))) j++;
+        return sql.substring(i, j).toUpperCase(Locale.ROOT);
+    }
+
+    private void handle(Socket socket) {
+        try (Socket s = socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()))) {
+            s.setTcpNoDelay(true);
+            s.setSoTimeout(HANDSHAKE_TIMEOUT_MS);   // unvollstaendige Handshakes nicht ewig halten
+
+            if (in.readInt() != AgentProtocol.MAGIC || in.readByte() != AgentProtocol.VERSION) {
+                return; // kein (kompatibler) Client
+            }
+            byte[] clientNonce = new byte[AgentProtocol.NONCE_BYTES];
+            in.readFully(clientNonce);
+            byte[] nonce = AgentProtocol.newNonce();
+            out.writeInt(AgentProtocol.MAGIC);
+            out.writeByte(AgentProtocol.VERSION);
+            out.write(nonce);
+            out.flush();
+            byte[] proof = new byte[AgentProtocol.MAC_BYTES];
+            in.readFully(proof);
+            if (!AgentProtocol.verify(secret, nonce, clientNonce, proof)) {
+                LOG.warn("Anmeldung abgelehnt von {}", s.getRemoteSocketAddress());
+                return;
+            }
+            s.setSoTimeout(0);
+            AgentProtocol.Session session = AgentProtocol.session(secret, nonce, clientNonce, true, in, out);
+            AgentProtocol.writeKeys(session.message(), new ArrayList<>(dbDefs.keySet()));
+            session.send();
+
+            while (true) {
+                DataInputStream req = session.receive();
+                byte op = req.readByte();
+                if (op == AgentProtocol.OP_CLOSE) return;
+                if (op != AgentProtocol.OP_EXECUTE) throw new IOException("Unbekannte Operation " + op);
+
+                int requestId = req.readInt();
+                String dbKey = AgentProtocol.readString(req);
+                ResultDigest.Mode mode = AgentProtocol.readMode(req);
+                int buckets = AgentProtocol.readBucketCount(req);
+                String sql = AgentProtocol.readString(req);
+
+                DataOutputStream resp = session.message();
+                resp.writeInt(requestId);
+                String def = dbDefs.get(dbKey);
+                if (def != null && !isQuery(sql)) {
+                    resp.writeByte(AgentProtocol.STATUS_ERROR);
+                    AgentProtocol.writeString(resp, "Agent fuehrt nur Abfragen aus (SELECT/WITH)");
+                    session.send();
+                    continue;
+                }
+                Connection c = null;
+                try {
+                    if (def != null) c = connections.acquire(dbKey, def);
+                } catch (SQLException ex) {
+                    c = null;
+                }
+                if (c == null) {
+                    resp.writeByte(AgentProtocol.STATUS_UNKNOWN_DB);
+                    AgentProtocol.writeString(resp, def == null ? "Unbekannt" : "Keine Verbindung zu " + dbKey);
+                } else {
+                    try {
+                        ResultDigest d = ResultDigest.computeQuery(c, sql, mode, buckets);
+                        resp.writeByte(AgentProtocol.STATUS_OK);
+                        AgentProtocol.writeDigest(resp, d);
+                    } catch (Exception ex) {
+                        if (CircuitBreaker.isHealthFailure(ex)) connections.evict(dbKey);
+                        resp.writeByte(AgentProtocol.STATUS_ERROR);
+                        AgentProtocol.writeString(resp, String.valueOf(ex.getMessage()));
+                    } finally {
+                        connections.release(dbKey, c);
+                    }
+                }
+                session.send();
+            }
+        } catch (EOFException ignore) {
+            // Client hat die Verbindung beendet
+        } catch (IOException ex) {
+            LOG.warn("Client-Fehler: {}", ex.getMessage());
+        }
+    }
+}
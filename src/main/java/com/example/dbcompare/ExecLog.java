@@ -0,0 +1,64 @@
+package com.example.dbcompare;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.apache.logging.log4j.util.Unbox;
+
+/**
+ * Strukturiertes Ausfuehrungs-Log: ein Satz je (Abfrage, DB) mit Laufzeit und Ergebnis.
+ * - Logger "dbcompare.exec" laeuft asynchron (Ring-Puffer, siehe log4j2.component.properties)
+ * - Parameter werden ohne Boxing/String-Verkettung uebergeben (garbage-free Pfad von log4j2)
+ * - INFO: Kuerzel, Ziel, ms, Ergebnisklasse; DEBUG zusaetzlich SQL und Zellwert
+ * Die Stufe kommt aus "log.level" in der Konfiguration und ist zur Laufzeit aenderbar.
+ */
+public final class ExecLog {
+
+    public static final String LOGGER_NAME = "dbcompare.exec";
+
+    private static final Logger LOG = LogManager.getLogger(LOGGER_NAME);
+
+    private ExecLog() {}
+
+    /** log.level (Standard INFO); ungueltige Werte bleiben bei INFO. */
+    public static void configure(java.util.Properties p) {
+        String level = p.getProperty("log.level");
+        if (level != null && !level.trim().isEmpty()) {
+            Configurator.setLevel(LOGGER_NAME, Level.toLevel(level.trim(), Level.INFO));
+        }
+    }
+
+    /**
+     * @param via Ziel der Ausfuehrung (Schema@URL oder Agent)
+     */
+    public static void cell(QueryModel qm, String dbKey, String via, long millis, String value) {
+        String outcome = outcome(value);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("query={} db={} via={} ms={} outcome={} sql=\"{}\" value=\"{}\"",
+                    qm.getQueryId(), dbKey, via, Unbox.box(millis), outcome, qm.getSql(), value);
+        } else if ("FEHLER".equals(outcome)) {
+            LOG.warn("query={} db={} via={} ms={} outcome={} value=\"{}\"",
+                    qm.getQueryId(), dbKey, via, Unbox.box(millis), outcome, value);
+        } else {
+            LOG.info("query={} db={} via={} ms={} outcome={}",
+                    qm.getQueryId(), dbKey, via, Unbox.box(millis), outcome);
+        }
+    }
+
+    /** Inkrementeller Lauf einer Reihe (siehe {@link IncrementalState}). */
+    public static void incremental(String seriesKey, boolean full, long changed, long rows) {
+        LOG.info("series={} incremental={} changed={} rows={}",
+                seriesKey, full ? "voll" : "delta", Unbox.box(changed), Unbox.box(rows));
+    }
+
+    /** Ergebnisklasse aus dem Zellwert (feste Konstanten, keine Allokation). */
+    static String outcome(String value) {
+        if (value == null) return "LEER";
+        if (value.startsWith("Fehler: ")) return "FEHLER";
+        if (value.equals("Unbekannt")) return "UNBEKANNT";
+        if (value.startsWith(CostPreflight.DEFERRED_PREFIX)) return "ZURUECKGESTELLT";
+        if (value.startsWith(CircuitBreaker.SKIPPED_PREFIX)) return "UEBERSPRUNGEN";
+        return "OK";
+    }
+}
@@ -0,0 +1,299 @@
+package com.example.dbcompare;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Zeilenvergleich ungeordneter Ergebnismengen (Abfrage-Option "diff=rows") mit begrenztem Speicher.
+ * - Zeilen werden als Schluessel-String gelesen, bis zum Speicherbudget gesammelt, sortiert und
+ *   als "Run" in eine Temp-Datei geschrieben (Laenge + UTF-8)
+ * - Gelesen wird ueber FileChannel mit festem ByteBuffer; ein k-Wege-Merge (PriorityQueue)
+ *   liefert die Zeilen jeder DB sortiert
+ * - Zwei sortierte Stroeme werden im Gleichschritt verglichen (Multimengen: Duplikate zaehlen)
+ * Damit bleiben auch zig Millionen Zeilen je Seite im Heap-Budget. Die abweichenden Zeilen selbst
+ * koennen fuer die Detailansicht in einem {@link DiffStore} abgelegt werden.
+ */
+public class ExternalSortDiff {
+
+    private static final char COLUMN_SEP = '\u001F';
+    private static final int READ_BUFFER = 64 * 1024;
+    private static final int MAX_EXAMPLE_CHARS = 80;
+
+    private final Path tmpDir;
+    private final long memoryBudgetBytes;
+
+    public ExternalSortDiff(Path tmpDir, long memoryBudgetBytes) {
+        this.tmpDir = tmpDir;
+        this.memoryBudgetBytes = memoryBudgetBytes;
+    }
+
+    /** diff.tmp.dir (Standard: java.io.tmpdir/dbcompare-diff), diff.memory.mb (Standard 64). */
+    public static ExternalSortDiff fromConfig(Properties p) {
+        String dir = p.getProperty("diff.tmp.dir");
+        Path path = (dir == null || dir.trim().isEmpty())
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "dbcompare-diff")
+                : Paths.get(dir.trim());
+        long mb = Long.parseLong(p.getProperty("diff.memory.mb", "64").trim());
+        return new ExternalSortDiff(path, mb * 1024 * 1024);
+    }
+
+    public long getMemoryBudgetBytes() {
+        return memoryBudgetBytes;
+    }
+
+    public static boolean isRowDiff(QueryOptions options) {
+        return "rows".equalsIgnoreCase(options.get("diff", ""));
+    }
+
+    /** Fuehrt das SQL aus und legt die (gemaess Regeln normalisierten) Zeilen als sortierte Runs auf der Platte ab. */
+    public SpilledResult spill(Connection conn, String sql, CompareRules rules) throws SQLException, IOException {
+        return spill(conn, sql, rules, memoryBudgetBytes);
+    }
+
+    /** Wie {@link #spill(Connection, String, CompareRules)}, mit eigenem Budget (z.B. Anteil bei parallelen Teilabfragen). */
+    public SpilledResult spill(Connection conn, String sql, CompareRules rules, long memoryBudgetBytes)
+            throws SQLException, IOException {
+        Files.createDirectories(tmpDir);
+        SpilledResult result = new SpilledResult();
+        List<String> buffer = new ArrayList<>();
+        long bufferBytes = 0;
+        try (Statement st = conn.createStatement()) {
+            st.setFetchSize(1000);
+            try (ResultSet rs = st.executeQuery(sql.trim())) {
+                ResultSetMetaData meta = rs.getMetaData();
+                CompareRules.RowFormat format = rules.bind(meta);
+                for (int i = 1; i <= meta.getColumnCount(); i++) {
+                    if (format.isIncluded(i)) result.columns.add(meta.getColumnLabel(i));
+                }
+                StringBuilder sb = new StringBuilder(256);
+                while (rs.next()) {
+                    sb.setLength(0);
+                    format.append(rs, sb);
+                    String row = sb.toString();
+                    buffer.add(row);
+                    bufferBytes += 48 + 2L * row.length();   // grobe Heap-Schaetzung je String
+                    result.rows++;
+                    if (bufferBytes >= memoryBudgetBytes) {
+                        result.runs.add(writeRun(buffer));
+                        buffer.clear();
+                        bufferBytes = 0;
+                    }
+                }
+            }
+        } catch (SQLException | IOException | RuntimeException ex) {
+            result.delete();
+            throw ex;
+        }
+        if (!buffer.isEmpty() || result.runs.isEmpty()) result.runs.add(writeRun(buffer));
+        return result;
+    }
+
+    Path writeRun(List<String> rows) throws IOException {
+        Collections.sort(rows);
+        Path file = Files.createTempFile(tmpDir, "run", ".bin");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), READ_BUFFER))) {
+            for (String r : rows) {
+                byte[] b = r.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(b.length);
+                out.write(b);
+            }
+        }
+        return file;
+    }
+
+    /** Merge-Vergleich zweier abgelegter Ergebnisse (a = Referenz). */
+    public static DiffResult compare(SpilledResult a, SpilledResult b) throws IOException {
+        return compare(a, b, null);
+    }
+
+    /**
+     * Wie {@link #compare(SpilledResult, SpilledResult)}; die abweichenden Zeilen werden zusaetzlich
+     * in einen {@link DiffStore} im Temp-Verzeichnis geschrieben (nur bei Abweichungen).
+     */
+    public DiffResult compareAndStore(SpilledResult a, SpilledResult b) throws IOException {
+        return compare(a, b, tmpDir);
+    }
+
+    private static DiffResult compare(SpilledResult a, SpilledResult b, Path storeDir) throws IOException {
+        DiffResult d = new DiffResult(a.rows, b.rows);
+        DiffStore.Writer out = null;
+        try (MergedSource left = new MergedSource(a.runs); MergedSource right = new MergedSource(b.runs)) {
+            String l = left.next(), r = right.next();
+            while (l != null || r != null) {
+                int c = (l == null) ? 1 : (r == null) ? -1 : l.compareTo(r);
+                if (c == 0) {
+                    l = left.next();
+                    r = right.next();
+                    continue;
+                }
+                if (storeDir != null && out == null) out = DiffStore.create(storeDir, b.columns);
+                if (c < 0) {
+                    d.onlyInReference++;
+                    if (d.exampleMissing == null) d.exampleMissing = l;
+                    if (out != null) out.add('-', l);
+                    l = left.next();
+                } else {
+                    d.onlyHere++;
+                    if (d.exampleExtra == null) d.exampleExtra = r;
+                    if (out != null) out.add('+', r);
+                    r = right.next();
+                }
+            }
+            if (out != null) d.store = out.finish();
+        } catch (IOException | RuntimeException ex) {
+            if (d.store != null) d.store.delete();
+            else if (out != null) out.abort();
+            throw ex;
+        }
+        return d;
+    }
+
+    /** Sortierte Runs einer DB auf der Platte. */
+    public static final class SpilledResult {
+        final List<Path> runs = new ArrayList<>();
+        final List<String> columns = new ArrayList<>();
+        long rows;
+
+        public long getRows() {
+            return rows;
+        }
+
+        /** Uebernimmt die Runs eines weiteren Teilergebnisses (Teilabfragen derselben DB). */
+        public void absorb(SpilledResult other) {
+            if (columns.isEmpty()) columns.addAll(other.columns);
+            runs.addAll(other.runs);
+            rows += other.rows;
+            other.runs.clear();
+        }
+
+        public void delete() {
+            for (Path p : runs) {
+                try { Files.deleteIfExists(p); } catch (IOException ignore) {}
+            }
+            runs.clear();
+        }
+    }
+
+    /** Ergebnis des Zeilenvergleichs. */
+    public static final class DiffResult {
+        final long referenceRows;
+        final long rows;
+        long onlyInReference;
+        long onlyHere;
+        String exampleMissing;
+        String exampleExtra;
+        DiffStore store;
+
+        DiffResult(long referenceRows, long rows) {
+            this.referenceRows = referenceRows;
+            this.rows = rows;
+        }
+
+        /** Abgelegte abweichende Zeilen (nur bei {@link ExternalSortDiff#compareAndStore}, sonst null). */
+        public DiffStore getStore() {
+            return store;
+        }
+
+        public boolean isEqual() {
+            return onlyInReference == 0 && onlyHere == 0;
+        }
+
+        /** Gleich -> identisch zum Referenzwert ("n Zeilen"), sonst Abweichung mit Beispielzeile. */
+        public String toDisplayString() {
+            if (isEqual()) return rows + " Zeilen";
+            StringBuilder sb = new StringBuilder();
+            sb.append(rows).append(" Zeilen: +").append(onlyHere).append(" / -").append(onlyInReference);
+            if (exampleExtra != null) sb.append(", z.B. +[").append(example(exampleExtra)).append(']');
+            else if (exampleMissing != null) sb.append(", z.B. -[").append(example(exampleMissing)).append(']');
+            return sb.toString();
+        }
+
+        private static String example(String row) {
+            String s = row.replace(COLUMN_SEP, '|');
+            return s.length() > MAX_EXAMPLE_CHARS ? s.substring(0, MAX_EXAMPLE_CHARS) + "…" : s;
+        }
+    }
+
+    /** k-Wege-Merge ueber die sortierten Runs einer DB. */
+    private static final class MergedSource implements Closeable {
+        private final List<RunReader> readers = new ArrayList<>();
+        private final PriorityQueue<RunReader> heap = new PriorityQueue<>(Comparator.comparing((RunReader r) -> r.current));
+
+        MergedSource(List<Path> runs) throws IOException {
+            try {
+                for (Path p : runs) {
+                    RunReader r = new RunReader(p);
+                    readers.add(r);
+                    if (r.advance()) heap.add(r);
+                }
+            } catch (IOException ex) {
+                close();
+                throw ex;
+            }
+        }
+
+        String next() throws IOException {
+            RunReader r = heap.poll();
+            if (r == null) return null;
+            String row = r.current;
+            if (r.advance()) heap.add(r);
+            return row;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (RunReader r : readers) r.close();
+        }
+    }
+
+    /** Liest Laenge+UTF-8-Saetze ueber FileChannel mit festem Puffer. */
+    private static final class RunReader implements Closeable {
+        private final FileChannel channel;
+        private ByteBuffer buf = ByteBuffer.allocate(READ_BUFFER);
+        String current;
+
+        RunReader(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            buf.flip(); // leer starten
+        }
+
+        boolean advance() throws IOException {
+            if (!ensure(4)) {
+                current = null;
+                return false;
+            }
+            int len = buf.getInt();
+            if (len > buf.capacity()) {
+                // ueberlanger Satz: Puffer vergroessern
+                ByteBuffer bigger = ByteBuffer.allocate(len);
+                bigger.put(buf);
+                bigger.flip();
+                buf = bigger;
+            }
+            if (!ensure(len)) throw new EOFException("Run-Datei unvollstaendig");
+            current = new String(buf.array(), buf.arrayOffset() + buf.position(), len, StandardCharsets.UTF_8);
+            buf.position(buf.position() + len);
+            return true;
+        }
+
+        private boolean ensure(int n) throws IOException {
+            if (buf.remaining() >= n) return true;
+            buf.compact();
+            while (buf.position() < n) {
+                if (channel.read(buf) < 0) break;
+            }
+            buf.flip();
+            return buf.remaining() >= n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.example.dbcompare;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Lokale Zeitreihen je (QUERY_ID, DB-Kuerzel): jeder Pruefwert wird angehaengt.
+ * - Eine Datei je Reihe (Append-only), Zeitstempel und ganzzahlige Werte delta-/varint-kodiert,
+ *   unveraenderte Werte kosten nur Zeitdelta + 1 Byte
+ * - Im Speicher spaltenweise als primitive Arrays; Zeitspalte sortiert -> Bereichssuche per Binaersuche
+ * - Reihen werden beim ersten Zugriff geladen und danach nur noch fortgeschrieben
+ */
+public class HistoryStore {
+
+    private static final Logger LOG = LogManager.getLogger(HistoryStore.class);
+
+    private static final int MAGIC = 0x44424348; // "DBCH"
+    private static final byte VERSION = 1;
+
+    static final byte KIND_LONG = 1;
+    static final byte KIND_DOUBLE = 2;
+    static final byte KIND_TEXT = 3;
+    private static final byte TAG_SAME = 0;        // Wert wie im vorherigen Eintrag
+
+    private final Path dir;
+    private final Map<String, Series> series = new HashMap<>();
+
+    public HistoryStore(Path dir) {
+        this.dir = dir;
+    }
+
+    /** Verzeichnis aus "history.dir", Standard: ~/.dbcompare/history */
+    public static HistoryStore fromConfig(Properties p) {
+        String d = p.getProperty("history.dir");
+        Path path = (d == null || d.trim().isEmpty())
+                ? Paths.get(System.getProperty("user.home"), ".dbcompare", "history")
+                : Paths.get(d.trim());
+        return new HistoryStore(path);
+    }
+
+    public static String seriesKey(QueryModel qm, String dbKey) {
+        String id = qm.getQueryId() != null
+                ? qm.getQueryId()
+                : "sql" + Integer.toHexString(String.valueOf(qm.getSql()).hashCode());
+        return id + "@" + dbKey;
+    }
+
+    /** Haengt einen Wert an (Zeitstempel muessen je Reihe monoton steigen; aeltere werden angehoben). */
+    public synchronized void append(String key, long timeMillis, String value) throws IOException {
+        Series s = load(key);
+        long t = Math.max(timeMillis, s.size == 0 ? timeMillis : s.times[s.size - 1]);
+
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(32);
+        DataOutputStream out = new DataOutputStream(buf);
+        Path file = fileFor(key);
+        boolean isNew = !Files.exists(file);
+        if (isNew) {
+            Files.createDirectories(dir);
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeUTF(key);
+        }
+        long prevTime = s.size == 0 ? 0 : s.times[s.size - 1];
+        writeVarLong(out, t - prevTime);
+
+        int last = s.size - 1;
+        if (last >= 0 && value.equals(s.value(last))) {
+            out.writeByte(TAG_SAME);
+            s.add(t, s.kinds[last], s.nums[last]);
+        } else {
+            byte kind = kindOf(value);
+            if (kind == KIND_LONG) {
+                long v = Long.parseLong(value);
+                long prev = (last >= 0 && s.kinds[last] == KIND_LONG) ? s.nums[last] : 0L;
+                out.writeByte(KIND_LONG);
+                writeVarLong(out, v - prev);
+                s.add(t, KIND_LONG, v);
+            } else if (kind == KIND_DOUBLE) {
+                double v = Double.parseDouble(value);
+                out.writeByte(KIND_DOUBLE);
+                out.writeDouble(v);
+                s.add(t, KIND_DOUBLE, Double.doubleToLongBits(v));
+            } else {
+                byte[] b = value.getBytes(StandardCharsets.UTF_8);
+                out.writeByte(KIND_TEXT);
+                writeVarLong(out, b.length);
+                out.write(b);
+                s.add(t, KIND_TEXT, s.textId(value));
+            }
+        }
+        out.flush();
+        Files.write(file, buf.toByteArray(), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /** Reihe (ggf. leer); der Aufrufer darf sie nur lesen. */
+    public synchronized Series get(String key) {
+        try {
+            return load(key).copy();
+        } catch (IOException ex) {
+            LOG.warn("Historie nicht lesbar ({}): {}", key, ex.getMessage());
+            return new Series();
+        }
+    }
+
+    /**
+     * Seit wann weichen die Reihen (erste = Referenz) ohne Unterbrechung voneinander ab?
+     * null, wenn sie im letzten bekannten Stand uebereinstimmen oder keine Historie existiert.
+     */
+    public synchronized Long divergentSince(List<String> keys) {
+        if (keys.size() < 2) return null;
+        List<Series> list = new ArrayList<>();
+        for (String k : keys) list.add(get(k));
+
+        // alle Zeitpunkte aller Reihen, rueckwaerts pruefen
+        TreeSet<Long> times = new TreeSet<>();
+        for (Series s : list) {
+            for (int i = 0; i < s.size; i++) times.add(s.times[i]);
+        }
+        Long since = null;
+        for (Long t : times.descendingSet()) {
+            String ref = list.get(0).valueAt(t);
+            boolean diverged = false;
+            for (int i = 1; i < list.size() && !diverged; i++) {
+                String v = list.get(i).valueAt(t);
+                diverged = ref != null && v != null && !ref.equals(v);
+            }
+            if (!diverged) break;
+            since = t;
+        }
+        return since;
+    }
+
+    private Series load(String key) throws IOException {
+        Series s = series.get(key);
+        if (s != null) return s;
+        s = new Series();
+        Path file = fileFor(key);
+        if (Files.exists(file)) {
+            byte[] bytes = Files.readAllBytes(file);
+            ByteArrayInputStream bin = new ByteArrayInputStream(bytes);
+            DataInputStream in = new DataInputStream(bin);
+            if (in.readInt() != MAGIC || in.readByte() != VERSION || !key.equals(in.readUTF())) {
+                throw new IOException("Unbekanntes Format: " + file);
+            }
+            int valid = bytes.length - bin.available();
+            long time = 0;
+            try {
+                while (bin.available() > 0) {
+                    time += readVarLong(in);
+                    byte tag = in.readByte();
+                    int last = s.size - 1;
+                    if (tag == TAG_SAME && last >= 0) {
+                        s.add(time, s.kinds[last], s.nums[last]);
+                    } else if (tag == KIND_LONG) {
+                        long prev = (last >= 0 && s.kinds[last] == KIND_LONG) ? s.nums[last] : 0L;
+                        s.add(time, KIND_LONG, prev + readVarLong(in));
+                    } else if (tag == KIND_DOUBLE) {
+                        s.add(time, KIND_DOUBLE, Double.doubleToLongBits(in.readDouble()));
+                    } else if (tag == KIND_TEXT) {
+                        long len = readVarLong(in);
+                        if (len < 0 || len > bin.available()) break;
+                        byte[] b = new byte[(int) len];
+                        in.readFully(b);
+                        s.add(time, KIND_TEXT, s.textId(new String(b, StandardCharsets.UTF_8)));
+                    } else {
+                        break; // unbekannter Eintrag -> Rest verwerfen
+                    }
+                    valid = bytes.length - bin.available();
+                }
+            } catch (EOFException ignore) {
+                // unvollstaendiger letzter Eintrag
+            }
+            // abgebrochenen letzten Eintrag (z.B. Absturz beim Schreiben) abschneiden
+            if (bytes.length > valid) {
+                try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    ch.truncate(valid);
+                }
+            }
+        }
+        series.put(key, s);
+        return s;
+    }
+
+    private Path fileFor(String key) {
+        StringBuilder sb = new StringBuilder();
+        for (char c : key.toCharArray()) {
+            sb.append(Character.isLetterOrDigit(c) || c == '-' || c == '_' || c == '@' ? c : '_');
+        }
+        // Hash gegen Kollisionen durch ersetzte Zeichen
+        sb.append('.').append(Integer.toHexString(key.hashCode())).append(".hist");
+        return dir.resolve(sb.toString());
+    }
+
+    private static byte kindOf(String v) {
+        if (v.isEmpty() || v.length() > 24) return KIND_TEXT;
+        try {
+            if (Long.toString(Long.parseLong(v)).equals(v)) return KIND_LONG;
+        } catch (NumberFormatException ignore) {}
+        try {
+            if (Double.toString(Double.parseDouble(v)).equals(v)) return KIND_DOUBLE;
+        } catch (NumberFormatException ignore) {}
+        return KIND_TEXT;
+    }
+
+    // ZigZag + Varint: kleine positive/negative Deltas brauchen 1-2 Byte
+    private static void writeVarLong(DataOutputStream out, long v) throws IOException {
+        long z = (v << 1) ^ (v >> 63);
+        while ((z & ~0x7FL) != 0) {
+            out.writeByte((int) ((z & 0x7F) | 0x80));
+            z >>>= 7;
+        }
+        out.writeByte((int) z);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long z = 0;
+        int shift = 0;
+        while (true) {
+            int b = in.readUnsignedByte();
+            z |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) break;
+            shift += 7;
+            if (shift > 63) throw new IOException("Varint zu lang");
+        }
+        return (z >>> 1) ^ -(z & 1);
+    }
+
+    /** Spaltenweise Zeitreihe: Zeit, Art und Wert (long, Double-Bits oder Textindex). */
+    public static final class Series {
+        long[] times = new long[16];
+        byte[] kinds = new byte[16];
+        long[] nums = new long[16];
+        int size;
+        List<String> texts = new ArrayList<>();
+        private Map<String, Integer> textIds = new HashMap<>();
+
+        public int size() {
+            return size;
+        }
+
+        public long time(int i) {
+            return times[i];
+        }
+
+        /** Numerischer Wert oder NaN fuer Text. */
+        public double number(int i) {
+            switch (kinds[i]) {
+                case KIND_LONG: return nums[i];
+                case KIND_DOUBLE: return Double.longBitsToDouble(nums[i]);
+                default: return Double.NaN;
+            }
+        }
+
+        public String value(int i) {
+            switch (kinds[i]) {
+                case KIND_LONG: return Long.toString(nums[i]);
+                case KIND_DOUBLE: return Double.toString(Double.longBitsToDouble(nums[i]));
+                default: return texts.get((int) nums[i]);
+            }
+        }
+
+        /** Index des ersten Eintrags mit Zeit >= t (Binaersuche). */
+        public int lowerBound(long t) {
+            int lo = 0, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (times[mid] < t) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+
+        /** Wert, der zum Zeitpunkt t galt (letzter Eintrag mit Zeit <= t), sonst null. */
+        public String valueAt(long t) {
+            int i = lowerBound(t + 1) - 1;
+            return i >= 0 ? value(i) : null;
+        }
+
+        void add(long t, byte kind, long num) {
+            if (size == times.length) {
+                int n = Math.max(16, size * 2);
+                times = Arrays.copyOf(times, n);
+                kinds = Arrays.copyOf(kinds, n);
+                nums = Arrays.copyOf(nums, n);
+            }
+            times[size] = t;
+            kinds[size] = kind;
+            nums[size] = num;
+            size++;
+        }
+
+        int textId(String v) {
+            Integer id = textIds.get(v);
+            if (id == null) {
+                id = texts.size();
+                texts.add(v);
+                textIds.put(v, id);
+            }
+            return id;
+        }
+
+        Series copy() {
+            Series c = new Series();
+            c.times = Arrays.copyOf(times, size);
+            c.kinds = Arrays.copyOf(kinds, size);
+            c.nums = Arrays.copyOf(nums, size);
+            c.size = size;
+            c.texts = new ArrayList<>(texts);
+            return c;
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package com.example.dbcompare;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.*;
+import java.util.Properties;
+
+/**
+ * Inkrementeller Vergleich (Abfrage-Option "incremental=MARKER", z.B. ORA_ROWSCN oder eine
+ * Aenderungsspalte): je (QUERY_ID, DB) wird ein Zustand "Schluessel -> Zeilen-Hash" gefuehrt.
+ * - SQL-Aufbau: Schluesselspalten ("key=n", Standard 1), Wertspalten, Marker als LETZTE Spalte;
+ *   {@link #PLACEHOLDER} als Bedingung im WHERE wird zu "MARKER >= ?" (High-Water-Mark)
+ * - Geaenderte Zeilen werden in den Zustand gemischt; der Zellwert (Zeilen + Summe der Hashes)
+ *   ist damit wie beim Vollvergleich von der Reihenfolge unabhaengig
+ * - Der Zustand liegt als Append-Log unter "incremental.dir" (Standard ~/.dbcompare/incremental):
+ *   je Lauf werden nur die Aenderungen angehaengt, verdichtet wird erst ab doppelter Groesse
+ * - ">=" liest die letzte Marke erneut (idempotent) und faengt gleichzeitig committete Zeilen ab
+ * Geloeschte Zeilen sieht ein Marker nicht: gezielte Wiederholung und "incremental.full.hours"
+ * (Standard 168) erzwingen einen Volllauf.
+ */
+public class IncrementalState {
+
+    public static final String PLACEHOLDER = "/*SINCE*/";
+
+    private static final int MAGIC = 0x44424349; // "DBCI"
+    private static final byte VERSION = 1;
+    private static final int HEADER_BYTES = 5;    // int MAGIC, byte VERSION
+    private static final int RECORD_BYTES = 16;   // long Schluessel-Hash, long Zeilen-Hash
+    private static final char COLUMN_SEP = '\u001F';
+    private static final byte MARK_NUMBER = 1;
+    private static final byte MARK_TIMESTAMP = 2;
+    private static final byte MARK_TEXT = 3;
+
+    private final Path dir;
+    private final long fullIntervalMillis;
+    private final java.util.concurrent.ConcurrentHashMap<String, Object> locks = new java.util.concurrent.ConcurrentHashMap<>();
+
+    public IncrementalState(Path dir, long fullIntervalMillis) {
+        this.dir = dir;
+        this.fullIntervalMillis = fullIntervalMillis;
+    }
+
+    public static IncrementalState fromConfig(Properties p) {
+        String d = p.getProperty("incremental.dir");
+        Path path = (d == null || d.trim().isEmpty())
+                ? Paths.get(System.getProperty("user.home"), ".dbcompare", "incremental")
+                : Paths.get(d.trim());
+        long hours = Long.parseLong(p.getProperty("incremental.full.hours", "168").trim());
+        return new IncrementalState(path, hours * 3600_000L);
+    }
+
+    public static boolean isEnabled(QueryOptions options) {
+        return options.has("incremental");
+    }
+
+    /**
+     * Fuehrt die Abfrage (voll oder ab High-Water-Mark) aus, mischt die Zeilen in den Zustand
+     * und liefert den Zellwert.
+     * @param forceFull Volllauf (z.B. gezielte Wiederholung), Zustand wird neu aufgebaut
+     */
+    public String run(Connection c, String seriesKey, String sql, QueryOptions options, boolean forceFull)
+            throws SQLException, IOException {
+        // dieselbe Reihe nie parallel fortschreiben (z.B. Watch und gezielte Wiederholung)
+        synchronized (locks.computeIfAbsent(seriesKey, k -> new Object())) {
+            return runLocked(c, seriesKey, sql, options, forceFull);
+        }
+    }
+
+    private String runLocked(Connection c, String seriesKey, String sql, QueryOptions options, boolean forceFull)
+            throws SQLException, IOException {
+        if (sql == null || !sql.contains(PLACEHOLDER)) {
+            throw new IllegalArgumentException("incremental= braucht " + PLACEHOLDER + " als Bedingung im WHERE");
+        }
+        String marker = options.get("incremental").trim();
+        int keyCols = (int) Math.max(1, options.getLong("key", 1));
+        Path log = dir.resolve(fileName(seriesKey) + ".log");
+        Path meta = dir.resolve(fileName(seriesKey) + ".hwm");
+        Files.createDirectories(dir);
+
+        Meta m = forceFull ? null : readMeta(meta);
+        boolean full = m == null || System.currentTimeMillis() - m.fullAtMillis > fullIntervalMillis;
+        LongLongMap state = full ? new LongLongMap() : load(log);
+        if (state == null) {                       // Log fehlt/defekt -> neu aufbauen
+            full = true;
+            state = new LongLongMap();
+        }
+
+        String stmt = sql.trim().replace(PLACEHOLDER, full ? "1=1" : "(" + marker + " >= ?)");
+        Object highWater = full ? null : m.mark;
+        long changed = 0;
+        ByteArrayOutputStream delta = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(delta);
+        try (PreparedStatement ps = c.prepareStatement(stmt)) {
+            ps.setFetchSize(1000);
+            if (!full) ps.setObject(1, m.mark);
+            try (ResultSet rs = ps.executeQuery()) {
+                int cols = rs.getMetaData().getColumnCount();
+                if (cols < keyCols + 1) throw new SQLException("incremental= erwartet Schluessel, Werte und den Marker als letzte Spalte");
+                int[] types = new int[cols + 1];
+                for (int i = 1; i <= cols; i++) types[i] = rs.getMetaData().getColumnType(i);
+                CompareRules.RowFormat format = CompareRules.of(options).bind(rs.getMetaData());
+                StringBuilder sb = new StringBuilder(256);
+                while (rs.next()) {
+                    sb.setLength(0);
+                    for (int i = 1; i <= keyCols; i++) {
+                        if (i > 1) sb.append(COLUMN_SEP);
+                        sb.append(rs.getString(i));
+                    }
+                    long keyHash = nonZero(ResultDigest.hash64(sb));
+                    for (int i = keyCols + 1; i < cols; i++) {
+                        if (!format.isIncluded(i)) continue;
+                        sb.append(COLUMN_SEP);
+                        format.appendColumn(rs, i, sb);
+                    }
+                    long rowHash = nonZero(ResultDigest.hash64(sb));
+                    Object mark = markOf(rs, cols, types[cols]);
+                    if (mark != null && (highWater == null || compare(mark, highWater) > 0)) highWater = mark;
+                    if (state.put(keyHash, rowHash) != rowHash) {
+                        changed++;
+                        if (!full) {                   // Volllauf schreibt ohnehin einen Snapshot
+                            out.writeLong(keyHash);
+                            out.writeLong(rowHash);
+                        }
+                    }
+                }
+            }
+        }
+
+        // erst Log, dann Marke: bricht es dazwischen ab, liest der naechste Lauf die Aenderungen erneut
+        if (full || state.size() * 2L < logRecords(log)) {
+            writeSnapshot(log, state);
+        } else if (changed > 0) {
+            appendDelta(log, delta.toByteArray());
+        }
+        long fullAt = full ? System.currentTimeMillis() : m.fullAtMillis;
+        writeMeta(meta, new Meta(highWater != null ? highWater : (m != null ? m.mark : null), fullAt));
+        ExecLog.incremental(seriesKey, full, changed, state.size());
+        return state.size() + " Zeilen Σ" + Long.toHexString(state.sum()) + " (inkr.)";
+    }
+
+    private static long nonZero(long h) {
+        return h == 0 ? 1 : h;
+    }
+
+    private static Object markOf(ResultSet rs, int col, int sqlType) throws SQLException {
+        switch (sqlType) {
+            case Types.DATE:
+            case Types.TIMESTAMP:
+            case Types.TIMESTAMP_WITH_TIMEZONE:
+                return rs.getTimestamp(col);
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                return rs.getBigDecimal(col);
+            default:
+                return rs.getString(col);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Object a, Object b) {
+        if (a.getClass() != b.getClass()) return String.valueOf(a).compareTo(String.valueOf(b));
+        return ((Comparable) a).compareTo(b);
+    }
+
+    // ----- Persistenz -----
+
+    private static String fileName(String seriesKey) {
+        StringBuilder sb = new StringBuilder();
+        for (char ch : seriesKey.toCharArray()) sb.append(Character.isLetterOrDigit(ch) || ch == '-' ? ch : '_');
+        return sb + "-" + Long.toHexString(ResultDigest.hash64(seriesKey));
+    }
+
+    /** Spielt das Log ab (spaeterer Eintrag gewinnt); null = fehlt oder Kopf ungueltig. */
+    private static LongLongMap load(Path log) throws IOException {
+        if (!Files.exists(log)) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(log), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) return null;
+            LongLongMap map = new LongLongMap();
+            while (true) {
+                long k, v;
+                try {
+                    k = in.readLong();
+                    v = in.readLong();
+                } catch (EOFException eof) {
+                    return map;                    // abgeschnittener Rest wird ignoriert
+                }
+                map.put(k, v);
+            }
+        } catch (EOFException ex) {
+            return null;
+        }
+    }
+
+    private static long logRecords(Path log) throws IOException {
+        return Files.exists(log) ? (Files.size(log) - HEADER_BYTES) / RECORD_BYTES : 0;
+    }
+
+    /**
+     * Haengt Aenderungen an. Ein abgebrochener Satz am Ende (Absturz beim Schreiben) wird vorher
+     * abgeschnitten, sonst waeren alle folgenden Saetze um dessen Laenge verschoben.
+     */
+    private static void appendDelta(Path log, byte[] delta) throws IOException {
+        try (FileChannel ch = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            long size = ch.size();
+            long aligned = size - (size - HEADER_BYTES) % RECORD_BYTES;
+            if (aligned < size) ch.truncate(aligned);
+            ch.position(aligned);
+            ByteBuffer buf = ByteBuffer.wrap(delta);
+            while (buf.hasRemaining()) ch.write(buf);
+        }
+    }
+
+    private static void writeSnapshot(Path log, LongLongMap state) throws IOException {
+        Path tmp = Files.createTempFile(log.getParent(), "incr", ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            state.forEach((k, v) -> {
+                out.writeLong(k);
+                out.writeLong(v);
+            });
+        }
+        Files.move(tmp, log, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static final class Meta {
+        final Object mark;            // BigDecimal, Timestamp oder String; null = keine Zeilen bisher
+        final long fullAtMillis;
+
+        Meta(Object mark, long fullAtMillis) {
+            this.mark = mark;
+            this.fullAtMillis = fullAtMillis;
+        }
+    }
+
+    private static Meta readMeta(Path meta) {
+        if (!Files.exists(meta)) return null;
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(meta))) {
+            if (in.readInt() != MAGIC) return null;
+            long fullAt = in.readLong();
+            byte kind = in.readByte();
+            if (kind == 0) return null;    // noch keine Marke -> Volllauf
+            String text = new String(readBytes(in), StandardCharsets.UTF_8);
+            Object mark = kind == MARK_NUMBER ? new BigDecimal(text)
+                    : kind == MARK_TIMESTAMP ? Timestamp.valueOf(text) : text;
+            return new Meta(mark, fullAt);
+        } catch (IOException | IllegalArgumentException ex) {
+            return null;                   // unlesbar -> Volllauf
+        }
+    }
+
+    private static void writeMeta(Path meta, Meta m) throws IOException {
+        Path tmp = Files.createTempFile(meta.getParent(), "hwm", ".tmp");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(tmp))) {
+            out.writeInt(MAGIC);
+            out.writeLong(m.fullAtMillis);
+            if (m.mark == null) {
+                out.writeByte(0);
+            } else {
+                out.writeByte(m.mark instanceof BigDecimal ? MARK_NUMBER : m.mark instanceof Timestamp ? MARK_TIMESTAMP : MARK_TEXT);
+                byte[] b = m.mark.toString().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(b.length);
+                out.write(b);
+            }
+        }
+        Files.move(tmp, meta, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len < 0 || len > 1 << 20) throw new IOException("ungueltige Laenge " + len);
+        byte[] b = new byte[len];
+        in.readFully(b);
+        return b;
+    }
+
+    /**
+     * Offene Adressierung long -> long (Schluessel 0 = frei), ohne Boxing; fuehrt Anzahl und
+     * Summe der Werte mit.
+     */
+    static final class LongLongMap {
+        private long[] keys = new long[1024];
+        private long[] values = new long[1024];
+        private int size;
+        private long sum;
+
+        interface Visitor {
+            void visit(long key, long value) throws IOException;
+        }
+
+        /** @return bisheriger Wert oder 0 */
+        long put(long key, long value) {
+            if ((size + 1) * 4L > keys.length * 3L) grow();
+            int mask = keys.length - 1;
+            int i = (int) (mix(key) & mask);
+            while (keys[i] != 0) {
+                if (keys[i] == key) {
+                    long old = values[i];
+                    values[i] = value;
+                    sum += value - old;
+                    return old;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = value;
+            size++;
+            sum += value;
+            return 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        long sum() {
+            return sum;
+        }
+
+        void forEach(Visitor v) throws IOException {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) v.visit(keys[i], values[i]);
+            }
+        }
+
+        private void grow() {
+            long[] ok = keys, ov = values;
+            keys = new long[ok.length * 2];
+            values = new long[ok.length * 2];
+            size = 0;
+            sum = 0;
+            for (int i = 0; i < ok.length; i++) {
+                if (ok[i] != 0) put(ok[i], ov[i]);
+            }
+        }
+
+        private static long mix(long h) {
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            return h ^ (h >>> 33);
+        }
+    }
+}
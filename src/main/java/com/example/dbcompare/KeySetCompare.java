@@ -0,0 +1,281 @@
+package com.example.dbcompare;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.sql.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Schluesselmengen-Vergleich sehr grosser Tabellen (Abfrage-Option "diff=keys"): das SQL liefert
+ * nur Schluesselspalten, verglichen wird gegen die Referenz-DB (erstes DB_KUERZEL).
+ * - Schluessel werden gestreamt in Bloom-Filter feste Groesse ("bloom.mb" je Filter, Standard 128)
+ *   ausserhalb des Heaps geschrieben (Direct-Buffer, long-Bitfeld) -> Speicher unabhaengig von der Zeilenzahl
+ * - Direct-Buffer lassen sich nicht gezielt freigeben: zurueckgegebene Filter ({@link #release})
+ *   werden geleert und wiederverwendet (hoechstens {@link #MAX_IDLE_FILTERS} frei)
+ * - Ein Bloom-Filter kennt keine falsch-negativen Treffer: fehlt ein Schluessel im Filter der
+ *   anderen Seite, fehlt er dort sicher (zum Zeitpunkt des Scans)
+ * - Kandidaten werden mit "lookup=SELECT 1 FROM T WHERE ID = ?" gezielt nachgeprueft (hoechstens
+ *   "keys.verify.max", Standard 1000 je Richtung), um zwischenzeitliche Aenderungen auszuschliessen
+ * Durch falsch-positive Treffer versteckte Unterschiede bleiben moeglich; die Fehlerrate wird angezeigt.
+ */
+public class KeySetCompare {
+
+    private static final char COLUMN_SEP = '\u001F';
+    private static final int DEFAULT_HASHES = 7;     // optimal fuer ~10 Bit je Schluessel
+    private static final int MAX_EXAMPLE_CHARS = 60;
+    static final int MAX_IDLE_FILTERS = 2;
+
+    private final long filterBytes;
+    private final int verifyMax;
+    private final Deque<BloomFilter> idle = new ArrayDeque<>();
+
+    public KeySetCompare(long filterBytes, int verifyMax) {
+        this.filterBytes = filterBytes;
+        this.verifyMax = verifyMax;
+    }
+
+    public static KeySetCompare fromConfig(Properties p) {
+        long mb = Long.parseLong(p.getProperty("bloom.mb", "128").trim());
+        int verify = Integer.parseInt(p.getProperty("keys.verify.max", "1000").trim());
+        return new KeySetCompare(mb * 1024 * 1024, verify);
+    }
+
+    public static boolean isEnabled(QueryOptions options) {
+        return "keys".equalsIgnoreCase(options.get("diff", ""));
+    }
+
+    /** Filter + Anzahl der Schluessel einer DB. */
+    public static final class KeySet {
+        BloomFilter filter;   // null nach release
+        long count;
+
+        KeySet(BloomFilter filter) {
+            this.filter = filter;
+        }
+
+        public long getCount() {
+            return count;
+        }
+    }
+
+    /** Streamt die Schluessel einer DB in einen Filter; der Aufrufer gibt ihn mit {@link #release} zurueck. */
+    public KeySet scan(Connection c, String sql, QueryOptions options) throws SQLException {
+        KeySet set = new KeySet(newFilter(options));
+        try {
+            stream(c, sql, (key, cols) -> {
+                set.filter.add(key);
+                set.count++;
+            });
+        } catch (SQLException | RuntimeException ex) {
+            release(set);
+            throw ex;
+        }
+        return set;
+    }
+
+    /** Gibt den Filter zur Wiederverwendung zurueck; das KeySet ist danach nicht mehr benutzbar. */
+    public void release(KeySet set) {
+        BloomFilter f;
+        synchronized (set) {
+            f = set.filter;
+            set.filter = null;
+        }
+        if (f == null) return;
+        synchronized (idle) {
+            if (idle.size() < MAX_IDLE_FILTERS) idle.push(f);
+        }
+    }
+
+    /**
+     * Vergleicht die Schluessel von c mit der Referenz (deren Filter liegt bereits vor; fuer die
+     * Gegenrichtung wird die Referenz ein zweites Mal gestreamt).
+     */
+    public String compare(Connection refConn, KeySet ref, Connection c, String sql, QueryOptions options)
+            throws SQLException {
+        final KeySet own = new KeySet(newFilter(options));
+        try {
+            return compareKeys(refConn, ref, own, c, sql, options);
+        } finally {
+            release(own);
+        }
+    }
+
+    private String compareKeys(Connection refConn, KeySet ref, KeySet own, Connection c, String sql, QueryOptions options)
+            throws SQLException {
+        final Candidates extra = new Candidates(verifyMax);     // nur hier
+        stream(c, sql, (key, cols) -> {
+            own.filter.add(key);
+            own.count++;
+            if (!ref.filter.mightContain(key)) extra.add(cols);
+        });
+        final Candidates missing = new Candidates(verifyMax);   // nur in der Referenz
+        stream(refConn, sql, (key, cols) -> {
+            if (!own.filter.mightContain(key)) missing.add(cols);
+        });
+
+        String lookup = options.get("lookup");
+        boolean verified = lookup != null && !lookup.trim().isEmpty();
+        if (verified) {
+            extra.verify(refConn, lookup.trim());     // existiert der Schluessel doch in der Referenz?
+            missing.verify(c, lookup.trim());
+        }
+
+        if (extra.count == 0 && missing.count == 0) {
+            if (own.count == ref.count) return own.count + " Schlüssel";
+            return own.count + " Schlüssel: Anzahl weicht ab (Duplikate oder unter Fehlerrate "
+                    + formatRate(Math.max(own.filter.falsePositiveRate(own.count), ref.filter.falsePositiveRate(ref.count))) + ")";
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(own.count).append(" Schlüssel: +").append(extra.count).append(" / -").append(missing.count)
+                .append(verified && extra.allVerified() && missing.allVerified() ? " (geprüft)" : " (ungeprüft)");
+        if (!extra.examples.isEmpty()) sb.append(", z.B. +[").append(example(extra.examples.get(0))).append(']');
+        else if (!missing.examples.isEmpty()) sb.append(", z.B. -[").append(example(missing.examples.get(0))).append(']');
+        return sb.toString();
+    }
+
+    private BloomFilter newFilter(QueryOptions options) {
+        long bits = filterBytes * 8;
+        long expected = options.getLong("keys.expected", 0);
+        int k = expected > 0
+                ? (int) Math.max(1, Math.min(16, Math.round((double) bits / expected * Math.log(2))))
+                : DEFAULT_HASHES;
+        BloomFilter f;
+        synchronized (idle) {
+            f = idle.poll();
+        }
+        if (f == null) return new BloomFilter(bits, k);
+        f.reset(k);
+        return f;
+    }
+
+    private interface KeyConsumer {
+        void accept(long keyHash, String[] cols) throws SQLException;
+    }
+
+    private static void stream(Connection c, String sql, KeyConsumer consumer) throws SQLException {
+        try (Statement st = c.createStatement()) {
+            st.setFetchSize(5000);
+            try (ResultSet rs = st.executeQuery(sql.trim())) {
+                int cols = rs.getMetaData().getColumnCount();
+                StringBuilder sb = new StringBuilder(64);
+                while (rs.next()) {
+                    sb.setLength(0);
+                    String[] values = new String[cols];
+                    for (int i = 1; i <= cols; i++) {
+                        if (i > 1) sb.append(COLUMN_SEP);
+                        values[i - 1] = rs.getString(i);
+                        sb.append(values[i - 1] == null ? "NULL" : values[i - 1]);
+                    }
+                    consumer.accept(ResultDigest.hash64(sb), values);
+                }
+            }
+        }
+    }
+
+    private static String example(String[] cols) {
+        String s = String.join("|", cols);
+        return s.length() > MAX_EXAMPLE_CHARS ? s.substring(0, MAX_EXAMPLE_CHARS) + "…" : s;
+    }
+
+    private static String formatRate(double p) {
+        return String.format(java.util.Locale.ROOT, "%.2g%%", p * 100);
+    }
+
+    /** Kandidaten einer Richtung: Anzahl + die ersten Schluessel fuer Nachpruefung und Anzeige. */
+    private static final class Candidates {
+        final int keep;
+        final List<String[]> examples = new ArrayList<>();
+        long count;
+
+        Candidates(int keep) {
+            this.keep = keep;
+        }
+
+        void add(String[] cols) {
+            count++;
+            if (examples.size() < keep) examples.add(cols);
+        }
+
+        boolean allVerified() {
+            return examples.size() == count;
+        }
+
+        /** Entfernt Kandidaten, die es auf der Gegenseite doch gibt (Aenderung waehrend der Scans). */
+        void verify(Connection other, String lookupSql) throws SQLException {
+            try (PreparedStatement ps = other.prepareStatement(lookupSql)) {
+                int params = ps.getParameterMetaData().getParameterCount();
+                List<String[]> confirmed = new ArrayList<>(examples.size());
+                for (String[] cols : examples) {
+                    for (int i = 0; i < params && i < cols.length; i++) ps.setString(i + 1, cols[i]);
+                    boolean found;
+                    try (ResultSet rs = ps.executeQuery()) {
+                        found = rs.next() && !"0".equals(rs.getString(1));
+                    }
+                    if (found) count--;
+                    else confirmed.add(cols);
+                }
+                examples.clear();
+                examples.addAll(confirmed);
+            }
+        }
+    }
+
+    /**
+     * Bloom-Filter ueber ein long-Bitfeld im Direct-Buffer (ausserhalb des Heaps, kein GC-Scan).
+     * Doppel-Hashing: Position i = h1 + i*h2 (Kirsch/Mitzenmacher).
+     */
+    static final class BloomFilter {
+        private final LongBuffer bits;
+        private final long bitCount;
+        private int hashes;
+
+        BloomFilter(long bitCount, int hashes) {
+            long words = Math.max(1, (bitCount + 63) / 64);
+            if (words * 8 > Integer.MAX_VALUE) throw new IllegalArgumentException("Bloom-Filter zu gross (max. 2 GB)");
+            this.bits = ByteBuffer.allocateDirect((int) (words * 8)).asLongBuffer();
+            this.bitCount = words * 64;
+            this.hashes = hashes;
+        }
+
+        /** Leert das Bitfeld fuer die Wiederverwendung. */
+        void reset(int hashes) {
+            for (int i = 0, n = bits.capacity(); i < n; i++) bits.put(i, 0L);
+            this.hashes = hashes;
+        }
+
+        void add(long hash) {
+            long h1 = mix(hash), h2 = mix(hash ^ 0x9e3779b97f4a7c15L) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+                int word = (int) (bit >>> 6);
+                bits.put(word, bits.get(word) | (1L << bit));
+            }
+        }
+
+        boolean mightContain(long hash) {
+            long h1 = mix(hash), h2 = mix(hash ^ 0x9e3779b97f4a7c15L) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+            }
+            return true;
+        }
+
+        /** Erwartete Falsch-positiv-Rate bei n eingefuegten Schluesseln. */
+        double falsePositiveRate(long n) {
+            return Math.pow(1 - Math.exp(-(double) hashes * n / bitCount), hashes);
+        }
+
+        private static long mix(long h) {
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            return h ^ (h >>> 33);
+        }
+    }
+}
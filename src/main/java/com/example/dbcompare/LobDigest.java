@@ -0,0 +1,165 @@
+package com.example.dbcompare;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.*;
+
+/**
+ * Verdichtet LOB-/LONG-Werte zu "Groesse + SHA-256 + Anfang", statt sie komplett als String
+ * zu laden. Gelesen wird ueber Character-/Binary-Streams mit festen Puffern, so dass auch
+ * mehrere MB grosse Konfigurations-Blobs speicherschonend zwischen DBs vergleichbar sind.
+ * Gleiche Inhalte ergeben auf allen DBs denselben Anzeigewert.
+ */
+public final class LobDigest {
+
+    private static final int BUFFER_CHARS = 8192;
+    private static final int PREFIX_CHARS = 60;
+    private static final int PREFIX_BYTES = 16;
+    private static final int HASH_BYTES = 16;      // angezeigte Laenge des Hashes (32 Hex-Zeichen)
+
+    private LobDigest() {}
+
+    /** Spaltentypen, die gestreamt statt als String gelesen werden. */
+    public static boolean isLob(int sqlType) {
+        switch (sqlType) {
+            case Types.CLOB:
+            case Types.NCLOB:
+            case Types.LONGVARCHAR:
+            case Types.LONGNVARCHAR:
+            case Types.BLOB:
+            case Types.LONGVARBINARY:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /** Anzeige-/Vergleichswert einer LOB-Spalte; "NULL" bei SQL NULL. */
+    public static String describe(ResultSet rs, int col, int sqlType) throws SQLException {
+        try {
+            switch (sqlType) {
+                case Types.BLOB: {
+                    Blob b = rs.getBlob(col);
+                    if (b == null) return "NULL";
+                    try (InputStream in = b.getBinaryStream()) {
+                        return digestBinary("BLOB", in);
+                    } finally {
+                        b.free();
+                    }
+                }
+                case Types.LONGVARBINARY: {
+                    InputStream in = rs.getBinaryStream(col);
+                    if (in == null) return "NULL";
+                    try (InputStream s = in) {
+                        return digestBinary("LONG RAW", s);
+                    }
+                }
+                case Types.CLOB:
+                case Types.NCLOB: {
+                    Clob c = rs.getClob(col);
+                    if (c == null) return "NULL";
+                    try (Reader r = c.getCharacterStream()) {
+                        return digestText("CLOB", r);
+                    } finally {
+                        c.free();
+                    }
+                }
+                default: {
+                    Reader r = rs.getCharacterStream(col);
+                    if (r == null) return "NULL";
+                    try (Reader s = r) {
+                        return digestText("LONG", s);
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            throw new SQLException("LOB konnte nicht gelesen werden: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Begrenzt einen Zellwert: bis maxChars unveraendert, darueber "[TEXT n Zeichen, sha256=..] Anfang…".
+     * Der Hash laeuft ueber den vollen Wert -> Vergleiche zwischen DBs bleiben exakt.
+     */
+    public static String bound(String value, int maxChars) {
+        if (value == null || maxChars <= 0 || value.length() <= maxChars) return value;
+        try {
+            return digestText("TEXT", new StringReader(value));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);   // StringReader wirft nicht
+        }
+    }
+
+    /** Verdichteter Wert (LOB oder begrenzter Text)? Dann kann der volle Wert nachgeladen werden. */
+    public static boolean isDigested(String value) {
+        return value != null && value.startsWith("[") && value.contains(", sha256=");
+    }
+
+    static String digestText(String label, Reader reader) throws IOException {
+        MessageDigest md = sha256();
+        CharsetEncoder enc = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer chars = CharBuffer.allocate(BUFFER_CHARS);
+        ByteBuffer bytes = ByteBuffer.allocate(BUFFER_CHARS * 4);
+        StringBuilder prefix = new StringBuilder(PREFIX_CHARS);
+        long length = 0;
+
+        int n;
+        while ((n = reader.read(chars.array(), chars.position(), chars.remaining())) != -1) {
+            for (int i = chars.position(); i < chars.position() + n && prefix.length() < PREFIX_CHARS; i++) {
+                char ch = chars.array()[i];
+                prefix.append(Character.isISOControl(ch) ? ' ' : ch);
+            }
+            length += n;
+            chars.position(chars.position() + n);
+            chars.flip();
+            enc.encode(chars, bytes, false);   // unvollstaendige Surrogatpaare bleiben im Puffer
+            chars.compact();
+            md.update(bytes.array(), 0, bytes.position());
+            bytes.clear();
+        }
+        chars.flip();
+        enc.encode(chars, bytes, true);
+        enc.flush(bytes);
+        md.update(bytes.array(), 0, bytes.position());
+
+        return "[" + label + " " + length + " Zeichen, sha256=" + ResultDigest.hex(md.digest(), HASH_BYTES) + "] "
+                + prefix + (length > PREFIX_CHARS ? "…" : "");
+    }
+
+    static String digestBinary(String label, InputStream in) throws IOException {
+        MessageDigest md = sha256();
+        byte[] buf = new byte[BUFFER_CHARS];
+        byte[] prefix = new byte[PREFIX_BYTES];
+        int prefixLen = 0;
+        long length = 0;
+
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            if (prefixLen < PREFIX_BYTES) {
+                int take = Math.min(n, PREFIX_BYTES - prefixLen);
+                System.arraycopy(buf, 0, prefix, prefixLen, take);
+                prefixLen += take;
+            }
+            md.update(buf, 0, n);
+            length += n;
+        }
+        return "[" + label + " " + length + " Bytes, sha256=" + ResultDigest.hex(md.digest(), HASH_BYTES) + "] 0x"
+                + ResultDigest.hex(prefix, prefixLen) + (length > PREFIX_BYTES ? "…" : "");
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,15 +1,23 @@
 package com.example.dbcompare;
 
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.collections.transformation.FilteredList;
+import javafx.collections.transformation.SortedList;
+import javafx.concurrent.ScheduledService;
 import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
+import javafx.scene.shape.Polyline;
 import javafx.scene.text.Text;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 
 import java.io.*;
 import java.nio.file.*;
@@ -19,9 +27,101 @@ import java.util.*;
 public class Main extends Application {
 
     private TableView<Map<String, String>> tableView = new TableView<>();
+
+    // Alle Ergebniszeilen; die Tabelle zeigt eine gefilterte + sortierte Sicht darauf
+    private final ObservableList<Map<String, String>> allItems = FXCollections.observableArrayList();
+    private final FilteredList<Map<String, String>> filteredItems = new FilteredList<>(allItems);
+    private TableFilterIndex filterIndex;
+
+    // Filterleiste
+    private CheckBox onlyMismatches;
+    private CheckBox onlyFailed;
+    private ComboBox<String> dbFilter;
+    private TextField sqlSearch;
+    private Label filterCount;
+
+    // DB-Spalten: nach Umgebung gruppiert, eingeklappte Gruppen als eine Summenspalte.
+    // Ab COMPACT_COLUMN_THRESHOLD sichtbaren DB-Spalten feste Zeilenhöhe -> JavaFX rendert
+    // nur die horizontal sichtbaren Zellen.
+    private static final int COMPACT_COLUMN_THRESHOLD = 30;
+    private static final double COMPACT_ROW_HEIGHT = 24;
+    private final Map<String, TableColumn<Map<String, String>, String>> dbColumns =
+            new HashMap<String, TableColumn<Map<String, String>, String>>();
+    private final Set<String> collapsedGroups = new HashSet<String>();
+    private boolean firstLayout = true;
+    private boolean compactRows;
+    private List<String> currentDbKeys = Collections.emptyList();
+    private CheckBox showUnusedDbs;
+    private java.util.regex.Pattern envPattern = java.util.regex.Pattern.compile("^([A-Za-z]+)");
     private DBConfigResolver resolver;
     private Map<String, String> dbMap;
-    private Connection oracleConn;
+    private RepositoryPool repository;
+
+    // Ziel-DB-Connections bleiben zwischen Läufen offen (Refresh + gezielte Wiederholungen)
+    private DbConnectionCache targetConnections = new DbConnectionCache();
+
+    // Optionale Agenten nahe den Ziel-DBs: liefern nur Digests statt Rohdaten (Property "agents")
+    private AgentRegistry agents = new AgentRegistry(Collections.<AgentClient>emptyList());
+
+    // Verlauf aller Prüfwerte je (QUERY_ID, DB) für Sparkline-Tooltip und "abweichend seit"
+    private static final long HISTORY_WINDOW_MILLIS = 30L * 24 * 3600 * 1000;
+    private static final int HISTORY_MAX_POINTS = 60;
+    private HistoryStore history;
+
+    // Optionaler Kosten-Check (EXPLAIN PLAN) vor Refresh/Watch; gezielte Wiederholungen laufen immer
+    private CostPreflight preflight;
+
+    // Gesundheitszustand je DB: offene DBs werden ohne Verbindungsversuch übersprungen
+    private CircuitBreaker breaker;
+
+    // Ergebnis-Pipeline: Zellwerte fließen mit Backpressure an Tabelle, Historie, CSV und Metriken
+    private final java.util.concurrent.ExecutorService sinkExecutor =
+            java.util.concurrent.Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "resultSink");
+                t.setDaemon(true);
+                return t;
+            });
+    private int pipelineBuffer = 256;
+    private Path runCsvDir;           // null = Läufe nicht als CSV mitschreiben
+    private Label metricsLabel;
+
+    // Gespeicherte Sollwerte je QUERY_ID; die Referenz-DB wird dann nur beim Aktualisieren abgefragt
+    private BaselineStore baselines;
+    private boolean baselineSkipsReference = true;
+
+    // Zellwerte über dem Budget werden als Anfang + Länge + SHA-256 gespeichert; voller Wert nur auf Abruf
+    private static final int DETAIL_MAX_CHARS = 5_000_000;
+    private int cellMaxChars = 1000;
+
+    // Geteilte Abfragen (Option split=): Teilabfragen parallel über zusätzliche Sessions je DB
+    private final java.util.concurrent.ExecutorService chunkExecutor =
+            java.util.concurrent.Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "chunk");
+                t.setDaemon(true);
+                return t;
+            });
+    private int chunkSessions = 4;
+
+    // Inkrementeller Vergleich (Option incremental=): nur geänderte Zeilen seit der High-Water-Mark
+    private IncrementalState incremental;
+
+    // Zeilen-Diff (Option diff=rows): sortierte Runs der Referenz-DB je Abfrage, gültig für einen Lauf
+    private ExternalSortDiff rowDiff;
+    private final Map<String, ReferenceSpill> diffReferences = new HashMap<String, ReferenceSpill>();
+    // abweichende Zeilen je (Abfrage, DB) aus dem letzten Zeilen-Diff, für die Detailansicht
+    private final Map<String, DiffStore> diffStores = new HashMap<String, DiffStore>();
+
+    // Schlüsselmengen-Vergleich (Option diff=keys): Bloom-Filter der Referenz-DB je Abfrage, gültig für einen Lauf
+    private KeySetCompare keySets;
+    // höchstens ein Referenz-Bloom-Filter je Lauf: Zellen laufen zeilenweise, die nächste diff=keys-Zeile löst ihn ab
+    private final Map<ResultPipeline, ReferenceKeys> keyReferences = new IdentityHashMap<ResultPipeline, ReferenceKeys>();
+
+    // Watch-Modus: Abfragen laufen in eigenen Intervallen im Hintergrund (ohne Overlay)
+    private static final double WATCH_TICK_SECONDS = 5;
+    private static final int WATCH_MAX_BACKOFF = 8;   // max. Vielfaches des Basisintervalls
+    private long watchBaseSeconds = 300;
+    private ScheduledService<WatchCycle> watchService;
+    private Label watchLabel;
 
     // UI-Elemente für Busy-Overlay
     private ProgressIndicator busy;
@@ -38,14 +138,51 @@ public class Main extends Application {
         byte[] keyBytes = java.util.Base64.getDecoder().decode(keyB64);
         CryptoUtil.init(keyBytes);
 
+        ExecLog.configure(props);
+        targetConnections = DbConnectionCache.fromConfig(props);
+        watchBaseSeconds = Long.parseLong(props.getProperty("watch.interval.seconds", "300").trim());
+        agents = AgentRegistry.fromConfig(props);
+        history = HistoryStore.fromConfig(props);
+        preflight = CostPreflight.fromConfig(props);
+        breaker = CircuitBreaker.fromConfig(props);
+        rowDiff = ExternalSortDiff.fromConfig(props);
+        keySets = KeySetCompare.fromConfig(props);
+        baselines = BaselineStore.fromConfig(props);
+        baselineSkipsReference = Boolean.parseBoolean(props.getProperty("baseline.skip.reference", "true").trim());
+        incremental = IncrementalState.fromConfig(props);
+        chunkSessions = Integer.parseInt(props.getProperty("chunk.sessions", "4").trim());
+        cellMaxChars = Integer.parseInt(props.getProperty("cell.max.chars", "1000").trim());
+        pipelineBuffer = Integer.parseInt(props.getProperty("pipeline.buffer", "256").trim());
+        String csvDir = props.getProperty("pipeline.csv.dir");
+        if (!isNullOrBlank(csvDir)) runCsvDir = Paths.get(csvDir.trim());
+        preflight.setConnectionSource(new CostPreflight.ConnectionSource() {
+            @Override
+            public Connection acquire(String dbKey) {
+                String def = dbMap.get(dbKey);
+                if (def == null || agents.forKey(dbKey) != null) return null;
+                try {
+                    return targetConnections.acquire(dbKey, def);
+                } catch (SQLException ex) {
+                    return null;
+                }
+            }
+
+            @Override
+            public void release(String dbKey, Connection c) {
+                targetConnections.release(dbKey, c);
+            }
+        });
+        String envRegex = props.getProperty("env.group.pattern");
+        if (!isNullOrBlank(envRegex)) envPattern = java.util.regex.Pattern.compile(envRegex.trim());
+
         String jdbcUrl = getRequired(props, "oracle.url");
         String user    = getRequired(props, "oracle.user");
         String pass    = getRequired(props, "oracle.password");
 
-        // 2) Oracle-Connection
-        oracleConn = DriverManager.getConnection(jdbcUrl, user, pass);
+        // 2) Repository-Sessions (Refresh, ABFRAGEN-Editor und DB-Config je eigene Session)
+        repository = RepositoryPool.fromConfig(props, jdbcUrl, user, pass);
 
-        resolver = new DBConfigResolver(oracleConn);
+        resolver = new DBConfigResolver(repository);
         dbMap = resolver.resolveConnections();
 
         // --- Layout ---
@@ -58,18 +195,47 @@ public class Main extends Application {
         Button exportButton = new Button("📄 Als Excel exportieren");
         exportButton.setOnAction(e -> exportTableToExcel(tableView));
 
+        Button retryFailedButton = new Button("↻ Fehler erneut");
+        retryFailedButton.setOnAction(e -> retryCellsAsync(collectCells(allItems, null, RetryScope.FAILED)));
+
+        Button retryMismatchButton = new Button("↻ Abweichungen erneut");
+        retryMismatchButton.setOnAction(e -> retryCellsAsync(collectCells(allItems, null, RetryScope.MISMATCHED)));
+
+        Button baselineImportButton = new Button("📌 Baselines importieren …");
+        baselineImportButton.setOnAction(e -> importBaselines());
+
         Button configButton = new Button("⚙ DB-Config");
         configButton.setOnAction(e -> openDbConfigWindow());
 
         Button editAbfragenBtn = new Button("📝 ABFRAGEN bearbeiten");
         editAbfragenBtn.setOnAction(e ->
-                AbfragenEditor.show((Stage) tableView.getScene().getWindow(), oracleConn)
+                AbfragenEditor.show((Stage) tableView.getScene().getWindow(), repository, preflight)
         );
 
-        topBar = new HBox(8, refreshButton, exportButton, configButton, editAbfragenBtn);
+        ToggleButton watchToggle = new ToggleButton("👁 Watch");
+        watchLabel = new Label();
+        metricsLabel = new Label();
+        watchService = createWatchService();
+        watchToggle.setOnAction(e -> {
+            if (watchToggle.isSelected()) {
+                watchService.restart();
+                watchLabel.setText("Watch aktiv");
+            } else {
+                watchService.cancel();
+                watchLabel.setText("");
+            }
+        });
+
+        topBar = new HBox(8, refreshButton, retryFailedButton, retryMismatchButton, exportButton, baselineImportButton, configButton,
+                editAbfragenBtn, watchToggle, watchLabel, metricsLabel);
+        topBar.setAlignment(Pos.CENTER_LEFT);
         topBar.setPadding(new Insets(8));
 
-        content.getChildren().addAll(topBar, tableView);
+        SortedList<Map<String, String>> sortedItems = new SortedList<>(filteredItems);
+        sortedItems.comparatorProperty().bind(tableView.comparatorProperty());
+        tableView.setItems(sortedItems);
+
+        content.getChildren().addAll(topBar, createFilterBar(), tableView);
         VBox.setVgrow(tableView, Priority.ALWAYS);
 
         // Busy-Overlay
@@ -111,24 +277,56 @@ public class Main extends Application {
             javafx.scene.Parent root = loader.load();
 
             DbConfigController controller = loader.getController();
-            controller.setConnection(oracleConn);
-
-            Stage stage = new Stage();
-            stage.setTitle("DB_CONFIG verwalten");
-            stage.setScene(new Scene(root, 900, 500));
-            stage.initOwner(tableView.getScene().getWindow());
-            stage.showAndWait();
-
-            // Nach eventuellen Änderungen: DB-Mapping & Haupttabelle neu laden
-            resolver = new DBConfigResolver(oracleConn);
-            dbMap = resolver.resolveConnections();
-            refreshTableAsync();
+            Connection conn = repository.acquire();
+            try {
+                controller.setConnection(conn);
+
+                Stage stage = new Stage();
+                stage.setTitle("DB_CONFIG verwalten");
+                stage.setScene(new Scene(root, 900, 500));
+                stage.initOwner(tableView.getScene().getWindow());
+                stage.showAndWait();
+            } finally {
+                // Erst wenn ein laufendes Speichern fertig ist: Session zurück, dann neu auflösen
+                controller.close(() -> {
+                    repository.release(conn);
+                    reloadDbConfigAsync();
+                });
+            }
         } catch (Exception ex) {
             ex.printStackTrace();
             new Alert(Alert.AlertType.ERROR, "Konnte DB-Config nicht öffnen:\n" + ex.getMessage()).showAndWait();
         }
     }
 
+    /**
+     * Nach eventuellen Änderungen: DB-Mapping & Haupttabelle neu laden
+     * (Resolver revalidiert selbst und lädt nur geänderte Zeilen nach).
+     */
+    private void reloadDbConfigAsync() {
+        busy.setProgress(ProgressIndicator.INDETERMINATE_PROGRESS);
+        setBusy(true, "DB-Konfiguration wird geladen …");
+        Task<Map<String, String>> task = new Task<Map<String, String>>() {
+            @Override
+            protected Map<String, String> call() throws Exception {
+                return resolver.resolveConnections();
+            }
+        };
+        task.setOnSucceeded(e -> {
+            setBusy(false, null);
+            dbMap = task.getValue();
+            targetConnections.retain(dbMap);
+            refreshTableAsync();
+        });
+        task.setOnFailed(e -> {
+            setBusy(false, null);
+            Throwable ex = task.getException();
+            new Alert(Alert.AlertType.ERROR, "DB-Konfiguration konnte nicht geladen werden:\n"
+                    + (ex != null ? ex.getMessage() : "unbekannt")).showAndWait();
+        });
+        new Thread(task, "reloadDbConfigAsync").start();
+    }
+
     private static boolean isNullOrBlank(String s) {
         return s == null || s.trim().isEmpty();
     }
@@ -180,58 +378,60 @@ public class Main extends Application {
                 // Reihenfolge der DB-Spalten (gemäß erstem Auftreten in DB_KUERZEL)
                 List<String> orderedDbKeys = buildOrderedDbKeys(queries, localDbMap);
 
-                // Welche DBs werden überhaupt gebraucht?
-                Set<String> usedDbs = new LinkedHashSet<String>(orderedDbKeys);
+                // Welche DBs werden überhaupt gebraucht? (Referenz-DBs mit Baseline nicht)
+                Set<String> usedDbs = new LinkedHashSet<String>();
+                for (QueryModel qm : queries) {
+                    boolean hasBaseline = baselines.get(qm) != null;
+                    for (String k : qm.getDbKuerzel()) {
+                        if (localDbMap.containsKey(k) && !skipsReference(qm, hasBaseline, k)) usedDbs.add(k);
+                    }
+                }
+
+                // Fortschritt kalkulieren (pro DB-Ausführung ein Schritt)
+                int totalSteps = 0;
+                for (QueryModel qm : queries) totalSteps += qm.getDbKuerzel().size();
+                if (totalSteps == 0) totalSteps = 1;
+                int step = 0;
 
-                // 2) EINMAL pro DB verbinden und Connection wiederverwenden
+                // 3) Items zusammenbauen (keine UI-Zugriffe!); die Werte schreibt der Tabellen-Sink
+                List<Map<String, String>> items = new ArrayList<Map<String, String>>();
+                ResultPipeline run = newPipeline(true, true);
+                // 2) pro DB eine Session leihen (aus dem Cache, auch über Läufe hinweg wiederverwendet)
                 Map<String, Connection> connections = new LinkedHashMap<String, Connection>();
                 try {
-                    openConnections(localDbMap, usedDbs, connections);
-
-                    // Fortschritt kalkulieren (pro DB-Ausführung ein Schritt)
-                    int totalSteps = 0;
-                    for (QueryModel qm : queries) totalSteps += qm.getDbKuerzel().size();
-                    if (totalSteps == 0) totalSteps = 1;
-                    int step = 0;
-
-                    // 3) Items zusammenbauen (keine UI-Zugriffe!)
-                    List<Map<String, String>> items = new ArrayList<Map<String, String>>();
+                    openConnections(localDbMap, usedDbs, connections, false);
                     for (QueryModel qm : queries) {
-                        Map<String, String> row = new LinkedHashMap<String, String>();
+                        ResultRow row = new ResultRow(qm);
                         row.put("SQL", qm.getSql());
+                        // Spaltenreihenfolge vorab festlegen; nicht vorgesehene DBs bleiben leer
+                        for (String dbKey : orderedDbKeys) row.put(dbKey, "");
+                        BaselineStore.Baseline baseline = baselines.get(qm);
+                        if (baseline != null) row.baseline = baseline.getValue();
+                        items.add(row);
 
-                        // Ergebnisse in der gewünschten Spaltenreihenfolge befüllen
+                        List<CellRef> rowCells = new ArrayList<CellRef>();
+                        List<String> rowValues = new ArrayList<String>();
                         for (String dbKey : orderedDbKeys) {
-                            String value;
-                            if (qm.getDbKuerzel().contains(dbKey)) {
-                                Connection c = connections.get(dbKey);
-                                if (c != null) {
-                                    try {
-                                        System.out.println("Ausführen SQL: " + qm.getSql() + " (User: " + c.getSchema() + " at " + c.getMetaData().getURL() + ")");
-                                        value = executeSql(c, qm.getSql());
-                                    } catch (Exception ex) {
-                                        value = "Fehler: " + ex.getMessage();
-                                    }
-                                } else {
-                                    value = "Unbekannt";
-                                }
-                                step++;
-                                updateProgress(step, totalSteps);
-                                if ((step & 3) == 0) {
-                                    updateMessage("Lese DB-Werte … (" + step + "/" + totalSteps + ")");
-                                }
+                            if (!qm.getDbKuerzel().contains(dbKey)) continue;
+                            if (skipsReference(row, dbKey)) {
+                                row.put(dbKey, row.baseline);   // Referenz-DB nicht abfragen
                             } else {
-                                // diese Query ist für diese DB nicht vorgesehen -> leer lassen
-                                value = "";
+                                rowCells.add(new CellRef(row, dbKey));
+                                rowValues.add(executeCell(run, row, dbKey, connections.get(dbKey), false));
+                            }
+                            step++;
+                            updateProgress(step, totalSteps);
+                            if ((step & 3) == 0) {
+                                updateMessage("Lese DB-Werte … (" + step + "/" + totalSteps + ")");
                             }
-                            row.put(dbKey, value);
                         }
-                        items.add(row);
+                        // uneinige Stichproben dieser Zeile sofort exakt nachholen
+                        if (SampleMode.isEnabled(qm.getOptions())) escalateSamples(run, rowCells, rowValues, connections);
                     }
-                    return new LoadResult(items, orderedDbKeys);
                 } finally {
-                    closeConnections(connections);
+                    finishRun(run, connections);
                 }
+                return new LoadResult(items, orderedDbKeys, new TableFilterIndex(items, orderedDbKeys));
             }
         };
 
@@ -243,7 +443,7 @@ public class Main extends Application {
             busy.progressProperty().unbind();
             busyLabel.textProperty().unbind();
             LoadResult res = task.getValue();
-            applyTableData(res.items, res.orderedDbKeys);
+            applyTableData(res.items, res.orderedDbKeys, res.filterIndex);
             setBusy(false, null);
         });
 
@@ -278,55 +478,821 @@ public class Main extends Application {
         return new ArrayList<String>(order);
     }
 
-    /** Öffnet pro verwendeter DB genau EINE Connection und legt sie in 'out' ab. */
+    /**
+     * Leiht pro verwendeter DB genau EINE Session (aus dem Cache) und legt sie in 'out' ab;
+     * Rückgabe über {@link #releaseConnections}. Gleichzeitige Läufe bekommen eigene Sessions.
+     * DBs, die ein Agent bedient, bekommen keine direkte Connection; DBs mit offenem
+     * Circuit Breaker werden (außer bei gezielter Wiederholung) gar nicht erst verbunden.
+     */
     private void openConnections(Map<String, String> localDbMap,
                                  Set<String> usedDbs,
-                                 Map<String, Connection> out) {
+                                 Map<String, Connection> out,
+                                 boolean explicit) {
+        if (!agents.isEmpty()) agents.discover();
         for (String dbKey : usedDbs) {
             String def = localDbMap.get(dbKey);
-            if (def == null) continue;
-            String[] parts = def.split(";", -1);
-            String jdbcUrl = parts[0];
-            String user = parts.length > 1 ? parts[1] : "";
-            String pass = parts.length > 2 ? parts[2] : "";
+            if (def == null || agents.forKey(dbKey) != null) continue;
+            if (!explicit && breaker.isOpen(dbKey)) continue;
+            long start = System.currentTimeMillis();
+            Connection c = null;
             try {
-                Connection c = DriverManager.getConnection(jdbcUrl, user, pass);
-                try { c.setReadOnly(true); } catch (Throwable ignore) {}
-                out.put(dbKey, c);
+                c = targetConnections.acquire(dbKey, def);
+            } catch (SQLTransientConnectionException ex) {
+                // alle Sessions belegt: DB ist erreichbar, Zellen dieses Laufs bleiben "nicht verfügbar"
             } catch (SQLException ex) {
-                out.put(dbKey, null); // als "nicht verfügbar" markieren
+                breaker.failure(dbKey, System.currentTimeMillis() - start);
             }
+            out.put(dbKey, c); // null = "nicht verfügbar"
+        }
+    }
+
+    /**
+     * Schließt einen Lauf ab: Sinks abwarten, Sessions zurückgeben und den Bloom-Filter der
+     * letzten Referenz dieses Laufs freigeben (er gilt nur innerhalb des Laufs).
+     */
+    private void finishRun(ResultPipeline run, Map<String, Connection> connections) throws InterruptedException {
+        try {
+            run.closeAndAwait();
+        } finally {
+            releaseConnections(connections);
+            releaseKeyReferences(run);
+        }
+    }
+
+    private void releaseKeyReferences(ResultPipeline run) {
+        ReferenceKeys done;
+        synchronized (keyReferences) {
+            done = keyReferences.remove(run);
+        }
+        if (done != null) keySets.release(done.keys);
+    }
+
+    /** Merkt sich die Referenz-Schlüssel der aktuellen Zeile des Laufs; die der vorigen Zeile werden freigegeben. */
+    private void rememberKeyReference(ResultPipeline run, String series, KeySetCompare.KeySet keys) {
+        ReferenceKeys previous;
+        synchronized (keyReferences) {
+            previous = keyReferences.put(run, new ReferenceKeys(series, keys));
         }
+        if (previous != null && previous.keys != keys) keySets.release(previous.keys);
     }
 
-    private void closeConnections(Map<String, Connection> connections) {
+    /** Gibt die mit {@link #openConnections} geliehenen Sessions zurück. */
+    private void releaseConnections(Map<String, Connection> connections) {
         for (Map.Entry<String, Connection> e : connections.entrySet()) {
-            Connection c = e.getValue();
-            if (c != null) {
-                try { c.close(); } catch (Exception ignore) {}
+            targetConnections.release(e.getKey(), e.getValue());
+        }
+        connections.clear();
+    }
+
+    /**
+     * Führt eine Abfrage auf einer DB aus und liefert den Zellenwert (inkl. Fehlertext).
+     * Bedient ein Agent die DB, läuft die Abfrage dort und nur der Digest kommt zurück.
+     * Zu lange Werte werden auf das Zell-Budget (cell.max.chars) verdichtet.
+     * Jede Ausführung landet als ein Satz im (asynchronen) Ausführungs-Log.
+     * Der Wert wird zusätzlich in die Ergebnis-Pipeline des Laufs veröffentlicht (blockiert bei vollen Sinks).
+     * @param explicit gezielte Wiederholung durch den Benutzer -> ohne Kosten-Check
+     * @param sample Stichproben-Lauf (Option sample=), sonst exakt
+     */
+    private String executeCell(ResultPipeline run, ResultRow row, String dbKey, Connection c, boolean explicit) {
+        // gezielte Wiederholungen laufen immer exakt, ebenso der Vergleich gegen eine exakte Baseline
+        return executeCell(run, row, dbKey, c, explicit, !explicit && SampleMode.isEnabled(row.getQuery().getOptions())
+                && SampleMode.isComparable(row.baseline));
+    }
+
+    private String executeCell(ResultPipeline run, ResultRow row, String dbKey, Connection c, boolean explicit,
+                               boolean sample) {
+        long start = System.currentTimeMillis();
+        String value = runCell(run, dbKey, c, row.getQuery(), explicit, sample);
+        if (!isFailed(value)) value = LobDigest.bound(value, cellMaxChars);
+        long millis = System.currentTimeMillis() - start;
+        AgentClient agent = agents.forKey(dbKey);
+        ExecLog.cell(row.getQuery(), dbKey, agent != null ? "agent:" + agent : targetConnections.identity(dbKey), millis, value);
+        run.publish(row, dbKey, value, millis);
+        return value;
+    }
+
+    /** Pipeline für einen Lauf: Historie + Metriken immer, Tabelle/CSV nur beim vollständigen Refresh. */
+    private ResultPipeline newPipeline(boolean table, boolean csv) throws IOException {
+        ResultPipeline run = new ResultPipeline(sinkExecutor, pipelineBuffer);
+        if (table) run.subscribe(new ResultSinks.TableSink());
+        run.subscribe(new ResultSinks.HistorySink(history));
+        if (csv && runCsvDir != null) {
+            String name = new java.text.SimpleDateFormat("'lauf-'yyyyMMdd-HHmmss'.csv'").format(new java.util.Date());
+            run.subscribe(new ResultSinks.CsvSink(runCsvDir.resolve(name)));
+        }
+        run.subscribe(new ResultSinks.MetricsSink(summary -> Platform.runLater(() -> metricsLabel.setText(summary))));
+        return run;
+    }
+
+    private String runCell(ResultPipeline run, String dbKey, Connection c, QueryModel qm, boolean explicit,
+                           boolean sample) {
+        String sql;
+        try {
+            sql = sample ? SampleMode.apply(qm.getSql(), qm.getOptions()) : qm.getSql();
+        } catch (IllegalArgumentException ex) {
+            return "Fehler: " + ex.getMessage();
+        }
+        String value = runSql(run, dbKey, c, qm, sql, explicit);
+        return sample && !isFailed(value) ? SampleMode.label(value, qm.getOptions()) : value;
+    }
+
+    private String runSql(ResultPipeline run, String dbKey, Connection c, QueryModel qm, String sql, boolean explicit) {
+        ResultDigest.Mode mode = ResultDigest.Mode.of(qm.getOptions());
+        int buckets = (int) qm.getOptions().getLong("buckets", ResultDigest.DEFAULT_BUCKETS);
+        AgentClient agent = agents.forKey(dbKey);
+        if (agent == null && c == null) {
+            // Verbindung fehlgeschlagen (bereits gezählt) oder DB wegen offenem Breaker übersprungen
+            return breaker.isOpen(dbKey) ? breaker.marker(dbKey) : "Unbekannt";
+        }
+        if (!explicit && !breaker.allow(dbKey)) return breaker.marker(dbKey);
+
+        long start = System.currentTimeMillis();
+        boolean diffRows = ExternalSortDiff.isRowDiff(qm.getOptions());
+        boolean diffKeys = KeySetCompare.isEnabled(qm.getOptions());
+        if (agent != null && diffRows) {
+            return "Fehler: diff=rows ist über Agenten nicht möglich (digest=buckets verwenden)";
+        }
+        if (agent != null && diffKeys) {
+            return "Fehler: diff=keys ist über Agenten nicht möglich (digest=buckets verwenden)";
+        }
+        if (agent != null && qm.getOptions().has("rules")) {
+            return "Fehler: rules= ist über Agenten nicht möglich (Agenten vergleichen unnormalisiert)";
+        }
+        CompareRules rules;
+        try {
+            rules = CompareRules.of(qm.getOptions());
+        } catch (IllegalArgumentException ex) {
+            return "Fehler: " + ex.getMessage();
+        }
+        if (agent != null) {
+            // Agenten führen ungeteilt aus
+            String value = agent.execute(dbKey, ChunkedQuery.unchunked(sql), mode, buckets);
+            long millis = System.currentTimeMillis() - start;
+            if (value.startsWith("Fehler: Agent ")) breaker.failure(dbKey, millis); // Transportfehler
+            else breaker.success(dbKey, millis);
+            return value;
+        }
+        if (!explicit) {
+            String deferred = preflight.check(c, dbKey, ChunkedQuery.unchunked(sql));
+            if (deferred != null) {
+                breaker.success(dbKey, System.currentTimeMillis() - start);
+                return deferred;
+            }
+        }
+        try {
+            String value;
+            if (diffRows) {
+                value = diffCell(run, dbKey, c, qm);
+            } else if (diffKeys) {
+                value = keyCell(run, dbKey, c, qm);
+            } else if (IncrementalState.isEnabled(qm.getOptions())) {
+                // gezielte Wiederholung = Volllauf (erfasst auch gelöschte Zeilen)
+                value = incremental.run(c, HistoryStore.seriesKey(qm, dbKey), ChunkedQuery.unchunked(sql),
+                        qm.getOptions(), explicit);
+            } else if (ChunkedQuery.isEnabled(qm.getOptions())) {
+                value = computeChunked(dbKey, c, sql, qm.getOptions(), rules, mode, buckets).toDisplayString();
+            } else {
+                value = ResultDigest.compute(c, ChunkedQuery.unchunked(sql), mode, buckets, rules).toDisplayString();
+            }
+            breaker.success(dbKey, System.currentTimeMillis() - start);
+            return value;
+        } catch (Exception ex) {
+            long millis = System.currentTimeMillis() - start;
+            if (CircuitBreaker.isHealthFailure(ex)) {
+                breaker.failure(dbKey, millis);
+                targetConnections.evict(dbKey);   // Sessions dieser DB nicht wiederverwenden
+            } else {
+                breaker.success(dbKey, millis); // fachlicher SQL-Fehler: DB ist erreichbar
+            }
+            return "Fehler: " + ex.getMessage();
+        }
+    }
+
+    /**
+     * Stichproben einer Zeile uneinig -> alle ihre Zellen exakt nachholen; die exakten Werte
+     * ersetzen die Stichprobe (in 'values' und über die Pipeline in der Tabelle).
+     */
+    private void escalateSamples(ResultPipeline run, List<CellRef> cells, List<String> values,
+                                 Map<String, Connection> connections) {
+        Map<ResultRow, List<Integer>> byRow = new LinkedHashMap<ResultRow, List<Integer>>();
+        for (int i = 0; i < cells.size(); i++) {
+            if (SampleMode.isSampled(values.get(i))) {
+                byRow.computeIfAbsent(cells.get(i).row, r -> new ArrayList<Integer>()).add(i);
+            }
+        }
+        for (Map.Entry<ResultRow, List<Integer>> e : byRow.entrySet()) {
+            List<String> rowValues = new ArrayList<String>();
+            for (int i : e.getValue()) rowValues.add(values.get(i));
+            if (!SampleMode.needsExactRun(rowValues, e.getKey().baseline)) continue;
+            for (int i : e.getValue()) {
+                CellRef ref = cells.get(i);
+                values.set(i, executeCell(run, ref.row, ref.dbKey, connections.get(ref.dbKey), false, false));
+            }
+        }
+    }
+
+    /**
+     * Zeilen-Diff gegen die Referenz-DB (erste DB in DB_KUERZEL): beide Seiten werden extern sortiert
+     * und im Merge verglichen. Die Referenz wird je Lauf einmal abgelegt und für die übrigen DBs
+     * wiederverwendet; fehlt sie im aktuellen Lauf (z.B. gezielte Wiederholung), wird sie nachgeladen.
+     */
+    private String diffCell(ResultPipeline run, String dbKey, Connection c, QueryModel qm) throws Exception {
+        String refKey = qm.getDbKuerzel().get(0);
+        if (dbKey.equals(refKey)) {
+            return storeReference(run, qm, refKey, spillRows(refKey, c, qm)).getRows() + " Zeilen";
+        }
+        storeDiff(qm, dbKey, null);   // alter Stand gilt nicht mehr (auch wenn dieser Lauf scheitert)
+        ExternalSortDiff.SpilledResult reference;
+        synchronized (diffReferences) {
+            ReferenceSpill cached = diffReferences.get(HistoryStore.seriesKey(qm, refKey));
+            reference = (cached != null && cached.run == run) ? cached.spill : null;
+        }
+        if (reference == null) {
+            String def = dbMap.get(refKey);
+            if (def == null || agents.forKey(refKey) != null) return "Fehler: Referenz-DB " + refKey + " nicht verfügbar";
+            Connection rc;
+            try {
+                rc = targetConnections.acquire(refKey, def);
+            } catch (SQLException ex) {   // Fehler der Referenz nicht dieser DB anlasten
+                return "Fehler: Referenz-DB " + refKey + " nicht verfügbar: " + ex.getMessage();
             }
+            try {
+                reference = storeReference(run, qm, refKey, spillRows(refKey, rc, qm));
+            } finally {
+                targetConnections.release(refKey, rc);
+            }
+        }
+        ExternalSortDiff.SpilledResult own = spillRows(dbKey, c, qm);
+        try {
+            ExternalSortDiff.DiffResult diff = rowDiff.compareAndStore(reference, own);
+            storeDiff(qm, dbKey, diff.getStore());
+            return diff.toDisplayString();
+        } finally {
+            own.delete();
         }
     }
 
-    /** Führt das SQL auf der bestehenden Connection aus und liefert ein String-Ergebnis. */
-    private String executeSql(Connection conn, String sql) throws SQLException {
-        sql = (sql == null) ? "" : sql.trim();
-        try (Statement st = conn.createStatement()) {
-            boolean hasRs = st.execute(sql);
-            if (hasRs) {
-                try (ResultSet rs = st.getResultSet()) {
-                    if (rs.next()) {
-                        Object v = rs.getObject(1);
-                        return (v == null) ? "NULL" : String.valueOf(v);
-                    } else {
-                        return "(keine Zeilen)";
+    /**
+     * Schlüsselmengen-Vergleich gegen die Referenz-DB: deren Bloom-Filter wird je Zeile einmal gebaut
+     * und für alle Ziel-DBs der Zeile wiederverwendet; die nächste Zeile gibt ihn wieder frei. Für die Gegenrichtung streamt der Vergleich die Referenz erneut, dafür
+     * wird eine eigene Session geliehen (die Referenz-Verbindung kann parallel belegt sein).
+     */
+    private String keyCell(ResultPipeline run, String dbKey, Connection c, QueryModel qm) throws Exception {
+        String refKey = qm.getDbKuerzel().get(0);
+        String sql = ChunkedQuery.unchunked(qm.getSql());
+        String series = HistoryStore.seriesKey(qm, refKey);
+        if (dbKey.equals(refKey)) {
+            KeySetCompare.KeySet own = keySets.scan(c, sql, qm.getOptions());
+            rememberKeyReference(run, series, own);
+            return own.getCount() + " Schlüssel";
+        }
+        String def = dbMap.get(refKey);
+        if (def == null || agents.forKey(refKey) != null) return "Fehler: Referenz-DB " + refKey + " nicht verfügbar";
+        Connection rc = targetConnections.acquire(refKey, def);
+        try {
+            KeySetCompare.KeySet reference;
+            synchronized (keyReferences) {
+                ReferenceKeys cached = keyReferences.get(run);
+                reference = (cached != null && cached.series.equals(series)) ? cached.keys : null;
+            }
+            if (reference == null) {
+                reference = keySets.scan(rc, sql, qm.getOptions());
+                rememberKeyReference(run, series, reference);
+            }
+            return keySets.compare(rc, reference, c, sql, qm.getOptions());
+        } finally {
+            targetConnections.release(refKey, rc);
+        }
+    }
+
+    /** Merkt sich die abweichenden Zeilen einer Zelle (null = keine); der vorige Stand wird gelöscht. */
+    private void storeDiff(QueryModel qm, String dbKey, DiffStore store) {
+        DiffStore old;
+        synchronized (diffStores) {
+            String key = HistoryStore.seriesKey(qm, dbKey);
+            old = store == null ? diffStores.remove(key) : diffStores.put(key, store);
+        }
+        if (old != null) old.delete();
+    }
+
+    private DiffStore diffStore(ResultRow row, String dbKey) {
+        synchronized (diffStores) {
+            return diffStores.get(HistoryStore.seriesKey(row.getQuery(), dbKey));
+        }
+    }
+
+    /** Legt die Zeilen einer DB ab; bei split= je Teilabfrage parallel (Budget anteilig), Runs zusammengeführt. */
+    private ExternalSortDiff.SpilledResult spillRows(String dbKey, Connection c, QueryModel qm) throws Exception {
+        final CompareRules rules = CompareRules.of(qm.getOptions());
+        if (!ChunkedQuery.isEnabled(qm.getOptions())) return rowDiff.spill(c, ChunkedQuery.unchunked(qm.getSql()), rules);
+        final long budget = rowDiff.getMemoryBudgetBytes() / Math.max(1, chunkSessions);
+        List<ExternalSortDiff.SpilledResult> parts = ChunkedQuery.run(
+                ChunkedQuery.chunkSql(c, qm.getSql(), qm.getOptions()), chunkSessions, c, sessionPool(dbKey),
+                chunkExecutor, (cc, chunk) -> rowDiff.spill(cc, chunk, rules, budget));
+        ExternalSortDiff.SpilledResult all = parts.get(0);
+        for (int i = 1; i < parts.size(); i++) all.absorb(parts.get(i));
+        return all;
+    }
+
+    /** Teilabfragen parallel ausführen und die Teil-Digests zusammenfassen. */
+    private ResultDigest computeChunked(String dbKey, Connection c, String sql, QueryOptions options,
+                                        final CompareRules rules, final ResultDigest.Mode mode,
+                                        final int buckets) throws Exception {
+        if (mode == ResultDigest.Mode.ROWS) {
+            throw new IllegalArgumentException("digest=rows ist mit split= nicht teilbar (digest=buckets verwenden)");
+        }
+        List<ResultDigest> parts = ChunkedQuery.run(ChunkedQuery.chunkSql(c, sql, options), chunkSessions, c,
+                sessionPool(dbKey), chunkExecutor, (cc, chunk) -> ResultDigest.compute(cc, chunk, mode, buckets, rules));
+        return ChunkedQuery.combine(parts, mode, options);
+    }
+
+    private ChunkedQuery.SessionPool sessionPool(final String dbKey) {
+        final String def = dbMap.get(dbKey);
+        return new ChunkedQuery.SessionPool() {
+            @Override
+            public Connection acquire() throws SQLException {
+                return targetConnections.acquire(dbKey, def);
+            }
+
+            @Override
+            public void release(Connection c) {
+                targetConnections.release(dbKey, c);
+            }
+        };
+    }
+
+    /** Merkt sich die Runs der Referenz für diesen Lauf; ältere Runs derselben Abfrage werden gelöscht. */
+    private ExternalSortDiff.SpilledResult storeReference(ResultPipeline run, QueryModel qm, String refKey,
+                                                          ExternalSortDiff.SpilledResult spill) {
+        ReferenceSpill old;
+        synchronized (diffReferences) {
+            old = diffReferences.put(HistoryStore.seriesKey(qm, refKey), new ReferenceSpill(run, spill));
+        }
+        if (old != null) old.spill.delete();
+        return spill;
+    }
+
+    // ======================
+    // Gezieltes Wiederholen einzelner Zellen (Fehler / Abweichungen / Zeile / Spalte)
+    // ======================
+
+    private enum RetryScope { ALL, FAILED, MISMATCHED }
+
+    /** Eine Zelle der Vergleichstabelle: Zeile + DB-Spalte. */
+    private static final class CellRef {
+        final ResultRow row;
+        final String dbKey;
+        CellRef(ResultRow row, String dbKey) {
+            this.row = row;
+            this.dbKey = dbKey;
+        }
+    }
+
+    /**
+     * Sammelt die Zellen, die erneut ausgeführt werden sollen.
+     * @param dbKeys nur diese Spalten (null = alle DB-Spalten der Zeile)
+     */
+    private List<CellRef> collectCells(Collection<? extends Map<String, String>> rows,
+                                       Collection<String> dbKeys, RetryScope scope) {
+        List<CellRef> cells = new ArrayList<CellRef>();
+        for (Map<String, String> m : rows) {
+            if (!(m instanceof ResultRow)) continue;
+            ResultRow row = (ResultRow) m;
+            String reference = referenceValue(row);
+            boolean rowHasMismatch = false;
+            for (String dbKey : row.keySet()) {
+                if (!"SQL".equals(dbKey) && isMismatch(row.get(dbKey), reference)) rowHasMismatch = true;
+            }
+            for (String dbKey : row.keySet()) {
+                if ("SQL".equals(dbKey)) continue;
+                if (dbKeys != null && !dbKeys.contains(dbKey)) continue;
+                if (!row.getQuery().getDbKuerzel().contains(dbKey)) continue; // nicht vorgesehen
+                String value = row.get(dbKey);
+                boolean take;
+                switch (scope) {
+                    case FAILED:
+                        take = isFailed(value);
+                        break;
+                    case MISMATCHED:
+                        // abweichende Zellen + die Referenzzelle derselben Zeile
+                        // (mit Baseline nur die abweichenden Zellen)
+                        take = isMismatch(value, reference)
+                                || (row.baseline == null && rowHasMismatch && value != null && value.equals(reference));
+                        break;
+                    default:
+                        take = true;
+                }
+                if (take) cells.add(new CellRef(row, dbKey));
+            }
+        }
+        return cells;
+    }
+
+    /** Führt nur die übergebenen Zellen erneut aus und übernimmt die Werte in die bestehende Tabelle. */
+    private void retryCellsAsync(final List<CellRef> cells) {
+        if (cells.isEmpty()) {
+            Alert alert = new Alert(Alert.AlertType.INFORMATION, "Keine passenden Zellen zum erneuten Ausführen.");
+            alert.setHeaderText(null);
+            alert.showAndWait();
+            return;
+        }
+        setBusy(true, "Zellen werden erneut ausgeführt …");
+
+        final Map<String, String> localDbMap = new LinkedHashMap<String, String>(dbMap);
+        Task<List<String>> task = new Task<List<String>>() {
+            @Override
+            protected List<String> call() throws Exception {
+                Set<String> usedDbs = new LinkedHashSet<String>();
+                for (CellRef ref : cells) usedDbs.add(ref.dbKey);
+                List<String> values = new ArrayList<String>(cells.size());
+                int step = 0;
+                ResultPipeline run = newPipeline(false, false);
+                Map<String, Connection> connections = new HashMap<String, Connection>();
+                try {
+                    openConnections(localDbMap, usedDbs, connections, true);
+                    for (CellRef ref : cells) {
+                        values.add(executeCell(run, ref.row, ref.dbKey, connections.get(ref.dbKey), true));
+                        step++;
+                        updateProgress(step, cells.size());
+                        updateMessage("Wiederhole … (" + step + "/" + cells.size() + ")");
                     }
+                } finally {
+                    finishRun(run, connections);
                 }
-            } else {
-                int upd = st.getUpdateCount();
-                return "OK (" + upd + ")";
+                return values;
+            }
+        };
+
+        busy.progressProperty().bind(task.progressProperty());
+        busyLabel.textProperty().bind(task.messageProperty());
+
+        task.setOnSucceeded(e -> {
+            busy.progressProperty().unbind();
+            busyLabel.textProperty().unbind();
+            List<String> values = task.getValue();
+            for (int i = 0; i < cells.size(); i++) {
+                cells.get(i).row.put(cells.get(i).dbKey, values.get(i));
+            }
+            updateFilterStatus(cells);
+            updateHealthHeaders();
+            tableView.refresh();
+            setBusy(false, null);
+        });
+
+        task.setOnFailed(e -> {
+            busy.progressProperty().unbind();
+            busyLabel.textProperty().unbind();
+            setBusy(false, null);
+
+            Throwable ex = task.getException();
+            ex.printStackTrace();
+            new Alert(Alert.AlertType.ERROR,
+                    "Fehler beim Wiederholen:\n" + (ex != null ? ex.getMessage() : "unbekannt")).showAndWait();
+        });
+
+        new Thread(task, "retryCellsAsync").start();
+    }
+
+    // ======================
+    // Baselines (Sollwerte je QUERY_ID)
+    // ======================
+
+    /** Referenz-DB (erstes DB_KUERZEL) einer Abfrage mit Baseline -> wird nicht abgefragt. */
+    private boolean skipsReference(QueryModel qm, boolean hasBaseline, String dbKey) {
+        return hasBaseline && baselineSkipsReference && !ExternalSortDiff.isRowDiff(qm.getOptions())
+                && !KeySetCompare.isEnabled(qm.getOptions())
+                && !qm.getDbKuerzel().isEmpty() && dbKey.equals(qm.getDbKuerzel().get(0));
+    }
+
+    private boolean skipsReference(ResultRow row, String dbKey) {
+        return skipsReference(row.getQuery(), row.baseline != null, dbKey);
+    }
+
+    /** Übernimmt Werte als Baseline (nur im FX-Thread) und wertet die Zeilen neu aus. */
+    private void storeBaselines(List<ResultRow> rows, String dbKey) {
+        Map<String, String> values = new LinkedHashMap<String, String>();
+        List<CellRef> changed = new ArrayList<CellRef>();
+        for (ResultRow row : rows) {
+            String v = row.get(dbKey);
+            if (v == null || v.isEmpty() || isFailed(v) || !row.getQuery().getDbKuerzel().contains(dbKey)) continue;
+            values.put(BaselineStore.keyOf(row.getQuery()), v);
+            row.baseline = v;
+            changed.add(new CellRef(row, dbKey));
+        }
+        if (values.isEmpty()) {
+            new Alert(Alert.AlertType.INFORMATION, "Keine gültigen Werte für eine Baseline.").showAndWait();
+            return;
+        }
+        try {
+            baselines.putAll(values, dbKey);
+        } catch (IOException ex) {
+            new Alert(Alert.AlertType.ERROR, "Baseline konnte nicht gespeichert werden:\n" + ex.getMessage()).showAndWait();
+            return;
+        }
+        updateFilterStatus(changed);
+        tableView.refresh();
+    }
+
+    private void removeBaseline(ResultRow row) {
+        try {
+            baselines.remove(row.getQuery());
+        } catch (IOException ex) {
+            new Alert(Alert.AlertType.ERROR, "Baseline konnte nicht gespeichert werden:\n" + ex.getMessage()).showAndWait();
+            return;
+        }
+        row.baseline = null;
+        String ref = row.getQuery().getDbKuerzel().isEmpty() ? null : row.getQuery().getDbKuerzel().get(0);
+        if (ref != null && row.containsKey(ref)) {
+            // Referenzzelle zeigte nur die Baseline -> jetzt echt abfragen
+            retryCellsAsync(Collections.singletonList(new CellRef(row, ref)));
+        } else {
+            updateFilterStatus(Collections.singletonList(new CellRef(row, "SQL")));
+            tableView.refresh();
+        }
+    }
+
+    /** Fragt die Referenz-DB einer Zeile explizit ab und übernimmt das Ergebnis als neue Baseline. */
+    private void refreshBaselineAsync(final ResultRow row) {
+        if (row.getQuery().getDbKuerzel().isEmpty()) return;
+        final String ref = row.getQuery().getDbKuerzel().get(0);
+        final Map<String, String> localDbMap = new LinkedHashMap<String, String>(dbMap);
+        busy.setProgress(ProgressIndicator.INDETERMINATE_PROGRESS);
+        setBusy(true, "Baseline wird aus " + ref + " aktualisiert …");
+        Task<String> task = new Task<String>() {
+            @Override
+            protected String call() throws Exception {
+                ResultPipeline run = newPipeline(false, false);
+                Map<String, Connection> connections = new HashMap<String, Connection>();
+                try {
+                    openConnections(localDbMap, Collections.singleton(ref), connections, true);
+                    return executeCell(run, row, ref, connections.get(ref), true);
+                } finally {
+                    finishRun(run, connections);
+                }
+            }
+        };
+        task.setOnSucceeded(e -> {
+            setBusy(false, null);
+            String value = task.getValue();
+            row.put(ref, value);
+            if (isFailed(value)) {
+                new Alert(Alert.AlertType.ERROR, "Baseline nicht aktualisiert:\n" + value).showAndWait();
+                updateFilterStatus(Collections.singletonList(new CellRef(row, ref)));
+                tableView.refresh();
+                return;
             }
+            storeBaselines(Collections.singletonList(row), ref);
+        });
+        task.setOnFailed(e -> {
+            setBusy(false, null);
+            Throwable ex = task.getException();
+            new Alert(Alert.AlertType.ERROR,
+                    "Fehler beim Aktualisieren der Baseline:\n" + (ex != null ? ex.getMessage() : "unbekannt")).showAndWait();
+        });
+        new Thread(task, "refreshBaselineAsync").start();
+    }
+
+    /**
+     * Import aus "QUERY_ID;WERT" oder einem Lauf-Export (dann DB wählen); gilt ab dem nächsten Refresh.
+     * Lesen und Speichern laufen im Hintergrund, nur die DB-Auswahl im FX-Thread.
+     */
+    private void importBaselines() {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Baselines importieren");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV-Datei (*.csv)", "*.csv"));
+        File file = chooser.showOpenDialog(tableView.getScene().getWindow());
+        if (file == null) return;
+        final Path path = file.toPath();
+        busy.setProgress(ProgressIndicator.INDETERMINATE_PROGRESS);
+        setBusy(true, "Baselines werden gelesen …");
+        Task<List<List<String>>> task = new Task<List<List<String>>>() {
+            @Override
+            protected List<List<String>> call() throws Exception {
+                return BaselineStore.readCsv(path);
+            }
+        };
+        task.setOnSucceeded(e -> {
+            setBusy(false, null);
+            List<List<String>> rows = task.getValue();
+            String dbKey = null;
+            Set<String> dbKeys = BaselineStore.csvDbKeys(rows);
+            if (!dbKeys.isEmpty()) {
+                ChoiceDialog<String> choice = new ChoiceDialog<String>(dbKeys.iterator().next(), dbKeys);
+                choice.setTitle("Baselines importieren");
+                choice.setHeaderText("Lauf-Export: Werte welcher DB übernehmen?");
+                Optional<String> picked = choice.showAndWait();
+                if (!picked.isPresent()) return;
+                dbKey = picked.get();
+            }
+            storeImportedBaselines(rows, path.getFileName().toString(), dbKey);
+        });
+        task.setOnFailed(e -> {
+            setBusy(false, null);
+            Throwable ex = task.getException();
+            new Alert(Alert.AlertType.ERROR, "Import fehlgeschlagen:\n" + (ex != null ? ex.getMessage() : "unbekannt")).showAndWait();
+        });
+        new Thread(task, "importBaselines").start();
+    }
+
+    private void storeImportedBaselines(final List<List<String>> rows, final String fileName, final String dbKey) {
+        busy.setProgress(ProgressIndicator.INDETERMINATE_PROGRESS);
+        setBusy(true, "Baselines werden übernommen …");
+        Task<Integer> task = new Task<Integer>() {
+            @Override
+            protected Integer call() throws Exception {
+                return baselines.importCsv(rows, fileName, dbKey);
+            }
+        };
+        task.setOnSucceeded(e -> {
+            setBusy(false, null);
+            Alert alert = new Alert(Alert.AlertType.INFORMATION, task.getValue() + " Baselines importiert. Sie gelten ab dem nächsten Refresh.");
+            alert.setHeaderText(null);
+            alert.showAndWait();
+        });
+        task.setOnFailed(e -> {
+            setBusy(false, null);
+            Throwable ex = task.getException();
+            new Alert(Alert.AlertType.ERROR, "Import fehlgeschlagen:\n" + (ex != null ? ex.getMessage() : "unbekannt")).showAndWait();
+        });
+        new Thread(task, "importBaselines").start();
+    }
+
+    /** Lädt den vollen Wert einer verdichteten Zelle nach (gestreamt, begrenzt) und zeigt ihn an. */
+    private void showFullValueAsync(final ResultRow row, final String dbKey) {
+        final String def = dbMap.get(dbKey);
+        if (def == null || agents.forKey(dbKey) != null) {
+            new Alert(Alert.AlertType.INFORMATION,
+                    "Für " + dbKey + " ist keine direkte Verbindung verfügbar (Agent oder nicht konfiguriert).").showAndWait();
+            return;
         }
+        busy.setProgress(ProgressIndicator.INDETERMINATE_PROGRESS);
+        setBusy(true, "Lade vollständigen Wert …");
+        Task<String> task = new Task<String>() {
+            @Override
+            protected String call() throws Exception {
+                Connection c = targetConnections.acquire(dbKey, def);
+                try {
+                    return DBQueryExecutor.fetchFull(c, ChunkedQuery.unchunked(row.getQuery().getSql()), DETAIL_MAX_CHARS);
+                } finally {
+                    targetConnections.release(dbKey, c);
+                }
+            }
+        };
+        task.setOnSucceeded(e -> {
+            setBusy(false, null);
+            TextArea area = new TextArea(task.getValue());
+            area.setEditable(false);
+            area.setWrapText(true);
+            area.setPrefSize(800, 500);
+            Alert alert = new Alert(Alert.AlertType.INFORMATION);
+            alert.setTitle("Vollständiger Wert");
+            alert.setHeaderText(row.getQuery().getQueryId() + " @ " + dbKey + ": " + row.get(dbKey));
+            alert.getDialogPane().setContent(area);
+            alert.setResizable(true);
+            alert.showAndWait();
+        });
+        task.setOnFailed(e -> {
+            setBusy(false, null);
+            Throwable ex = task.getException();
+            new Alert(Alert.AlertType.ERROR,
+                    "Fehler beim Laden des Werts:\n" + (ex != null ? ex.getMessage() : "unbekannt")).showAndWait();
+        });
+        new Thread(task, "showFullValueAsync").start();
+    }
+
+    /** Referenzwert einer Zeile = Baseline, sonst Wert der ersten DB-Spalte. */
+    static String referenceValue(Map<String, String> row) {
+        if (row instanceof ResultRow && ((ResultRow) row).baseline != null) return ((ResultRow) row).baseline;
+        for (Map.Entry<String, String> entry : row.entrySet()) {
+            if (!entry.getKey().equals("SQL")) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    static boolean isMismatch(String value, String referenceValue) {
+        return value != null && referenceValue != null && !referenceValue.equals(value);
+    }
+
+    static boolean isFailed(String value) {
+        return value != null && (value.startsWith("Fehler: ") || value.equals("Unbekannt")
+                || value.startsWith(CostPreflight.DEFERRED_PREFIX) || value.startsWith(CircuitBreaker.SKIPPED_PREFIX));
+    }
+
+    // ======================
+    // Watch-Modus: inkrementelle Zyklen mit adaptivem Backoff
+    // ======================
+
+    private ScheduledService<WatchCycle> createWatchService() {
+        ScheduledService<WatchCycle> svc = new ScheduledService<WatchCycle>() {
+            @Override
+            protected Task<WatchCycle> createTask() {
+                // läuft im FX-Thread: fällige Zeilen bestimmen (während eines Refresh nichts tun)
+                final List<ResultRow> dueRows = overlay.isVisible()
+                        ? Collections.<ResultRow>emptyList()
+                        : collectDueRows(System.currentTimeMillis());
+                final Map<String, String> localDbMap = new LinkedHashMap<String, String>(dbMap);
+
+                return new Task<WatchCycle>() {
+                    @Override
+                    protected WatchCycle call() throws Exception {
+                        List<CellRef> cells = new ArrayList<CellRef>();
+                        Set<String> usedDbs = new LinkedHashSet<String>();
+                        for (ResultRow row : dueRows) {
+                            for (String dbKey : row.getQuery().getDbKuerzel()) {
+                                if (!row.containsKey(dbKey) || skipsReference(row, dbKey)) continue;
+                                cells.add(new CellRef(row, dbKey));
+                                usedDbs.add(dbKey);
+                            }
+                        }
+                        List<String> values = new ArrayList<String>(cells.size());
+                        if (cells.isEmpty()) return new WatchCycle(dueRows, cells, values);
+
+                        ResultPipeline run = newPipeline(false, false);
+                        Map<String, Connection> connections = new HashMap<String, Connection>();
+                        try {
+                            openConnections(localDbMap, usedDbs, connections, false);
+                            for (CellRef ref : cells) {
+                                values.add(executeCell(run, ref.row, ref.dbKey, connections.get(ref.dbKey), false));
+                            }
+                            escalateSamples(run, cells, values, connections);
+                        } finally {
+                            finishRun(run, connections);
+                        }
+                        return new WatchCycle(dueRows, cells, values);
+                    }
+                };
+            }
+        };
+        svc.setPeriod(Duration.seconds(WATCH_TICK_SECONDS));
+        svc.setRestartOnFailure(true);
+        svc.setOnSucceeded(e -> applyWatchCycle(svc.getValue()));
+        return svc;
+    }
+
+    /** Zeilen, deren (adaptives) Intervall abgelaufen ist; neue Zeilen werden erst eingeplant. */
+    private List<ResultRow> collectDueRows(long now) {
+        List<ResultRow> due = new ArrayList<ResultRow>();
+        // im Off-Peak-Fenster zurückgestellte (teure) Abfragen sofort nachholen
+        boolean offPeak = preflight.isEnabled() && preflight.isOffPeak(java.time.LocalTime.now());
+        for (Map<String, String> m : allItems) {
+            if (!(m instanceof ResultRow)) continue;
+            ResultRow row = (ResultRow) m;
+            long baseMillis = watchBaseMillis(row);
+            if (baseMillis <= 0) continue; // interval=0 -> nicht beobachten
+            if (row.watchIntervalMillis == 0) {
+                row.watchIntervalMillis = baseMillis;
+                row.watchNextDueMillis = now + baseMillis;
+            } else if (row.watchNextDueMillis <= now || (offPeak && hasDeferredCell(row))) {
+                due.add(row);
+            }
+        }
+        return due;
+    }
+
+    private static boolean hasDeferredCell(ResultRow row) {
+        for (String v : row.values()) {
+            if (v != null && v.startsWith(CostPreflight.DEFERRED_PREFIX)) return true;
+        }
+        return false;
+    }
+
+    private long watchBaseMillis(ResultRow row) {
+        return row.getQuery().getOptions().getLong("interval", watchBaseSeconds) * 1000L;
+    }
+
+    /** Übernimmt die Werte eines Zyklus, markiert Änderungen und passt die Intervalle an (FX-Thread). */
+    private void applyWatchCycle(WatchCycle cycle) {
+        if (cycle == null || cycle.rows.isEmpty()) return;
+        long now = System.currentTimeMillis();
+
+        Set<ResultRow> changedRows = new HashSet<ResultRow>();
+        for (ResultRow row : cycle.rows) row.changedKeys.clear();
+        for (int i = 0; i < cycle.cells.size(); i++) {
+            CellRef ref = cycle.cells.get(i);
+            String value = cycle.values.get(i);
+            if (!Objects.equals(ref.row.get(ref.dbKey), value)) {
+                ref.row.put(ref.dbKey, value);
+                ref.row.changedKeys.add(ref.dbKey);
+                changedRows.add(ref.row);
+            }
+        }
+
+        // Backoff: unveränderte Prüfungen seltener, geänderte wieder im Basisintervall
+        for (ResultRow row : cycle.rows) {
+            long base = watchBaseMillis(row);
+            row.watchIntervalMillis = changedRows.contains(row)
+                    ? base
+                    : Math.min(row.watchIntervalMillis * 2, base * WATCH_MAX_BACKOFF);
+            row.watchNextDueMillis = now + row.watchIntervalMillis;
+        }
+
+        updateFilterStatus(cycle.cells);
+        updateHealthHeaders();
+        tableView.refresh();
+        watchLabel.setText(String.format("Watch %tT: %d Prüfung(en), %d geändert",
+                new java.util.Date(now), cycle.rows.size(), changedRows.size()));
     }
 
     private void setBusy(boolean on, String message) {
@@ -336,11 +1302,71 @@ public class Main extends Application {
         if (message != null) busyLabel.setText(message);
     }
 
+    // ======================
+    // Filterleiste (BitSet-/Token-Index, keine neuen Abfragen)
+    // ======================
+
+    private HBox createFilterBar() {
+        onlyMismatches = new CheckBox("nur Abweichungen");
+        onlyFailed = new CheckBox("nur Fehler");
+        dbFilter = new ComboBox<String>();
+        dbFilter.getItems().add("Alle DBs");
+        dbFilter.getSelectionModel().select(0);
+        sqlSearch = new TextField();
+        sqlSearch.setPromptText("SQL durchsuchen (Tabelle, Spalte …)");
+        sqlSearch.setPrefColumnCount(24);
+        filterCount = new Label();
+        showUnusedDbs = new CheckBox("unbenutzte DBs zeigen");
+        showUnusedDbs.setOnAction(e -> rebuildDbColumns(allItems));
+
+        onlyMismatches.setOnAction(e -> applyFilter());
+        onlyFailed.setOnAction(e -> applyFilter());
+        dbFilter.setOnAction(e -> applyFilter());
+        sqlSearch.textProperty().addListener((obs, o, n) -> applyFilter());
+
+        HBox bar = new HBox(8, new Label("Filter:"), onlyMismatches, onlyFailed, dbFilter, sqlSearch, filterCount,
+                new Separator(javafx.geometry.Orientation.VERTICAL), showUnusedDbs);
+        bar.setAlignment(Pos.CENTER_LEFT);
+        bar.setPadding(new Insets(0, 8, 8, 8));
+        return bar;
+    }
+
+    /** Setzt das Prädikat der gefilterten Sicht anhand des vorberechneten Index. */
+    private void applyFilter() {
+        if (filterIndex == null) {
+            filteredItems.setPredicate(null);
+            filterCount.setText("");
+            return;
+        }
+        String db = dbFilter.getSelectionModel().getSelectedIndex() > 0 ? dbFilter.getValue() : null;
+        final BitSet match = filterIndex.filter(onlyMismatches.isSelected(), onlyFailed.isSelected(),
+                db, sqlSearch.getText());
+        filteredItems.setPredicate(m -> !(m instanceof ResultRow) || match.get(((ResultRow) m).filterIndex));
+        filterCount.setText(filteredItems.size() + " / " + allItems.size() + " Zeilen");
+    }
+
+    /** Status der betroffenen Zeilen nach geänderten Zellwerten nachziehen und Filter neu anwenden. */
+    private void updateFilterStatus(List<CellRef> cells) {
+        if (filterIndex == null) return;
+        Set<ResultRow> rows = new HashSet<ResultRow>();
+        for (CellRef ref : cells) {
+            if (rows.add(ref.row)) filterIndex.updateStatus(ref.row);
+        }
+        if (!rows.isEmpty()) applyFilter();
+    }
+
     /** Baut die TableView-Spalten auf und setzt Items (nur im FX-Thread aufrufen). */
-    private void applyTableData(List<Map<String, String>> items, List<String> orderedDbKeys) {
-        tableView.getItems().clear();
+    private void applyTableData(List<Map<String, String>> items, List<String> orderedDbKeys,
+                                TableFilterIndex index) {
+        allItems.clear();
         tableView.getColumns().clear();
 
+        // DB-Auswahl der Filterleiste an die neuen Spalten anpassen (Auswahl möglichst behalten)
+        String selectedDb = dbFilter.getSelectionModel().getSelectedIndex() > 0 ? dbFilter.getValue() : null;
+        dbFilter.getItems().setAll("Alle DBs");
+        dbFilter.getItems().addAll(orderedDbKeys);
+        dbFilter.getSelectionModel().select(selectedDb != null && orderedDbKeys.contains(selectedDb) ? selectedDb : "Alle DBs");
+
         // SQL-Spalte
         final TableColumn<Map<String, String>, String> sqlCol = new TableColumn<>("SQL");
         sqlCol.setCellValueFactory(data ->
@@ -357,43 +1383,385 @@ public class Main extends Application {
             @Override
             protected void updateItem(String item, boolean empty) {
                 super.updateItem(item, empty);
-                text.setText((empty || item == null) ? "" : item);
+                String sql = (empty || item == null) ? "" : item;
+                if (compactRows) {
+                    // feste Zeilenhöhe: einzeilig statt umbrochen
+                    setGraphic(null);
+                    setText(sql.replace('\n', ' ').replace('\r', ' '));
+                } else {
+                    setText(null);
+                    text.setText(sql);
+                    setGraphic(text);
+                }
             }
         });
         tableView.getColumns().add(sqlCol);
 
-        // DB-Spalten in gewünschter Reihenfolge
-        for (final String db : orderedDbKeys) {
-            TableColumn<Map<String, String>, String> col = new TableColumn<Map<String, String>, String>(db);
-            col.setCellValueFactory(data ->
-                    new javafx.beans.property.SimpleStringProperty(data.getValue().getOrDefault(db, "")));
-            col.setPrefWidth(220);
-            col.setCellFactory(column -> new TableCell<Map<String, String>, String>() {
-                @Override
-                protected void updateItem(String item, boolean empty) {
-                    super.updateItem(item, empty);
-                    setText(item);
-                    setStyle("");
-                    if (!empty && item != null) {
-                        Map<String, String> row = getTableView().getItems().get(getIndex());
-                        String referenceValue = null;
-                        for (Map.Entry<String, String> entry : row.entrySet()) {
-                            if (!entry.getKey().equals("SQL")) {
-                                referenceValue = entry.getValue();
-                                break;
-                            }
-                        }
-                        if (referenceValue != null && !referenceValue.equals(item)) {
-                            setStyle("-fx-background-color: lightcoral; -fx-text-fill: black;");
-                        }
+        currentDbKeys = orderedDbKeys;
+        rebuildDbColumns(items);
+
+        filterIndex = index;
+        allItems.setAll(items);
+        applyFilter();
+        updateHealthHeaders();
+    }
+
+    /**
+     * Sparkline (numerische Werte) + Verlauf der Zelle aus der lokalen Historie.
+     * Die Historie wird im Hintergrund gelesen; bis dahin zeigt der Tooltip einen Platzhalter.
+     */
+    private void fillHistoryTooltip(Tooltip tip, List<Map<String, String>> rowList, String db) {
+        if (rowList.isEmpty() || !(rowList.get(0) instanceof ResultRow)) return;
+        ResultRow row = (ResultRow) rowList.get(0);
+        final String seriesKey = HistoryStore.seriesKey(row.getQuery(), db);
+        // Referenz = erste DB-Spalte; Schlüssel hier sammeln, die Zeile gehört dem FX-Thread
+        final List<String> keys = new ArrayList<String>();
+        for (String k : row.keySet()) {
+            if (!"SQL".equals(k) && row.getQuery().getDbKuerzel().contains(k)) {
+                keys.add(HistoryStore.seriesKey(row.getQuery(), k));
+            }
+        }
+        final Object request = new Object();   // nur die letzte Anfrage dieses Tooltips zählt
+        tip.setUserData(request);
+        tip.setGraphic(null);
+        tip.setText("Lade Historie …");
+
+        Task<HistoryInfo> task = new Task<HistoryInfo>() {
+            @Override
+            protected HistoryInfo call() {
+                return new HistoryInfo(history.get(seriesKey), history.divergentSince(keys));
+            }
+        };
+        task.setOnSucceeded(e -> {
+            if (tip.getUserData() == request) showHistory(tip, task.getValue());
+        });
+        task.setOnFailed(e -> {
+            if (tip.getUserData() == request) tip.setText("Historie nicht lesbar");
+        });
+        new Thread(task, "historyTooltip").start();
+    }
+
+    private void showHistory(Tooltip tip, HistoryInfo info) {
+        HistoryStore.Series s = info.series;
+        java.text.SimpleDateFormat fmt = new java.text.SimpleDateFormat("dd.MM.yyyy HH:mm");
+
+        VBox box = new VBox(4);
+        if (s.size() == 0) {
+            box.getChildren().add(new Label("Noch keine Historie"));
+        } else {
+            int to = s.size();
+            int from = Math.max(s.lowerBound(System.currentTimeMillis() - HISTORY_WINDOW_MILLIS), to - HISTORY_MAX_POINTS);
+            Polyline spark = sparkline(s, from, to, 160, 32);
+            if (spark != null) box.getChildren().add(spark);
+
+            int lastChange = to - 1;
+            while (lastChange > 0 && s.value(lastChange - 1).equals(s.value(to - 1))) lastChange--;
+            box.getChildren().add(new Label(s.size() + " Werte seit " + fmt.format(new java.util.Date(s.time(0)))
+                    + "\nunverändert seit " + fmt.format(new java.util.Date(s.time(lastChange)))));
+        }
+
+        // Seit wann weicht die Zeile (Referenz = erste DB-Spalte) ab?
+        if (info.divergentSince != null) {
+            Label l = new Label("abweichend seit " + fmt.format(new java.util.Date(info.divergentSince)));
+            l.setStyle("-fx-text-fill: lightcoral;");
+            box.getChildren().add(l);
+        }
+        tip.setText(null);
+        tip.setGraphic(box);
+    }
+
+    /** Linienzug über die numerischen Werte im Bereich [from, to); null, wenn keine vorhanden. */
+    private static Polyline sparkline(HistoryStore.Series s, int from, int to, double width, double height) {
+        double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            double v = s.number(i);
+            if (Double.isNaN(v)) continue;
+            min = Math.min(min, v);
+            max = Math.max(max, v);
+            n++;
+        }
+        if (n < 2) return null;
+        double span = (max > min) ? max - min : 1;
+        Polyline line = new Polyline();
+        int k = 0;
+        for (int i = from; i < to; i++) {
+            double v = s.number(i);
+            if (Double.isNaN(v)) continue;
+            line.getPoints().addAll(width * k / (n - 1), height - (v - min) / span * height);
+            k++;
+        }
+        line.setStyle("-fx-stroke: deepskyblue; -fx-stroke-width: 1.5;");
+        return line;
+    }
+
+    /** Baut die DB-Spalten (ohne SQL-Spalte) neu auf, ohne Abfragen auszuführen. */
+    private void rebuildDbColumns(List<? extends Map<String, String>> items) {
+        // DB-Spalten: unbenutzte DBs standardmäßig ausblenden, nach Umgebung gruppieren
+        tableView.getColumns().remove(1, tableView.getColumns().size()); // SQL-Spalte bleibt
+        dbColumns.clear();
+        List<String> dbKeys = showUnusedDbs.isSelected() ? currentDbKeys : usedDbKeys(items, currentDbKeys);
+        Map<String, List<String>> groups = groupByEnvironment(dbKeys);
+        if (firstLayout) {
+            // beim ersten Aufbau: bei vielen DBs alle Gruppen eingeklappt
+            if (dbKeys.size() > COMPACT_COLUMN_THRESHOLD) collapsedGroups.addAll(groups.keySet());
+            firstLayout = false;
+        }
+        if (groups.size() <= 1) {
+            for (String db : dbKeys) tableView.getColumns().add(dbColumn(db));
+        } else {
+            for (Map.Entry<String, List<String>> g : groups.entrySet()) {
+                TableColumn<Map<String, String>, String> groupCol = new TableColumn<Map<String, String>, String>();
+                layoutGroup(groupCol, g.getKey(), g.getValue());
+                tableView.getColumns().add(groupCol);
+            }
+        }
+        updateCompactRows();
+    }
+
+    /** DBs, die von mindestens einer Abfrage angesprochen werden (Reihenfolge bleibt). */
+    private static List<String> usedDbKeys(List<? extends Map<String, String>> items, List<String> orderedDbKeys) {
+        Set<String> used = new HashSet<String>();
+        for (Map<String, String> m : items) {
+            if (m instanceof ResultRow) used.addAll(((ResultRow) m).getQuery().getDbKuerzel());
+        }
+        List<String> keys = new ArrayList<String>();
+        for (String k : orderedDbKeys) {
+            if (used.contains(k)) keys.add(k);
+        }
+        return keys;
+    }
+
+    /** Umgebung = erste Gruppe von env.group.pattern (Standard: Buchstaben-Präfix, z.B. PROD1 -> PROD). */
+    private Map<String, List<String>> groupByEnvironment(List<String> dbKeys) {
+        Map<String, List<String>> groups = new LinkedHashMap<String, List<String>>();
+        for (String k : dbKeys) {
+            java.util.regex.Matcher m = envPattern.matcher(k);
+            String env = (m.find() && m.groupCount() >= 1 && m.group(1) != null) ? m.group(1) : k;
+            groups.computeIfAbsent(env, x -> new ArrayList<String>()).add(k);
+        }
+        // nur Einzel-DBs -> Gruppierung bringt nichts
+        if (groups.size() == dbKeys.size()) return Collections.singletonMap("", dbKeys);
+        return groups;
+    }
+
+    /** Gruppenkopf mit Auf-/Zuklappen; eingeklappt nur eine Summenspalte, DB-Spalten erst beim Aufklappen. */
+    private void layoutGroup(TableColumn<Map<String, String>, String> groupCol, String env, List<String> dbs) {
+        boolean collapsed = collapsedGroups.contains(env);
+        Label header = new Label((collapsed ? "▸ " : "▾ ") + env + " (" + dbs.size() + ")");
+        header.setOnMouseClicked(e -> {
+            if (!collapsedGroups.remove(env)) collapsedGroups.add(env);
+            layoutGroup(groupCol, env, dbs);
+            updateCompactRows();
+        });
+        groupCol.setGraphic(header);
+
+        List<TableColumn<Map<String, String>, ?>> children = new ArrayList<TableColumn<Map<String, String>, ?>>();
+        if (collapsed) {
+            children.add(groupSummaryColumn(env, dbs));
+        } else {
+            for (String db : dbs) children.add(dbColumn(db));
+        }
+        groupCol.getColumns().setAll(children);
+    }
+
+    private TableColumn<Map<String, String>, String> groupSummaryColumn(String env, final List<String> dbs) {
+        TableColumn<Map<String, String>, String> col = new TableColumn<Map<String, String>, String>("Σ " + env);
+        col.setCellValueFactory(data ->
+                new javafx.beans.property.SimpleStringProperty(groupSummary(data.getValue(), dbs)));
+        col.setPrefWidth(160);
+        col.setSortable(false);
+        col.setCellFactory(column -> new TableCell<Map<String, String>, String>() {
+            @Override
+            protected void updateItem(String item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(empty ? null : item);
+                setStyle(!empty && item != null && item.startsWith("✖")
+                        ? "-fx-background-color: lightcoral; -fx-text-fill: black;" : "");
+            }
+        });
+        return col;
+    }
+
+    /** Kurzfassung einer eingeklappten Gruppe, z.B. "✔ 12 gleich" oder "✖ 2 abweichend, 1 Fehler / 12". */
+    private static String groupSummary(Map<String, String> row, List<String> dbs) {
+        String reference = referenceValue(row);
+        int n = 0, mismatches = 0, failed = 0;
+        for (String db : dbs) {
+            String v = row.get(db);
+            if (v == null || v.isEmpty()) continue;
+            n++;
+            if (isFailed(v)) failed++;
+            else if (isMismatch(v, reference)) mismatches++;
+        }
+        if (n == 0) return "";
+        if (mismatches == 0 && failed == 0) return "✔ " + n + " gleich";
+        return "✖ " + mismatches + " abweichend" + (failed > 0 ? ", " + failed + " Fehler" : "") + " / " + n;
+    }
+
+    /** Viele sichtbare DB-Spalten -> feste Zeilenhöhe (horizontale Virtualisierung der Zellen). */
+    private void updateCompactRows() {
+        boolean compact = tableView.getVisibleLeafColumns().size() - 1 > COMPACT_COLUMN_THRESHOLD;
+        if (compact == compactRows) return;
+        compactRows = compact;
+        tableView.setFixedCellSize(compact ? COMPACT_ROW_HEIGHT : -1);
+        tableView.refresh();
+    }
+
+    /** DB-Spalte (erst bei Bedarf erzeugt und für die aktuelle Tabelle gemerkt). */
+    private TableColumn<Map<String, String>, String> dbColumn(final String db) {
+        TableColumn<Map<String, String>, String> cached = dbColumns.get(db);
+        if (cached != null) return cached;
+        TableColumn<Map<String, String>, String> col = new TableColumn<Map<String, String>, String>(db);
+        col.setCellValueFactory(data ->
+                new javafx.beans.property.SimpleStringProperty(data.getValue().getOrDefault(db, "")));
+        col.setPrefWidth(220);
+        col.setCellFactory(column -> new TableCell<Map<String, String>, String>() {
+            private final Tooltip historyTip = new Tooltip();
+            {
+                MenuItem cellItem = new MenuItem("Zelle erneut ausführen");
+                cellItem.setOnAction(a -> retryCellsAsync(
+                        collectCells(currentRow(), Collections.singleton(db), RetryScope.ALL)));
+                MenuItem rowItem = new MenuItem("Zeile erneut ausführen");
+                rowItem.setOnAction(a -> retryCellsAsync(collectCells(currentRow(), null, RetryScope.ALL)));
+                MenuItem rowFailedItem = new MenuItem("Fehler dieser Zeile erneut ausführen");
+                rowFailedItem.setOnAction(a -> retryCellsAsync(collectCells(currentRow(), null, RetryScope.FAILED)));
+                MenuItem fullItem = new MenuItem("Vollständigen Wert anzeigen");
+                fullItem.setOnAction(a -> {
+                    List<Map<String, String>> r = currentRow();
+                    if (!r.isEmpty() && r.get(0) instanceof ResultRow) showFullValueAsync((ResultRow) r.get(0), db);
+                });
+                MenuItem diffItem = new MenuItem("Abweichende Zeilen anzeigen");
+                diffItem.setOnAction(a -> {
+                    List<ResultRow> r = resultRows(currentRow());
+                    DiffStore store = r.isEmpty() ? null : diffStore(r.get(0), db);
+                    if (store != null) {
+                        DiffViewer.show(getTableView().getScene().getWindow(),
+                                r.get(0).getQuery().getQueryId() + " – " + db + ": abweichende Zeilen", store);
+                    }
+                });
+                MenuItem baselineItem = new MenuItem("Wert als Baseline übernehmen");
+                baselineItem.setOnAction(a -> storeBaselines(resultRows(currentRow()), db));
+                MenuItem baselineRefreshItem = new MenuItem("Baseline aus Referenz-DB aktualisieren");
+                baselineRefreshItem.setOnAction(a -> {
+                    List<ResultRow> r = resultRows(currentRow());
+                    if (!r.isEmpty()) refreshBaselineAsync(r.get(0));
+                });
+                MenuItem baselineRemoveItem = new MenuItem("Baseline entfernen");
+                baselineRemoveItem.setOnAction(a -> {
+                    List<ResultRow> r = resultRows(currentRow());
+                    if (!r.isEmpty()) removeBaseline(r.get(0));
+                });
+                ContextMenu menu = new ContextMenu(cellItem, rowItem, rowFailedItem, fullItem, diffItem,
+                        new SeparatorMenuItem(), baselineItem, baselineRefreshItem, baselineRemoveItem);
+                // nur für verdichtete Werte einer Skalar-Abfrage (bei Digests gibt es keinen "vollen Wert")
+                menu.setOnShowing(ev -> {
+                    List<Map<String, String>> r = currentRow();
+                    fullItem.setDisable(r.isEmpty() || !(r.get(0) instanceof ResultRow)
+                            || !LobDigest.isDigested(r.get(0).get(db))
+                            || ResultDigest.Mode.of(((ResultRow) r.get(0)).getQuery().getOptions()) != ResultDigest.Mode.SCALAR
+                            || ExternalSortDiff.isRowDiff(((ResultRow) r.get(0)).getQuery().getOptions())
+                            || KeySetCompare.isEnabled(((ResultRow) r.get(0)).getQuery().getOptions()));
+                    List<ResultRow> rr = resultRows(r);
+                    diffItem.setDisable(rr.isEmpty() || diffStore(rr.get(0), db) == null);
+                    baselineRemoveItem.setDisable(rr.isEmpty() || rr.get(0).baseline == null);
+                    baselineRefreshItem.setDisable(rr.isEmpty());
+                    baselineItem.setDisable(rr.isEmpty() || isFailed(rr.get(0).get(db)) || isNullOrBlank(rr.get(0).get(db)));
+                });
+                setContextMenu(menu);
+                historyTip.setOnShowing(ev -> fillHistoryTooltip(historyTip, currentRow(), db));
+            }
+
+            private List<Map<String, String>> currentRow() {
+                int idx = getIndex();
+                if (isEmpty() || idx < 0 || idx >= getTableView().getItems().size()) {
+                    return Collections.emptyList();
+                }
+                return Collections.singletonList(getTableView().getItems().get(idx));
+            }
+
+            @Override
+            protected void updateItem(String item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(item);
+                setStyle("");
+                setTooltip(null);
+                if (!empty && item != null) {
+                    Map<String, String> row = getTableView().getItems().get(getIndex());
+                    if (row instanceof ResultRow && !item.isEmpty()) setTooltip(historyTip);
+                    String style = "";
+                    if (row instanceof ResultRow && skipsReference((ResultRow) row, db)
+                            && item.equals(((ResultRow) row).baseline)) {
+                        // Referenz-DB nicht abgefragt, Zelle zeigt die Baseline
+                        style = "-fx-font-style: italic; -fx-text-fill: steelblue;";
+                    } else if (item.startsWith(CircuitBreaker.SKIPPED_PREFIX)) {
+                        // DB wegen offenem Circuit Breaker übersprungen
+                        style = "-fx-background-color: lightgray; -fx-text-fill: dimgray;";
+                    } else if (isMismatch(item, referenceValue(row))) {
+                        style = "-fx-background-color: lightcoral; -fx-text-fill: black;";
+                    }
+                    // im letzten Watch-Zyklus geänderter Wert
+                    if (row instanceof ResultRow && ((ResultRow) row).changedKeys.contains(db)) {
+                        style += "-fx-border-color: darkorange; -fx-border-width: 2;";
                     }
+                    setStyle(style);
                 }
-            });
-            tableView.getColumns().add(col);
+            }
+        });
+
+        // Spaltenkopf: Wiederholung für die ganze DB-Spalte
+        MenuItem colFailed = new MenuItem("Fehler in Spalte erneut ausführen");
+        colFailed.setOnAction(a -> retryCellsAsync(
+                collectCells(allItems, Collections.singleton(db), RetryScope.FAILED)));
+        MenuItem colMismatch = new MenuItem("Abweichungen in Spalte erneut ausführen");
+        colMismatch.setOnAction(a -> retryCellsAsync(
+                collectCells(allItems, Collections.singleton(db), RetryScope.MISMATCHED)));
+        MenuItem colAll = new MenuItem("Ganze Spalte erneut ausführen");
+        colAll.setOnAction(a -> retryCellsAsync(
+                collectCells(allItems, Collections.singleton(db), RetryScope.ALL)));
+        MenuItem colBaseline = new MenuItem("Spalte als Baseline übernehmen");
+        colBaseline.setOnAction(a -> storeBaselines(resultRows(allItems), db));
+        col.setContextMenu(new ContextMenu(colFailed, colMismatch, colAll, new SeparatorMenuItem(), colBaseline));
+        dbColumns.put(db, col);
+        updateHealthHeader(db, col);
+        return col;
+    }
+
+    private static List<ResultRow> resultRows(Collection<? extends Map<String, String>> rows) {
+        List<ResultRow> out = new ArrayList<ResultRow>();
+        for (Map<String, String> m : rows) if (m instanceof ResultRow) out.add((ResultRow) m);
+        return out;
+    }
+
+    /**
+     * Spaltenköpfe zeigen den Circuit-Breaker-Zustand als Symbol neben dem Kürzel (⛔ offen, ◐ Probe).
+     * Der Spaltentext bleibt das reine DB-Kürzel (z.B. für den Excel-Export).
+     */
+    private void updateHealthHeaders() {
+        for (Map.Entry<String, TableColumn<Map<String, String>, String>> e : dbColumns.entrySet()) {
+            updateHealthHeader(e.getKey(), e.getValue());
         }
+    }
 
-        tableView.getItems().addAll(items);
-        tableView.setFixedCellSize(-1);
+    private void updateHealthHeader(String db, TableColumn<Map<String, String>, String> col) {
+        col.setText(db);
+        switch (breaker.state(db)) {
+            case OPEN:
+                col.setGraphic(healthMarker("⛔", "-fx-text-fill: firebrick;", db + " wird nach Fehlern übersprungen"));
+                break;
+            case HALF_OPEN:
+                col.setGraphic(healthMarker("◐", "-fx-text-fill: darkorange;", db + ": Probe-Abfrage nach Störung"));
+                break;
+            default:
+                col.setGraphic(null);
+        }
+    }
+
+    private static Label healthMarker(String symbol, String style, String hint) {
+        Label l = new Label(symbol);
+        l.setStyle(style);
+        l.setTooltip(new Tooltip(hint));
+        return l;
     }
 
     private void exportTableToExcel(TableView<Map<String, String>> tableView) {
@@ -423,10 +1791,11 @@ public class Main extends Application {
             headerFont.setBold(true);
             headerStyle.setFont(headerFont);
 
-            // Kopfzeile
+            // Kopfzeile (sichtbare Blattspalten: DB-Spalten bzw. Summen eingeklappter Gruppen)
+            List<TableColumn<Map<String, String>, ?>> columns = tableView.getVisibleLeafColumns();
             org.apache.poi.ss.usermodel.Row headerRow = sheet.createRow(0);
-            for (int c = 0; c < tableView.getColumns().size(); c++) {
-                TableColumn<Map<String, String>, ?> tc = tableView.getColumns().get(c);
+            for (int c = 0; c < columns.size(); c++) {
+                TableColumn<Map<String, String>, ?> tc = columns.get(c);
                 org.apache.poi.ss.usermodel.Cell cell = headerRow.createCell(c);
                 cell.setCellValue(tc.getText() != null ? tc.getText() : "");
                 cell.setCellStyle(headerStyle);
@@ -436,16 +1805,14 @@ public class Main extends Application {
             for (int r = 0; r < tableView.getItems().size(); r++) {
                 Map<String, String> rowMap = tableView.getItems().get(r);
                 org.apache.poi.ss.usermodel.Row excelRow = sheet.createRow(r + 1);
-                for (int c = 0; c < tableView.getColumns().size(); c++) {
-                    TableColumn<Map<String, String>, ?> tc = tableView.getColumns().get(c);
-                    String colKey = tc.getText();
-                    String value = rowMap.get(colKey);
-                    excelRow.createCell(c).setCellValue(value != null ? value : "");
+                for (int c = 0; c < columns.size(); c++) {
+                    Object value = columns.get(c).getCellData(rowMap);
+                    excelRow.createCell(c).setCellValue(value != null ? value.toString() : "");
                 }
             }
 
             // Breite
-            for (int c = 0; c < tableView.getColumns().size(); c++) {
+            for (int c = 0; c < columns.size(); c++) {
                 sheet.autoSizeColumn(c);
             }
 
@@ -466,17 +1833,81 @@ public class Main extends Application {
         }
     }
 
+    @Override
+    public void stop() {
+        if (watchService != null) watchService.cancel();
+        sinkExecutor.shutdown();
+        chunkExecutor.shutdownNow();
+        synchronized (diffReferences) {
+            for (ReferenceSpill r : diffReferences.values()) r.spill.delete();
+            diffReferences.clear();
+        }
+        synchronized (diffStores) {
+            for (DiffStore d : diffStores.values()) d.delete();
+            diffStores.clear();
+        }
+        synchronized (keyReferences) {
+            keyReferences.clear();
+        }
+        targetConnections.closeAll();
+        agents.closeAll();
+        if (repository != null) repository.closeAll();
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
 
+    // --------- Abgelegte Referenz eines Zeilen-Diffs ----------
+    private static class ReferenceSpill {
+        final ResultPipeline run;
+        final ExternalSortDiff.SpilledResult spill;
+        ReferenceSpill(ResultPipeline run, ExternalSortDiff.SpilledResult spill) {
+            this.run = run;
+            this.spill = spill;
+        }
+    }
+
+    // --------- Bloom-Filter der Referenz eines Schlüsselmengen-Vergleichs ----------
+    private static class ReferenceKeys {
+        final String series;
+        final KeySetCompare.KeySet keys;
+        ReferenceKeys(String series, KeySetCompare.KeySet keys) {
+            this.series = series;
+            this.keys = keys;
+        }
+    }
+
+    // --------- DTO für Watch-Zyklus ----------
+    private static class WatchCycle {
+        final List<ResultRow> rows;
+        final List<CellRef> cells;
+        final List<String> values;
+        WatchCycle(List<ResultRow> rows, List<CellRef> cells, List<String> values) {
+            this.rows = rows;
+            this.cells = cells;
+            this.values = values;
+        }
+    }
+
     // --------- DTO für Task-Ergebnis ----------
+    private static class HistoryInfo {
+        final HistoryStore.Series series;
+        final Long divergentSince;
+        HistoryInfo(HistoryStore.Series series, Long divergentSince) {
+            this.series = series;
+            this.divergentSince = divergentSince;
+        }
+    }
+
     private static class LoadResult {
         final List<Map<String, String>> items;
         final List<String> orderedDbKeys;
-        LoadResult(List<Map<String, String>> items, List<String> orderedDbKeys) {
+        final TableFilterIndex filterIndex;
+        LoadResult(List<Map<String, String>> items, List<String> orderedDbKeys, TableFilterIndex filterIndex) {
             this.items = items;
             this.orderedDbKeys = orderedDbKeys;
+            this.filterIndex = filterIndex;
         }
     }
 }
@@ -3,14 +3,31 @@ package com.example.dbcompare;
 import java.util.List;
 
 public class QueryModel {
+    private String queryId;
     private String sql;
     private List<String> dbKuerzel;
+    private QueryOptions options = QueryOptions.NONE;
 
     public QueryModel(String sql, List<String> dbKuerzel) {
+        this(null, sql, dbKuerzel);
+    }
+
+    public QueryModel(String queryId, String sql, List<String> dbKuerzel) {
+        this.queryId = queryId;
         this.sql = sql;
         this.dbKuerzel = dbKuerzel;
     }
 
+    public QueryModel(String queryId, String sql, List<String> dbKuerzel, QueryOptions options) {
+        this(queryId, sql, dbKuerzel);
+        this.options = options == null ? QueryOptions.NONE : options;
+    }
+
+    /** QUERY_ID aus ABFRAGEN (kann null sein, wenn die Abfrage nicht aus der Tabelle stammt). */
+    public String getQueryId() {
+        return queryId;
+    }
+
     public String getSql() {
         return sql;
     }
@@ -18,4 +35,9 @@ public class QueryModel {
     public List<String> getDbKuerzel() {
         return dbKuerzel;
     }
-}
\ No newline at end of file
+
+    /** Optionen aus ABFRAGEN.OPTIONEN (nie null). */
+    public QueryOptions getOptions() {
+        return options;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.dbcompare;
+
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Optionen pro Abfrage aus der (optionalen) Spalte ABFRAGEN.OPTIONEN.
+ * Format: "schluessel=wert;schluessel2=wert2", Schluessel ohne Gross-/Kleinschreibung.
+ * Beispiel: "interval=600" (Watch-Intervall in Sekunden, 0 = nicht beobachten)
+ */
+public final class QueryOptions {
+
+    /** Name der optionalen Spalte in ABFRAGEN. */
+    public static final String COLUMN = "OPTIONEN";
+
+    public static final QueryOptions NONE = new QueryOptions(Collections.<String, String>emptyMap(), "");
+
+    private final Map<String, String> values;
+    private final String text;
+
+    private QueryOptions(Map<String, String> values, String text) {
+        this.values = values;
+        this.text = text;
+    }
+
+    public static QueryOptions parse(String text) {
+        if (text == null || text.trim().isEmpty()) return NONE;
+        Map<String, String> map = new LinkedHashMap<>();
+        for (String part : text.split(";")) {
+            String p = part.trim();
+            if (p.isEmpty()) continue;
+            int eq = p.indexOf('=');
+            String key = (eq < 0 ? p : p.substring(0, eq)).trim().toLowerCase(Locale.ROOT);
+            String val = eq < 0 ? "true" : p.substring(eq + 1).trim();
+            map.put(key, val);
+        }
+        return new QueryOptions(Collections.unmodifiableMap(map), text.trim());
+    }
+
+    public boolean has(String key) {
+        return values.containsKey(key.toLowerCase(Locale.ROOT));
+    }
+
+    public String get(String key) {
+        return values.get(key.toLowerCase(Locale.ROOT));
+    }
+
+    public String get(String key, String def) {
+        String v = get(key);
+        return v == null || v.isEmpty() ? def : v;
+    }
+
+    public long getLong(String key, long def) {
+        String v = get(key);
+        if (v == null) return def;
+        try {
+            return Long.parseLong(v.trim());
+        } catch (NumberFormatException ex) {
+            return def;
+        }
+    }
+
+    public double getDouble(String key, double def) {
+        String v = get(key);
+        if (v == null) return def;
+        try {
+            return Double.parseDouble(v.trim().replace(',', '.'));
+        } catch (NumberFormatException ex) {
+            return def;
+        }
+    }
+
+    public boolean getBoolean(String key, boolean def) {
+        String v = get(key);
+        if (v == null) return def;
+        String t = v.trim().toLowerCase(Locale.ROOT);
+        return t.equals("true") || t.equals("1") || t.equals("ja") || t.equals("yes");
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    /** Prueft, ob ABFRAGEN die optionale Spalte OPTIONEN besitzt. */
+    public static boolean isColumnPresent(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT * FROM ABFRAGEN WHERE 1 = 0")) {
+            ResultSetMetaData md = rs.getMetaData();
+            for (int i = 1; i <= md.getColumnCount(); i++) {
+                if (COLUMN.equalsIgnoreCase(md.getColumnName(i))) return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.dbcompare;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Sessions zum Repository (ABFRAGEN, DB_CONFIG): je gleichzeitigem Nutzer eine eigene Session.
+ * - Hintergrund-Refresh (Resolver), ABFRAGEN-Editor und DB-Config-Dialog leihen sich jeweils eine
+ *   Session ({@link #acquire}/{@link #release}) und blockieren sich nicht gegenseitig
+ * - Bei der Rueckgabe wird der Transaktionszustand zurueckgesetzt (offene Transaktion -> Rollback,
+ *   AutoCommit an, nicht read-only), damit der naechste Nutzer eine saubere Session bekommt
+ * - Freie Sessions bleiben offen (hoechstens "repo.pool.idle", Standard 2) und werden vor der
+ *   Vergabe per isValid geprueft
+ */
+public class RepositoryPool {
+
+    private static final int VALIDATION_TIMEOUT_SEC = 2;
+
+    private final String url;
+    private final String user;
+    private final String pass;
+    private final int maxIdle;
+    private final Deque<Connection> idle = new ArrayDeque<>();
+    private final Set<Connection> leased = Collections.newSetFromMap(new IdentityHashMap<Connection, Boolean>());
+    private boolean closed;
+
+    public RepositoryPool(String url, String user, String pass, int maxIdle) {
+        this.url = url;
+        this.user = user;
+        this.pass = pass;
+        this.maxIdle = maxIdle;
+    }
+
+    public static RepositoryPool fromConfig(Properties p, String url, String user, String pass) {
+        int maxIdle = Integer.parseInt(p.getProperty("repo.pool.idle", "2").trim());
+        return new RepositoryPool(url, user, pass, Math.max(0, maxIdle));
+    }
+
+    /** Freie oder neue Session; muss mit {@link #release} zurueckgegeben werden. */
+    public Connection acquire() throws SQLException {
+        synchronized (this) {
+            if (closed) throw new SQLException("Repository-Verbindungen sind geschlossen");
+            while (!idle.isEmpty()) {
+                Connection c = idle.pop();
+                if (isUsable(c)) {
+                    leased.add(c);
+                    return c;
+                }
+                closeQuietly(c);
+            }
+        }
+        // ausserhalb der Sperre verbinden: ein langsamer Login blockiert die anderen Nutzer nicht
+        Connection c = DriverManager.getConnection(url, user, pass);
+        synchronized (this) {
+            if (closed) {
+                closeQuietly(c);
+                throw new SQLException("Repository-Verbindungen sind geschlossen");
+            }
+            leased.add(c);
+        }
+        return c;
+    }
+
+    public void release(Connection c) {
+        if (c == null) return;
+        synchronized (this) {
+            if (!leased.remove(c)) return;   // doppelt oder fremd
+        }
+        boolean reusable = reset(c);
+        synchronized (this) {
+            if (reusable && !closed && idle.size() < maxIdle) {
+                idle.push(c);
+                return;
+            }
+        }
+        closeQuietly(c);
+    }
+
+    /** Schliesst freie Sessions sofort, geliehene bei ihrer Rueckgabe. */
+    public void closeAll() {
+        List<Connection> toClose;
+        synchronized (this) {
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+            // geliehene bleiben offen (z.B. laufendes Speichern); release() schliesst sie, da closed gesetzt ist
+        }
+        for (Connection c : toClose) closeQuietly(c);
+    }
+
+    private static boolean reset(Connection c) {
+        try {
+            if (c.isClosed()) return false;
+            if (!c.getAutoCommit()) {
+                c.rollback();
+                c.setAutoCommit(true);
+            }
+            if (c.isReadOnly()) c.setReadOnly(false);
+            return true;
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    private static boolean isUsable(Connection c) {
+        try {
+            return c != null && !c.isClosed() && c.isValid(VALIDATION_TIMEOUT_SEC);
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    private static void closeQuietly(Connection c) {
+        try { if (c != null) c.close(); } catch (Exception ignore) {}
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.dbcompare;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.*;
+import java.util.Locale;
+
+/**
+ * Kompaktes Ergebnis einer Vergleichsabfrage.
+ * - SCALAR : erste Spalte der ersten Zeile (bisheriges Verhalten)
+ * - ROWS   : Zeilenanzahl + SHA-256 ueber alle Zeilen in Ergebnisreihenfolge (SQL sollte ORDER BY haben)
+ * - BUCKETS: Zeilenanzahl + Pruefsummen je Hash-Bucket (reihenfolgeunabhaengig)
+ * Wird lokal (direkte JDBC-Connection) und im {@link DigestAgent} identisch berechnet.
+ */
+public final class ResultDigest {
+
+    public enum Mode {
+        SCALAR, ROWS, BUCKETS;
+
+        /** Modus aus der Abfrage-Option "digest=scalar|rows|buckets". */
+        public static Mode of(QueryOptions options) {
+            String v = options.get("digest", "scalar").toUpperCase(Locale.ROOT);
+            try {
+                return Mode.valueOf(v);
+            } catch (IllegalArgumentException ex) {
+                return SCALAR;
+            }
+        }
+    }
+
+    public static final int DEFAULT_BUCKETS = 64;
+    public static final int MAX_BUCKETS = 1 << 16;
+
+    private static final char ROW_SEP = '\u001E';
+
+    final Mode mode;
+    final String scalar;      // nur SCALAR
+    final long rowCount;      // ROWS/BUCKETS
+    final byte[] sha256;      // nur ROWS
+    final long[] buckets;     // nur BUCKETS
+
+    ResultDigest(Mode mode, String scalar, long rowCount, byte[] sha256, long[] buckets) {
+        this.mode = mode;
+        this.scalar = scalar;
+        this.rowCount = rowCount;
+        this.sha256 = sha256;
+        this.buckets = buckets;
+    }
+
+    /** Fuehrt das SQL aus und verdichtet das Ergebnis gemaess Modus. */
+    public static ResultDigest compute(Connection conn, String sql, Mode mode, int bucketCount) throws SQLException {
+        return compute(conn, sql, mode, bucketCount, CompareRules.NONE);
+    }
+
+    /**
+     * Wie {@link #compute(Connection, String, Mode, int)}, aber ausschliesslich per executeQuery
+     * (Agent): Anweisungen ohne Ergebnismenge werden vom Treiber abgelehnt statt ausgefuehrt.
+     */
+    static ResultDigest computeQuery(Connection conn, String sql, Mode mode, int bucketCount) throws SQLException {
+        if (mode == Mode.SCALAR) return new ResultDigest(mode, DBQueryExecutor.queryScalar(conn, sql), 0, null, null);
+        return compute(conn, sql, mode, bucketCount, CompareRules.NONE);
+    }
+
+    /** Wie oben, Werte vorher gemaess {@link CompareRules} normalisiert. */
+    public static ResultDigest compute(Connection conn, String sql, Mode mode, int bucketCount, CompareRules rules)
+            throws SQLException {
+        if (mode == Mode.SCALAR) {
+            return new ResultDigest(mode, rules.normalizeScalar(DBQueryExecutor.executeScalar(conn, sql)), 0, null, null);
+        }
+        if (bucketCount > MAX_BUCKETS) {
+            throw new IllegalArgumentException("buckets=" + bucketCount + " ist zu gross (max. " + MAX_BUCKETS + ")");
+        }
+        sql = (sql == null) ? "" : sql.trim();
+        MessageDigest md = mode == Mode.ROWS ? sha256() : null;
+        long[] buckets = mode == Mode.BUCKETS ? new long[Math.max(1, bucketCount)] : null;
+        long rows = 0;
+
+        StringBuilder sb = new StringBuilder(256);
+        try (Statement st = conn.createStatement()) {
+            st.setFetchSize(1000);
+            try (ResultSet rs = st.executeQuery(sql)) {
+                CompareRules.RowFormat format = rules.bind(rs.getMetaData());
+                while (rs.next()) {
+                    sb.setLength(0);
+                    format.append(rs, sb);
+                    if (md != null) {
+                        sb.append(ROW_SEP);
+                        md.update(sb.toString().getBytes(StandardCharsets.UTF_8));
+                    } else {
+                        long h = hash64(sb);
+                        int b = (int) ((h >>> 1) % buckets.length);
+                        buckets[b] += h; // Summe -> unabhaengig von der Zeilenreihenfolge
+                    }
+                    rows++;
+                }
+            }
+        }
+        return new ResultDigest(mode, null, rows, md != null ? md.digest() : null, buckets);
+    }
+
+    /**
+     * Fasst Teilergebnisse disjunkter Teilmengen zusammen (siehe {@link ChunkedQuery}):
+     * BUCKETS summiert Zeilen und Buckets -> identisch zum ungeteilten Digest.
+     * ROWS haengt von der Reihenfolge ab und ist nicht teilbar; SCALAR fasst ChunkedQuery zusammen.
+     */
+    static ResultDigest mergeBuckets(java.util.List<ResultDigest> parts) {
+        long rows = 0;
+        long[] buckets = null;
+        for (ResultDigest d : parts) {
+            if (d.mode != Mode.BUCKETS) throw new IllegalArgumentException("nur digest=buckets ist teilbar");
+            if (buckets == null) buckets = new long[d.buckets.length];
+            for (int i = 0; i < buckets.length; i++) buckets[i] += d.buckets[i];
+            rows += d.rowCount;
+        }
+        return new ResultDigest(Mode.BUCKETS, null, rows, null, buckets);
+    }
+
+    /** Anzeige-/Vergleichswert fuer die Tabellenzelle. */
+    public String toDisplayString() {
+        switch (mode) {
+            case ROWS:
+                return rowCount + " Zeilen #" + hex(sha256, 8);
+            case BUCKETS:
+                long combined = 1125899906842597L;
+                for (long b : buckets) combined = 31 * combined + b;
+                return rowCount + " Zeilen Σ" + Long.toHexString(combined);
+            default:
+                return scalar;
+        }
+    }
+
+    /** FNV-1a (64 Bit) ueber die Zeichen der Zeile, ohne String-Kopie. */
+    static long hash64(CharSequence s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    static String hex(byte[] bytes, int maxBytes) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < Math.min(bytes.length, maxBytes); i++) {
+            sb.append(String.format("%02x", bytes[i] & 0xff));
+        }
+        return sb.toString();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.dbcompare;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+
+/**
+ * Ergebnis-Pipeline eines Laufs: die Ausfuehrung veroeffentlicht jede Zelle als {@link CellResult},
+ * mehrere Sinks (Tabelle, CSV, Historie, Metriken) konsumieren parallel.
+ * Jeder Sink hat einen begrenzten Puffer und fordert Elemente blockweise an (Flow-Demand);
+ * ist ein Puffer voll, blockiert {@link #publish} -> langsame Sinks bremsen die Ausfuehrung,
+ * statt den Heap wachsen zu lassen.
+ */
+public class ResultPipeline implements AutoCloseable {
+
+    private static final Logger LOG = LogManager.getLogger(ResultPipeline.class);
+
+    /** Ein Zellergebnis (Zeile + DB-Spalte) samt Zeitpunkt und Laufzeit. */
+    public static final class CellResult {
+        final ResultRow row;
+        final String dbKey;
+        final String value;
+        final long timestamp;
+        final long latencyMillis;
+
+        CellResult(ResultRow row, String dbKey, String value, long timestamp, long latencyMillis) {
+            this.row = row;
+            this.dbKey = dbKey;
+            this.value = value;
+            this.timestamp = timestamp;
+            this.latencyMillis = latencyMillis;
+        }
+    }
+
+    private final SubmissionPublisher<CellResult> publisher;
+    private final List<Sink> sinks = new ArrayList<>();
+
+    /** @param bufferSize Puffer je Sink (wird auf eine Zweierpotenz gerundet) */
+    public ResultPipeline(Executor executor, int bufferSize) {
+        this.publisher = new SubmissionPublisher<>(executor, Math.max(1, bufferSize));
+    }
+
+    public ResultPipeline subscribe(Sink sink) {
+        sinks.add(sink);
+        publisher.subscribe(sink);
+        return this;
+    }
+
+    /** Blockiert, solange ein Sink keinen Platz im Puffer hat (Backpressure). */
+    public void publish(ResultRow row, String dbKey, String value, long latencyMillis) {
+        publisher.submit(new CellResult(row, dbKey, value, System.currentTimeMillis(), latencyMillis));
+    }
+
+    /** Keine weiteren Ergebnisse; die Sinks arbeiten ihre Puffer noch ab. */
+    @Override
+    public void close() {
+        publisher.close();
+    }
+
+    /** Schliesst und wartet, bis alle Sinks fertig sind. */
+    public void closeAndAwait() throws InterruptedException {
+        close();
+        CompletableFuture<?>[] done = new CompletableFuture<?>[sinks.size()];
+        for (int i = 0; i < done.length; i++) done[i] = sinks.get(i).done;
+        try {
+            CompletableFuture.allOf(done).get();
+        } catch (java.util.concurrent.ExecutionException ex) {
+            // Sinks melden ihre Fehler selbst; hier nur nicht haengen bleiben
+            LOG.error("Ergebnis-Sink fehlgeschlagen", ex.getCause());
+        }
+    }
+
+    /**
+     * Basis fuer Sinks: fordert Elemente blockweise an (Demand) und verarbeitet sie nacheinander.
+     * Fehler eines Elements werden gemeldet, ohne den Lauf abzubrechen.
+     */
+    public abstract static class Sink implements Flow.Subscriber<CellResult> {
+        private static final int BATCH = 32;
+
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        private final String name;
+        private Flow.Subscription subscription;
+        private int pending;
+
+        protected Sink(String name) {
+            this.name = name;
+        }
+
+        protected abstract void accept(CellResult r) throws Exception;
+
+        /** Nach dem letzten Element (im Sink-Thread). */
+        protected void finish() throws Exception {
+        }
+
+        /** Nach einem Abbruch der Pipeline statt {@link #finish()}: Ressourcen freigeben. */
+        protected void abort() {
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription s) {
+            subscription = s;
+            pending = BATCH;
+            s.request(BATCH);
+        }
+
+        @Override
+        public void onNext(CellResult item) {
+            try {
+                accept(item);
+            } catch (Exception ex) {
+                LOG.warn("Sink {}: {}", name, ex.getMessage(), ex);
+            }
+            if (--pending == 0) {
+                pending = BATCH;
+                subscription.request(BATCH);
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            LOG.error("Sink {} abgebrochen: {}", name, t.getMessage(), t);
+            abort();
+            done.completeExceptionally(t);
+        }
+
+        @Override
+        public void onComplete() {
+            try {
+                finish();
+                done.complete(null);
+            } catch (Exception ex) {
+                LOG.error("Sink {}: {}", name, ex.getMessage(), ex);
+                abort();
+                done.completeExceptionally(ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.dbcompare;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Set;
+
+/**
+ * Eine Zeile der Vergleichstabelle: Spaltenname ("SQL" bzw. DB-Kuerzel) -> angezeigter Wert.
+ * Merkt sich zusaetzlich die zugrunde liegende Abfrage, damit einzelne Zellen
+ * gezielt erneut ausgefuehrt werden koennen.
+ */
+public class ResultRow extends LinkedHashMap<String, String> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final QueryModel query;
+
+    // Watch-Modus (nur im FX-Thread lesen/schreiben)
+    long watchIntervalMillis;                       // aktuelles adaptives Intervall, 0 = noch nicht eingeplant
+    long watchNextDueMillis;
+    final Set<String> changedKeys = new HashSet<>(); // im letzten Zyklus geaenderte DB-Spalten
+
+    // Sollwert aus dem BaselineStore (null = keiner); ersetzt die erste DB-Spalte als Referenz
+    String baseline;
+
+    // Position im TableFilterIndex der aktuell angezeigten Tabelle
+    int filterIndex = -1;
+
+    public ResultRow(QueryModel query) {
+        this.query = query;
+    }
+
+    public QueryModel getQuery() {
+        return query;
+    }
+
+    // Identitaet statt Inhaltsvergleich: zwei Zeilen mit gleichen Werten bleiben verschiedene Zeilen
+    @Override
+    public boolean equals(Object o) {
+        return this == o;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(this);
+    }
+}
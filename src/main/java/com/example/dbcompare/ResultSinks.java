@@ -0,0 +1,143 @@
+package com.example.dbcompare;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/** Konkrete Sinks der {@link ResultPipeline}. */
+final class ResultSinks {
+
+    private static final Logger LOG = LogManager.getLogger(ResultSinks.class);
+
+    private ResultSinks() {}
+
+    /** Schreibt die Werte in die Tabellenzeilen (die Zeilen sind waehrend des Laufs noch nicht angezeigt). */
+    static final class TableSink extends ResultPipeline.Sink {
+        TableSink() {
+            super("Tabelle");
+        }
+
+        @Override
+        protected void accept(ResultPipeline.CellResult r) {
+            r.row.put(r.dbKey, r.value);
+        }
+    }
+
+    /** Haengt erfolgreiche Werte an die lokale Historie an. */
+    static final class HistorySink extends ResultPipeline.Sink {
+        private final HistoryStore history;
+
+        HistorySink(HistoryStore history) {
+            super("Historie");
+            this.history = history;
+        }
+
+        @Override
+        protected void accept(ResultPipeline.CellResult r) throws IOException {
+            if (Main.isFailed(r.value)) return;
+            history.append(HistoryStore.seriesKey(r.row.getQuery(), r.dbKey), r.timestamp, r.value);
+        }
+    }
+
+    /** Schreibt den Lauf zeilenweise als CSV (QUERY_ID;DB;ZEIT;MS;WERT). */
+    static final class CsvSink extends ResultPipeline.Sink {
+        private final Path file;
+        private final BufferedWriter out;
+        private final SimpleDateFormat fmt = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+
+        CsvSink(Path file) throws IOException {
+            super("CSV");
+            this.file = file;
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            this.out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+            try {
+                out.write("QUERY_ID;DB;ZEIT;MS;WERT\n");
+            } catch (IOException ex) {
+                abort();
+                throw ex;
+            }
+        }
+
+        @Override
+        protected void accept(ResultPipeline.CellResult r) throws IOException {
+            out.write(csv(r.row.getQuery().getQueryId()));
+            out.write(';');
+            out.write(csv(r.dbKey));
+            out.write(';');
+            out.write(fmt.format(new java.util.Date(r.timestamp)));
+            out.write(';');
+            out.write(Long.toString(r.latencyMillis));
+            out.write(';');
+            out.write(csv(r.value));
+            out.write('\n');
+        }
+
+        @Override
+        protected void finish() throws IOException {
+            out.close();
+            LOG.info("Lauf exportiert: {}", file);
+        }
+
+        @Override
+        protected void abort() {
+            try { out.close(); } catch (IOException ignore) {}
+        }
+
+        private static String csv(String s) {
+            if (s == null) return "";
+            return "\"" + s.replace("\"", "\"\"") + "\"";
+        }
+    }
+
+    /** Zaehlt Zellen, Fehler und Laufzeiten je DB; meldet am Ende eine Zusammenfassung. */
+    static final class MetricsSink extends ResultPipeline.Sink {
+        private final Map<String, long[]> perDb = new TreeMap<>();  // DB -> {Zellen, Fehler, ms gesamt, ms max}
+        private final Consumer<String> onSummary;
+        private final long start = System.currentTimeMillis();
+
+        MetricsSink(Consumer<String> onSummary) {
+            super("Metriken");
+            this.onSummary = onSummary;
+        }
+
+        @Override
+        protected void accept(ResultPipeline.CellResult r) {
+            long[] m = perDb.computeIfAbsent(r.dbKey, k -> new long[4]);
+            m[0]++;
+            if (Main.isFailed(r.value)) m[1]++;
+            m[2] += r.latencyMillis;
+            m[3] = Math.max(m[3], r.latencyMillis);
+        }
+
+        @Override
+        protected void finish() {
+            long cells = 0, failed = 0, total = 0;
+            String slowest = null;
+            long slowestAvg = -1;
+            for (Map.Entry<String, long[]> e : perDb.entrySet()) {
+                long[] m = e.getValue();
+                cells += m[0];
+                failed += m[1];
+                total += m[2];
+                long avg = m[2] / Math.max(1, m[0]);
+                if (avg > slowestAvg) {
+                    slowestAvg = avg;
+                    slowest = e.getKey();
+                }
+            }
+            if (cells == 0) return;
+            onSummary.accept(String.format("Lauf: %d Zellen in %.1f s, %d Fehler, Ø %d ms%s",
+                    cells, (System.currentTimeMillis() - start) / 1000.0, failed, total / cells,
+                    slowest != null && perDb.size() > 1 ? " (langsamste DB: " + slowest + " Ø " + slowestAvg + " ms)" : ""));
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.dbcompare;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Naeherungsvergleich per Stichprobe (Abfrage-Option "sample=p", optional "seed=s", Standard 42).
+ * - Der Platzhalter {@link #PLACEHOLDER} hinter der Tabelle wird zu "SAMPLE (p) SEED (s)";
+ *   als Kommentar laesst er das SQL fuer den exakten Lauf unveraendert
+ * - Gleicher Seed auf allen DBs -> bei gleicher Datenlage dieselbe Stichprobe
+ * - Ergebnis traegt die Aussagekraft: eine Abweichung in k Zeilen bleibt mit
+ *   Wahrscheinlichkeit (1-p)^k unentdeckt, angezeigt wird k fuer 95 % Erkennung
+ * Weichen die Stichproben einer Zeile voneinander ab (echte Drift oder unterschiedliche
+ * physische Ablage), wird die Zeile exakt nachgeholt.
+ */
+public final class SampleMode {
+
+    public static final String PLACEHOLDER = "/*SAMPLE*/";
+    public static final String PREFIX = "≈ ";
+
+    private static final long DEFAULT_SEED = 42;
+
+    private SampleMode() {}
+
+    /** Stichprobe konfiguriert (diff=rows, diff=keys und incremental= vergleichen immer vollstaendig)? */
+    public static boolean isEnabled(QueryOptions options) {
+        return options.has("sample") && !ExternalSortDiff.isRowDiff(options) && !KeySetCompare.isEnabled(options)
+                && !IncrementalState.isEnabled(options);
+    }
+
+    /** SQL fuer den Stichproben-Lauf. */
+    public static String apply(String sql, QueryOptions options) {
+        double p = percent(options);
+        if (sql == null || !sql.contains(PLACEHOLDER)) {
+            throw new IllegalArgumentException("sample= braucht " + PLACEHOLDER + " hinter der Tabelle im FROM");
+        }
+        long seed = options.getLong("seed", DEFAULT_SEED);
+        return sql.replace(PLACEHOLDER, " SAMPLE (" + format(p) + ") SEED (" + seed + ")");
+    }
+
+    /** Zellwert eines Stichproben-Laufs, z.B. "≈ 1234 (Stichprobe 1%, 95% ab 299 abw. Zeilen)". */
+    public static String label(String value, QueryOptions options) {
+        double p = percent(options) / 100.0;
+        long k95 = p >= 1.0 ? 1 : (long) Math.ceil(Math.log(0.05) / Math.log(1.0 - p));
+        return PREFIX + value + " (Stichprobe " + format(percent(options)) + "%, 95% ab " + k95 + " abw. Zeilen)";
+    }
+
+    public static boolean isSampled(String value) {
+        return value != null && value.startsWith(PREFIX);
+    }
+
+    /**
+     * Laesst sich eine Stichprobe gegen die Baseline vergleichen? Nur ohne Baseline (Vergleich der
+     * Stichproben untereinander) oder gegen eine Stichproben-Baseline; ein exakter Sollwert passt nie.
+     */
+    public static boolean isComparable(String baseline) {
+        return baseline == null || isSampled(baseline);
+    }
+
+    /**
+     * Muss die Zeile exakt nachgeholt werden? Ja, wenn sich die erfolgreichen Stichproben
+     * untereinander oder von einer (Stichproben-)Baseline unterscheiden, oder wenn sie gegen
+     * eine exakte Baseline verglichen wuerden.
+     */
+    public static boolean needsExactRun(Collection<String> values, String baseline) {
+        Set<String> distinct = new HashSet<>();
+        for (String v : values) {
+            if (isSampled(v)) distinct.add(v);
+        }
+        if (distinct.isEmpty()) return false;
+        if (!isComparable(baseline)) return true;
+        if (baseline != null) distinct.add(baseline);
+        return distinct.size() > 1;
+    }
+
+    private static double percent(QueryOptions options) {
+        double p = options.getDouble("sample", 0);
+        // Oracle: 0.000001 <= p < 100
+        if (!(p >= 0.000001 && p < 100)) {
+            throw new IllegalArgumentException("sample= erwartet einen Prozentsatz > 0 und < 100: " + options.get("sample"));
+        }
+        return p;
+    }
+
+    private static String format(double p) {
+        String s = String.format(Locale.ROOT, "%.6f", p);
+        s = s.replaceAll("0+$", "");
+        return s.endsWith(".") ? s.substring(0, s.length() - 1) : s;
+    }
+}
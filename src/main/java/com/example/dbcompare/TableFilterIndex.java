@@ -0,0 +1,125 @@
+package com.example.dbcompare;
+
+import java.util.*;
+
+/**
+ * Vorberechneter Index ueber die Vergleichstabelle fuer die Filterleiste.
+ * - Status je Zeile als BitSets: Abweichung/Fehler insgesamt und je DB-Spalte
+ * - Token-Index ueber den SQL-Text (Kleinbuchstaben, sortiert -> Praefixsuche per subMap)
+ * Filtern ist damit reine BitSet-Verknuepfung; Spalten und Abfragen bleiben unberuehrt.
+ * Zeilen tragen ihre Position im Index ({@link ResultRow#filterIndex}).
+ */
+public class TableFilterIndex {
+
+    private final List<ResultRow> rows;
+    private final List<String> dbKeys;
+    private final BitSet mismatchAny = new BitSet();
+    private final BitSet failedAny = new BitSet();
+    private final Map<String, BitSet> mismatchByDb = new HashMap<>();
+    private final Map<String, BitSet> failedByDb = new HashMap<>();
+    private final Map<String, BitSet> targetedByDb = new HashMap<>();   // Abfrage ist fuer die DB vorgesehen
+    private final TreeMap<String, BitSet> tokens = new TreeMap<>();
+
+    public TableFilterIndex(List<? extends Map<String, String>> items, List<String> dbKeys) {
+        this.rows = new ArrayList<>(items.size());
+        this.dbKeys = new ArrayList<>(dbKeys);
+        for (String k : dbKeys) {
+            mismatchByDb.put(k, new BitSet());
+            failedByDb.put(k, new BitSet());
+            targetedByDb.put(k, new BitSet());
+        }
+        for (Map<String, String> m : items) {
+            if (!(m instanceof ResultRow)) continue;
+            ResultRow row = (ResultRow) m;
+            int i = rows.size();
+            row.filterIndex = i;
+            rows.add(row);
+            for (String k : row.getQuery().getDbKuerzel()) {
+                BitSet b = targetedByDb.get(k);
+                if (b != null) b.set(i);
+            }
+            indexTokens(i, row.getOrDefault("SQL", ""));
+            updateStatus(row);
+        }
+    }
+
+    public int size() {
+        return rows.size();
+    }
+
+    /** Status einer Zeile nach geaenderten Zellwerten (Wiederholung/Watch) neu berechnen. */
+    public void updateStatus(ResultRow row) {
+        int i = row.filterIndex;
+        if (i < 0 || i >= rows.size() || rows.get(i) != row) return;
+        String reference = Main.referenceValue(row);
+        boolean anyMismatch = false, anyFailed = false;
+        for (String k : dbKeys) {
+            String v = row.get(k);
+            boolean mismatch = Main.isMismatch(v, reference);
+            boolean failed = Main.isFailed(v);
+            mismatchByDb.get(k).set(i, mismatch);
+            failedByDb.get(k).set(i, failed);
+            anyMismatch |= mismatch;
+            anyFailed |= failed;
+        }
+        mismatchAny.set(i, anyMismatch);
+        failedAny.set(i, anyFailed);
+    }
+
+    /**
+     * Zeilen, die allen Kriterien genuegen.
+     * @param dbKey  null = alle DBs; sonst nur Zeilen dieser DB (bzw. deren Abweichungen/Fehler)
+     * @param search Woerter, die als Praefix von SQL-Tokens vorkommen muessen (UND-verknuepft)
+     */
+    public BitSet filter(boolean onlyMismatches, boolean onlyFailed, String dbKey, String search) {
+        BitSet result = new BitSet(rows.size());
+        result.set(0, rows.size());
+        if (dbKey != null && targetedByDb.containsKey(dbKey)) {
+            if (onlyMismatches || onlyFailed) {
+                BitSet status = new BitSet();
+                if (onlyMismatches) status.or(mismatchByDb.get(dbKey));
+                if (onlyFailed) status.or(failedByDb.get(dbKey));
+                result.and(status);
+            } else {
+                result.and(targetedByDb.get(dbKey));
+            }
+        } else if (onlyMismatches || onlyFailed) {
+            BitSet status = new BitSet();
+            if (onlyMismatches) status.or(mismatchAny);
+            if (onlyFailed) status.or(failedAny);
+            result.and(status);
+        }
+        for (String word : tokenize(search)) {
+            if (result.isEmpty()) break;
+            BitSet matches = new BitSet();
+            for (BitSet b : tokens.subMap(word, true, word + Character.MAX_VALUE, false).values()) {
+                matches.or(b);
+            }
+            result.and(matches);
+        }
+        return result;
+    }
+
+    private void indexTokens(int row, String sql) {
+        for (String t : tokenize(sql)) {
+            tokens.computeIfAbsent(t, x -> new BitSet()).set(row);
+        }
+    }
+
+    /** Bezeichner/Zahlen in Kleinbuchstaben; Schema-Praefixe ("SCHEMA.TABELLE") ergeben mehrere Tokens. */
+    static Set<String> tokenize(String text) {
+        Set<String> out = new LinkedHashSet<>();
+        if (text == null) return out;
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '#') {
+                sb.append(Character.toLowerCase(c));
+            } else if (sb.length() > 0) {
+                out.add(sb.toString());
+                sb.setLength(0);
+            }
+        }
+        return out;
+    }
+}
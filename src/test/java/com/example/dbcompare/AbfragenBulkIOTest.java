@@ -0,0 +1,168 @@
+package com.example.dbcompare;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AbfragenBulkIOTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void mixedIdsDoNotOverwriteEachOther() throws Exception {
+        FakeDb db = new FakeDb();
+        db.rows.put(1L, "SELECT 1 FROM DUAL");
+        db.rows.put(2L, "SELECT 2 FROM DUAL");
+        db.rows.put(3L, "SELECT 3 FROM DUAL");
+        db.sequence = 3;                                   // naechste neue ID waere 4
+
+        Path file = dir.resolve("abfragen.csv");
+        Files.write(file, ("QUERY_ID;SQL_TEXT;DB_KUERZEL;ACTIVE\n"
+                + ";\"SELECT 'neu1' FROM DUAL\";PROD;1\n"
+                + "5;\"SELECT 5 FROM DUAL\";PROD;1\n"
+                + ";\"SELECT 'neu2' FROM DUAL\";PROD;1\n"
+                + "4;\"SELECT 4 FROM DUAL\";PROD;1\n"
+                + "2;\"SELECT 'zwei' FROM DUAL\";PROD;0\n").getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(5, AbfragenBulkIO.importFile(db.connection(), file, null));
+
+        assertEquals("SELECT 1 FROM DUAL", db.rows.get(1L));
+        assertEquals("SELECT 'zwei' FROM DUAL", db.rows.get(2L));
+        assertEquals("SELECT 3 FROM DUAL", db.rows.get(3L));
+        assertEquals("SELECT 4 FROM DUAL", db.rows.get(4L));
+        assertEquals("SELECT 5 FROM DUAL", db.rows.get(5L));
+        assertEquals(7, db.rows.size());
+        assertTrue(db.rows.containsValue("SELECT 'neu1' FROM DUAL"));
+        assertTrue(db.rows.containsValue("SELECT 'neu2' FROM DUAL"));
+        assertEquals(5, db.rows.headMap(6L).size(), "neue IDs liegen hinter der hoechsten ID der Datei");
+        assertEquals(1, db.increment);
+        assertTrue(db.committed);
+    }
+
+    @Test
+    void withoutIdsSequenceIsUntouched() throws Exception {
+        FakeDb db = new FakeDb();
+        db.sequence = 10;
+        Path file = dir.resolve("abfragen.sql");
+        Files.write(file, ("-- DB_KUERZEL: PROD\nSELECT 'a' FROM DUAL;\n\nSELECT 'b' FROM DUAL\n/\n")
+                .getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(2, AbfragenBulkIO.importFile(db.connection(), file, null));
+        assertEquals(new TreeSet<>(Arrays.asList(11L, 12L)), db.rows.keySet());
+        assertFalse(db.altered);
+    }
+
+    /** Minimale ABFRAGEN-Tabelle samt ABFRAGEN_SEQ hinter JDBC-Proxys (nur die vom Import benutzten Aufrufe). */
+    private static final class FakeDb {
+        final TreeMap<Long, String> rows = new TreeMap<>();
+        long sequence;
+        long increment = 1;
+        boolean autoCommit = true;
+        boolean committed;
+        boolean altered;
+
+        long nextval() {
+            sequence += increment;
+            return sequence;
+        }
+
+        Connection connection() {
+            return proxy(Connection.class, (name, args) -> {
+                switch (name) {
+                    case "getAutoCommit": return autoCommit;
+                    case "setAutoCommit": autoCommit = (Boolean) args[0]; return null;
+                    case "commit": committed = true; return null;
+                    case "rollback": case "close": return null;
+                    case "createStatement": return statement();
+                    case "prepareStatement": return prepared((String) args[0]);
+                    default: throw new UnsupportedOperationException(name);
+                }
+            });
+        }
+
+        Statement statement() {
+            return proxy(Statement.class, (name, args) -> {
+                switch (name) {
+                    case "executeQuery": return query((String) args[0]);
+                    case "execute":
+                        String sql = (String) args[0];
+                        if (!sql.startsWith("ALTER SEQUENCE")) throw new UnsupportedOperationException(sql);
+                        increment = Long.parseLong(sql.substring(sql.lastIndexOf(' ') + 1));
+                        altered = true;
+                        return false;
+                    case "close": return null;
+                    default: throw new UnsupportedOperationException(name);
+                }
+            });
+        }
+
+        ResultSet query(String sql) {
+            long value;
+            if (sql.contains("USER_SEQUENCES")) value = 1;
+            else if (sql.contains("MAX(QUERY_ID)")) value = rows.isEmpty() ? 0 : rows.lastKey();
+            else if (sql.contains(AbfragenSequence.NEXTVAL)) value = nextval();
+            else throw new UnsupportedOperationException(sql);
+            boolean[] read = {false};
+            return proxy(ResultSet.class, (name, args) -> {
+                switch (name) {
+                    case "next": boolean more = !read[0]; read[0] = true; return more;
+                    case "getLong": return value;
+                    case "getInt": return (int) value;
+                    case "close": return null;
+                    default: throw new UnsupportedOperationException(name);
+                }
+            });
+        }
+
+        PreparedStatement prepared(String sql) {
+            boolean insert = sql.startsWith("INSERT");
+            boolean merge = sql.startsWith("MERGE");
+            Map<Integer, Object> params = new HashMap<>();
+            List<Map<Integer, Object>> batch = new ArrayList<>();
+            return proxy(PreparedStatement.class, (name, args) -> {
+                switch (name) {
+                    case "setLong": case "setString": case "setInt":
+                        params.put((Integer) args[0], args[1]);
+                        return null;
+                    case "addBatch":
+                        batch.add(new HashMap<>(params));
+                        params.clear();
+                        return null;
+                    case "executeBatch":
+                        for (Map<Integer, Object> p : batch) {
+                            if (insert) rows.put(nextval(), (String) p.get(1));
+                            else if (merge) rows.put((Long) p.get(1), (String) p.get(2));
+                        }
+                        int[] counts = new int[batch.size()];
+                        Arrays.fill(counts, 1);
+                        batch.clear();
+                        return counts;
+                    case "executeQuery": return query(sql);
+                    case "setFetchSize": case "close": return null;
+                    default: throw new UnsupportedOperationException(name);
+                }
+            });
+        }
+    }
+
+    private interface Handler {
+        Object call(String method, Object[] args) throws Exception;
+    }
+
+    private static <T> T proxy(Class<T> type, Handler h) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (p, m, args) -> h.call(m.getName(), args)));
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.dbcompare;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AgentProtocolTest {
+
+    private static final String SECRET = "geheim";
+
+    private DigestAgent agent;
+    private Thread serverThread;
+
+    @BeforeEach
+    void startAgent() throws Exception {
+        agent = new DigestAgent(Collections.singletonMap("X", "jdbc:nicht-vorhanden:x;u;p"), SECRET);
+        serverThread = new Thread(() -> {
+            try {
+                agent.serve(InetAddress.getLoopbackAddress(), 0);
+            } catch (IOException ignore) {
+                // close() beendet serve
+            }
+        }, "agent-test");
+        serverThread.setDaemon(true);
+        serverThread.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (agent.getLocalPort() <= 0 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertTrue(agent.getLocalPort() > 0, "Agent nicht gestartet");
+    }
+
+    @AfterEach
+    void stopAgent() throws Exception {
+        agent.close();
+        serverThread.join(5000);
+    }
+
+    @Test
+    void roundTripWithSharedSecret() throws Exception {
+        try (AgentClient client = new AgentClient("127.0.0.1", agent.getLocalPort(), 5000, SECRET)) {
+            assertEquals(new LinkedHashSet<>(Collections.singletonList("X")), client.connect());
+            assertEquals("Unbekannt", client.execute("Y", "SELECT 1 FROM DUAL", ResultDigest.Mode.SCALAR, 1));
+            assertEquals("Fehler: Keine Verbindung zu X",
+                    client.execute("X", "SELECT 1 FROM DUAL", ResultDigest.Mode.BUCKETS, 64));
+        }
+    }
+
+    @Test
+    void wrongSecretIsRejected() {
+        try (AgentClient client = new AgentClient("127.0.0.1", agent.getLocalPort(), 5000, "falsch")) {
+            IOException ex = assertThrows(IOException.class, client::connect);
+            assertTrue(ex.getMessage().contains("abgelehnt"), ex.getMessage());
+        }
+    }
+
+    @Test
+    void invalidModeClosesConnection() throws Exception {
+        try (Socket s = new Socket(InetAddress.getLoopbackAddress(), agent.getLocalPort())) {
+            s.setSoTimeout(5000);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            AgentProtocol.Session session = handshake(s, in);
+
+            DataOutputStream out = session.message();
+            out.writeByte(AgentProtocol.OP_EXECUTE);
+            out.writeInt(1);
+            AgentProtocol.writeString(out, "X");
+            out.writeByte(ResultDigest.Mode.values().length);   // ungueltiger Modus
+            out.writeInt(64);
+            AgentProtocol.writeString(out, "SELECT 1 FROM DUAL");
+            session.send();
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    void oversizedBucketCountClosesConnection() throws Exception {
+        try (Socket s = new Socket(InetAddress.getLoopbackAddress(), agent.getLocalPort())) {
+            s.setSoTimeout(5000);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            AgentProtocol.Session session = handshake(s, in);
+
+            DataOutputStream out = session.message();
+            out.writeByte(AgentProtocol.OP_EXECUTE);
+            out.writeInt(1);
+            AgentProtocol.writeString(out, "X");
+            out.writeByte(ResultDigest.Mode.BUCKETS.ordinal());
+            out.writeInt(Integer.MAX_VALUE);
+            AgentProtocol.writeString(out, "SELECT 1 FROM DUAL");
+            session.send();
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    void digestRoundTrip() throws Exception {
+        ResultDigest buckets = new ResultDigest(ResultDigest.Mode.BUCKETS, null, 3, null, new long[]{1, -2, Long.MAX_VALUE});
+        assertEquals(buckets.toDisplayString(), roundTrip(buckets).toDisplayString());
+
+        byte[] sha = new byte[32];
+        Arrays.fill(sha, (byte) 0xAB);
+        ResultDigest rows = new ResultDigest(ResultDigest.Mode.ROWS, null, 42, sha, null);
+        assertEquals(rows.toDisplayString(), roundTrip(rows).toDisplayString());
+
+        ResultDigest scalar = new ResultDigest(ResultDigest.Mode.SCALAR, "Grüße", 0, null, null);
+        assertEquals("Grüße", roundTrip(scalar).toDisplayString());
+    }
+
+    @Test
+    void readerRejectsBadLengths() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(ResultDigest.Mode.BUCKETS.ordinal());
+        out.writeLong(1);
+        out.writeInt(ResultDigest.MAX_BUCKETS + 1);
+        assertThrows(IOException.class, () -> AgentProtocol.readDigest(input(bytes)));
+
+        bytes.reset();
+        out.writeByte(9);
+        assertThrows(IOException.class, () -> AgentProtocol.readDigest(input(bytes)));
+
+        bytes.reset();
+        out.writeInt(-5);
+        assertThrows(IOException.class, () -> AgentProtocol.readString(input(bytes)));
+
+        bytes.reset();
+        out.writeInt(-1);
+        assertNull(AgentProtocol.readString(input(bytes)));
+
+        bytes.reset();
+        out.writeInt(Integer.MAX_VALUE);
+        assertThrows(IOException.class, () -> AgentProtocol.readKeys(input(bytes)));
+    }
+
+    @Test
+    void tamperedFrameClosesConnection() throws Exception {
+        try (Socket s = new Socket(InetAddress.getLoopbackAddress(), agent.getLocalPort())) {
+            s.setSoTimeout(5000);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            handshake(s, in);
+
+            // unsignierter Rahmen (z.B. von einem Dritten eingeschleust)
+            DataOutputStream out = new DataOutputStream(s.getOutputStream());
+            byte[] payload = {AgentProtocol.OP_CLOSE};
+            out.writeInt(payload.length);
+            out.write(payload);
+            out.write(new byte[AgentProtocol.MAC_BYTES]);
+            out.flush();
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    void replayedFrameIsRejected() throws Exception {
+        byte[] agentNonce = AgentProtocol.newNonce(), clientNonce = AgentProtocol.newNonce();
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        AgentProtocol.Session client = AgentProtocol.session(SECRET, agentNonce, clientNonce, false,
+                null, new DataOutputStream(wire));
+        client.message().writeInt(7);
+        client.send();
+        byte[] frame = wire.toByteArray();
+        client.message().writeInt(8);
+        client.send();
+
+        ByteArrayOutputStream replay = new ByteArrayOutputStream();
+        replay.write(frame);
+        replay.write(frame);
+        AgentProtocol.Session agentSide = AgentProtocol.session(SECRET, agentNonce, clientNonce, true,
+                input(replay), null);
+        assertEquals(7, agentSide.receive().readInt());
+        assertThrows(IOException.class, agentSide::receive);
+
+        // Rahmen des Agenten duerfen nicht als Client-Rahmen durchgehen
+        AgentProtocol.Session reflected = AgentProtocol.session(SECRET, agentNonce, clientNonce, false,
+                input(wire), null);
+        assertThrows(IOException.class, reflected::receive);
+    }
+
+    @Test
+    void onlyQueriesAreExecuted() {
+        try (AgentClient client = new AgentClient("127.0.0.1", agent.getLocalPort(), 5000, SECRET)) {
+            assertEquals("Fehler: Agent fuehrt nur Abfragen aus (SELECT/WITH)",
+                    client.execute("X", "DELETE FROM T", ResultDigest.Mode.SCALAR, 1));
+            assertEquals("Fehler: Keine Verbindung zu X",
+                    client.execute("X", "SELECT 1 FROM DUAL", ResultDigest.Mode.SCALAR, 1));
+        }
+    }
+
+    @Test
+    void queryDetection() {
+        assertTrue(DigestAgent.isQuery("SELECT 1 FROM DUAL"));
+        assertTrue(DigestAgent.isQuery("  -- Kommentar\n /* x */ (select 1 from dual) union select 2 from dual"));
+        assertTrue(DigestAgent.isQuery("WITH t AS (SELECT 1 x FROM DUAL) SELECT x FROM t"));
+        assertFalse(DigestAgent.isQuery("WITH FUNCTION f RETURN NUMBER IS BEGIN RETURN 1; END; SELECT f FROM DUAL"));
+        assertFalse(DigestAgent.isQuery("UPDATE T SET X = 1"));
+        assertFalse(DigestAgent.isQuery("/* SELECT */ DROP TABLE T"));
+        assertFalse(DigestAgent.isQuery("BEGIN NULL; END;"));
+        assertFalse(DigestAgent.isQuery("SELECTX"));
+        assertFalse(DigestAgent.isQuery(null));
+    }
+
+    private static AgentProtocol.Session handshake(Socket s, DataInputStream in) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+        byte[] clientNonce = AgentProtocol.newNonce();
+        out.writeInt(AgentProtocol.MAGIC);
+        out.writeByte(AgentProtocol.VERSION);
+        out.write(clientNonce);
+        out.flush();
+        assertEquals(AgentProtocol.MAGIC, in.readInt());
+        assertEquals(AgentProtocol.VERSION, in.readByte());
+        byte[] nonce = new byte[AgentProtocol.NONCE_BYTES];
+        in.readFully(nonce);
+        out.write(AgentProtocol.proof(SECRET, nonce, clientNonce));
+        out.flush();
+        AgentProtocol.Session session = AgentProtocol.session(SECRET, nonce, clientNonce, false, in, out);
+        assertEquals(Collections.singletonList("X"), AgentProtocol.readKeys(session.receive()));
+        return session;
+    }
+
+    private static ResultDigest roundTrip(ResultDigest d) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        AgentProtocol.writeDigest(new DataOutputStream(bytes), d);
+        return AgentProtocol.readDigest(input(bytes));
+    }
+
+    private static DataInputStream input(ByteArrayOutputStream bytes) {
+        return new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.dbcompare;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkedQueryTest {
+
+    @Test
+    void rangesCoverMinToMax() {
+        assertEquals(Arrays.asList(
+                "ID < 4 OR ID IS NULL",
+                "ID >= 4 AND ID < 7",
+                "ID >= 7"), ChunkedQuery.ranges("ID", 1, 10, 3));
+    }
+
+    @Test
+    void fewerValuesThanChunks() {
+        assertEquals(Arrays.asList("T.ID < 6 OR T.ID IS NULL", "T.ID >= 6"), ChunkedQuery.ranges("T.ID", 5, 6, 4));
+        assertEquals(Collections.singletonList("1=1"), ChunkedQuery.ranges("ID", 7, 7, 8));
+    }
+
+    @Test
+    void negativeBounds() {
+        assertEquals(Arrays.asList("ID < 0 OR ID IS NULL", "ID >= 0"), ChunkedQuery.ranges("ID", -5, 4, 2));
+    }
+
+    @Test
+    void overflowFallsBack() {
+        assertNull(ChunkedQuery.ranges("ID", Long.MIN_VALUE, Long.MAX_VALUE, 4));
+        assertNull(ChunkedQuery.ranges("ID", 0, Long.MAX_VALUE, 4));
+    }
+
+    @Test
+    void unchunkedReplacesPlaceholder() {
+        assertEquals("SELECT 1 FROM T WHERE 1=1", ChunkedQuery.unchunked("SELECT 1 FROM T WHERE " + ChunkedQuery.PLACEHOLDER));
+        assertNull(ChunkedQuery.unchunked(null));
+    }
+}
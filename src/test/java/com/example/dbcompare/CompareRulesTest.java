@@ -0,0 +1,149 @@
+package com.example.dbcompare;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompareRulesTest {
+
+    @Test
+    void scaledMatchesBigDecimal() {
+        String[] values = {
+                "0", "1", "-1", "+7", "007", "1.005", "9.995", "99.5", "999.9999", "-9.995", "-99.5",
+                "0.004", "0.005", "-0.001", "-0.004", "-0.005", ".5", "-.5", "5.", "  12.345  ",
+                "123456789012345678901234567890.995", "0.0000", "-0.0000", "1e3", "-1.5E-2"
+        };
+        for (String v : values) {
+            for (int scale = 0; scale <= 4; scale++) {
+                String expected = new BigDecimal(v.trim()).setScale(scale, RoundingMode.HALF_UP).toPlainString();
+                assertEquals(expected, scaled(v, scale), v + " @" + scale);
+            }
+        }
+    }
+
+    @Test
+    void scaledCarriesIntoNewDigit() {
+        assertEquals("10.00", scaled("9.995", 2));
+        assertEquals("100", scaled("99.5", 0));
+        assertEquals("-100.0", scaled("-99.95", 1));
+    }
+
+    @Test
+    void scaledNegativeZeroHasNoSign() {
+        assertEquals("0.00", scaled("-0.001", 2));
+        assertEquals("0", scaled("-0.4", 0));
+        assertEquals("-0.01", scaled("-0.005", 2));
+    }
+
+    @Test
+    void scaledKeepsNonNumbersAndAppends() {
+        assertEquals("abc", scaled("abc", 2));
+        assertEquals("-", scaled("-", 2));
+        assertEquals(".", scaled(".", 2));
+        StringBuilder sb = new StringBuilder("x;");
+        CompareRules.appendScaled("1.25", 1, sb);
+        assertEquals("x;1.3", sb.toString());
+    }
+
+    @Test
+    void textRules() {
+        assertEquals("NULL", text(null, false, false, false));
+        assertEquals("  a b ", text("  a b ", false, false, false));
+        assertEquals("A B", text("  a b ", true, true, false));
+        assertEquals("NULL", text("   ", true, false, true));
+        assertEquals("   ", text("   ", false, false, false));
+    }
+
+    @Test
+    void numberDetectionMatchesBigDecimal() {
+        String[] values = {"1", "-1.5", "+.5", "5.", " 7 ", "1e3", "1E-2", "-1.5e+10", "", "-", ".", "e3",
+                "1e", "1e+", "1.2.3", "12a", "NULL", "0x10", "1 2"};
+        for (String v : values) {
+            boolean expected;
+            try {
+                new BigDecimal(v.trim());
+                expected = true;
+            } catch (NumberFormatException ex) {
+                expected = false;
+            }
+            assertEquals(expected, CompareRules.isNumber(v), v);
+        }
+    }
+
+    @Test
+    void scalarUsesScaleOnlyForNumbers() {
+        CompareRules rules = CompareRules.of(QueryOptions.parse("rules=scale(1),trim"));
+        assertEquals("2.6", rules.normalizeScalar("2.55"));
+        assertEquals("1000.0", rules.normalizeScalar("1e3"));
+        assertEquals("abc", rules.normalizeScalar("  abc "));
+    }
+
+    @Test
+    void rowChainAppliesRulesPerColumn() throws SQLException {
+        CompareRules rules = CompareRules.of(QueryOptions.parse("rules=ID:exclude,trim,BETRAG:scale(2),NAME:casefold"));
+        ResultSetMetaData meta = metaData(new String[]{"ID", "NAME", "BETRAG", "MENGE", "NOTIZ"},
+                new int[]{Types.NUMERIC, Types.VARCHAR, Types.VARCHAR, Types.NUMERIC, Types.VARCHAR});
+        CompareRules.RowFormat format = rules.bind(meta);
+        assertSame(format, rules.bind(meta));
+        assertFalse(format.isIncluded(1));
+        assertTrue(format.isIncluded(2));
+
+        ResultSet rs = row(42, " müller ", "9.995", " 3 ", null);
+        StringBuilder sb = new StringBuilder();
+        format.append(rs, sb);
+        assertEquals("MÜLLER\u001F10.00\u001F3\u001FNULL", sb.toString());
+
+        sb.setLength(0);
+        format.appendColumn(rs, 3, sb);
+        assertEquals("10.00", sb.toString());
+    }
+
+    @Test
+    void withoutRulesRowIsUnchanged() throws SQLException {
+        ResultSetMetaData meta = metaData(new String[]{"A", "B"}, new int[]{Types.VARCHAR, Types.NUMERIC});
+        StringBuilder sb = new StringBuilder();
+        CompareRules.NONE.bind(meta).append(row(" x ", null), sb);
+        assertEquals(" x \u001FNULL", sb.toString());
+    }
+
+    private static ResultSetMetaData metaData(String[] labels, int[] types) {
+        return (ResultSetMetaData) Proxy.newProxyInstance(ResultSetMetaData.class.getClassLoader(),
+                new Class<?>[]{ResultSetMetaData.class}, (p, m, args) -> {
+                    switch (m.getName()) {
+                        case "getColumnCount": return labels.length;
+                        case "getColumnLabel": return labels[(Integer) args[0] - 1];
+                        case "getColumnType": return types[(Integer) args[0] - 1];
+                        default: throw new UnsupportedOperationException(m.getName());
+                    }
+                });
+    }
+
+    private static ResultSet row(Object... values) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, (p, m, args) -> {
+                    if (!m.getName().equals("getString")) throw new UnsupportedOperationException(m.getName());
+                    Object v = values[(Integer) args[0] - 1];
+                    return v == null ? null : v.toString();
+                });
+    }
+
+    private static String scaled(String v, int scale) {
+        StringBuilder sb = new StringBuilder();
+        CompareRules.appendScaled(v, scale, sb);
+        return sb.toString();
+    }
+
+    private static String text(String v, boolean trim, boolean fold, boolean nullEmpty) {
+        StringBuilder sb = new StringBuilder();
+        CompareRules.appendText(v, trim, fold, nullEmpty, sb);
+        return sb.toString();
+    }
+}
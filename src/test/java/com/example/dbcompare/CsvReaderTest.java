@@ -0,0 +1,44 @@
+package com.example.dbcompare;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvReaderTest {
+
+    @Test
+    void bomQuotesAndLineEnds() throws IOException {
+        List<List<String>> rows = read("\uFEFFQUERY_ID;WERT\r\n"
+                + "1;\"a;b\"\r\n"
+                + "\n"
+                + "2;\"sagt \"\"hallo\"\"\"\r"
+                + "3;\"zwei\nZeilen\"\n"
+                + "4;");
+        assertEquals(Arrays.asList(
+                Arrays.asList("QUERY_ID", "WERT"),
+                Arrays.asList("1", "a;b"),
+                Arrays.asList("2", "sagt \"hallo\""),
+                Arrays.asList("3", "zwei\nZeilen"),
+                Arrays.asList("4", "")), rows);
+    }
+
+    @Test
+    void emptyInput() throws IOException {
+        assertTrue(read("").isEmpty());
+        assertTrue(read("\uFEFF\r\n\n").isEmpty());
+    }
+
+    private static List<List<String>> read(String text) throws IOException {
+        CsvReader csv = new CsvReader(new StringReader(text));
+        List<List<String>> rows = new ArrayList<>();
+        List<String> rec;
+        while ((rec = csv.readRecord()) != null) rows.add(rec);
+        return rows;
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.dbcompare;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExternalSortDiffTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void equalAcrossDifferentRunSplits() throws IOException {
+        ExternalSortDiff diff = new ExternalSortDiff(dir, 1024);
+        ExternalSortDiff.SpilledResult a = spill(diff, Arrays.asList("b", "a", "c"), Arrays.asList("a", "d"));
+        ExternalSortDiff.SpilledResult b = spill(diff, Arrays.asList("d"), Arrays.asList("c", "a", "a", "b"));
+        ExternalSortDiff.DiffResult d = ExternalSortDiff.compare(a, b);
+        assertTrue(d.isEqual());
+        assertEquals("5 Zeilen", d.toDisplayString());
+    }
+
+    @Test
+    void duplicatesCountAsMultiset() throws IOException {
+        ExternalSortDiff diff = new ExternalSortDiff(dir, 1024);
+        ExternalSortDiff.SpilledResult a = spill(diff, Arrays.asList("x", "x", "y"), Arrays.asList("x"));
+        ExternalSortDiff.SpilledResult b = spill(diff, Arrays.asList("y", "y"), Arrays.asList("x", "z"));
+        ExternalSortDiff.DiffResult d = ExternalSortDiff.compare(a, b);
+        assertFalse(d.isEqual());
+        assertEquals(2, d.onlyInReference);                    // zweimal x fehlt
+        assertEquals(2, d.onlyHere);                           // y und z zusaetzlich
+        assertEquals("x", d.exampleMissing);
+        assertEquals("y", d.exampleExtra);
+        assertEquals("4 Zeilen: +2 / -2, z.B. +[y]", d.toDisplayString());
+    }
+
+    @Test
+    void emptyRuns() throws IOException {
+        ExternalSortDiff diff = new ExternalSortDiff(dir, 1024);
+        ExternalSortDiff.SpilledResult empty = spill(diff, new ArrayList<>());
+        ExternalSortDiff.SpilledResult one = spill(diff, Arrays.asList("a\u001Fb"));
+        assertTrue(ExternalSortDiff.compare(empty, spill(diff, new ArrayList<>())).isEqual());
+        ExternalSortDiff.DiffResult d = ExternalSortDiff.compare(one, empty);
+        assertEquals(1, d.onlyInReference);
+        assertEquals(0, d.onlyHere);
+        assertEquals("0 Zeilen: +0 / -1, z.B. -[a|b]", d.toDisplayString());
+    }
+
+    @SafeVarargs
+    private static ExternalSortDiff.SpilledResult spill(ExternalSortDiff diff, List<String>... runs) throws IOException {
+        ExternalSortDiff.SpilledResult r = new ExternalSortDiff.SpilledResult();
+        for (List<String> run : runs) {
+            List<String> rows = new ArrayList<>(run);
+            r.runs.add(diff.writeRun(rows));
+            r.rows += rows.size();
+        }
+        return r;
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.dbcompare;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistoryStoreTest {
+
+    private static final String[] VALUES = {
+            "42", "42", "-7", String.valueOf(Long.MAX_VALUE), String.valueOf(Long.MIN_VALUE),
+            "3.25", "3.25", "-0.0", "1.0E-5", "007", "Grüße", "", "42", "Fehler: ORA-00942", "1.50"
+    };
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void valuesSurviveReload() throws IOException {
+        HistoryStore store = new HistoryStore(dir);
+        for (int i = 0; i < VALUES.length; i++) store.append("Q1@PROD", 1000L + i * 60_000L, VALUES[i]);
+        assertSeries(store.get("Q1@PROD"));
+        assertSeries(new HistoryStore(dir).get("Q1@PROD"));
+    }
+
+    @Test
+    void numbersAndTimes() throws IOException {
+        HistoryStore store = new HistoryStore(dir);
+        store.append("K", 5000, "10");
+        store.append("K", 4000, "2.5");      // aelter -> auf letzten Zeitpunkt angehoben
+        store.append("K", 9000, "Text");
+        HistoryStore.Series s = new HistoryStore(dir).get("K");
+        assertEquals(3, s.size());
+        assertEquals(5000, s.time(0));
+        assertEquals(5000, s.time(1));
+        assertEquals(9000, s.time(2));
+        assertEquals(10.0, s.number(0));
+        assertEquals(2.5, s.number(1));
+        assertTrue(Double.isNaN(s.number(2)));
+        assertNull(s.valueAt(4999));
+        assertEquals("2.5", s.valueAt(8999));
+        assertEquals("Text", s.valueAt(Long.MAX_VALUE - 1));
+    }
+
+    @Test
+    void truncatedTailIsDropped() throws IOException {
+        HistoryStore store = new HistoryStore(dir);
+        store.append("T", 1, "alpha");
+        store.append("T", 2, "beta");
+        Path file;
+        try (Stream<Path> files = Files.list(dir)) {
+            file = files.findFirst().orElseThrow(IllegalStateException::new);
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 2));
+
+        HistoryStore reloaded = new HistoryStore(dir);
+        assertEquals(1, reloaded.get("T").size());
+        reloaded.append("T", 3, "gamma");
+        HistoryStore.Series s = new HistoryStore(dir).get("T");
+        assertEquals(2, s.size());
+        assertEquals("alpha", s.value(0));
+        assertEquals("gamma", s.value(1));
+    }
+
+    private static void assertSeries(HistoryStore.Series s) {
+        assertEquals(VALUES.length, s.size());
+        for (int i = 0; i < VALUES.length; i++) {
+            assertEquals(1000L + i * 60_000L, s.time(i));
+            assertEquals(VALUES[i], s.value(i), "Eintrag " + i);
+        }
+    }
+}
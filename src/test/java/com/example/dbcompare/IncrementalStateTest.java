@@ -0,0 +1,38 @@
+package com.example.dbcompare;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalStateTest {
+
+    @Test
+    void longLongMapAcrossGrowth() throws IOException {
+        IncrementalState.LongLongMap map = new IncrementalState.LongLongMap();
+        Map<Long, Long> expected = new HashMap<>();
+        long sum = 0;
+        for (long k = 1; k <= 5000; k++) {
+            long key = k * 0x9E3779B97F4A7C15L;
+            if (key == 0) continue;
+            assertEquals(0, map.put(key, k));
+            expected.put(key, k);
+            sum += k;
+        }
+        for (long k = 1; k <= 5000; k += 7) {
+            long key = k * 0x9E3779B97F4A7C15L;
+            assertEquals(k, map.put(key, -k));
+            expected.put(key, -k);
+            sum += -k - k;
+        }
+        assertEquals(expected.size(), map.size());
+        assertEquals(sum, map.sum());
+
+        Map<Long, Long> seen = new HashMap<>();
+        map.forEach((k, v) -> assertNull(seen.put(k, v)));
+        assertEquals(expected, seen);
+    }
+}